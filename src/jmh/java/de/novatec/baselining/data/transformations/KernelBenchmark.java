@@ -0,0 +1,76 @@
+package de.novatec.baselining.data.transformations;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and SIMD kernels on a series of the size of a 30 day backfill with a sample precision of 15 seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"172800"})
+    public int points;
+
+    private NumericKernels kernels;
+
+    private long[] times;
+
+    private double[] values;
+
+    private double[] rates;
+
+    private final double[] sums = new double[2];
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        kernels = "vector".equals(kernel) ? Kernels.loadVectorKernels() : new ScalarKernels();
+        Random random = new Random(42);
+        times = new long[points];
+        values = new double[points];
+        rates = new double[points];
+        long time = 1_700_000_000_000L;
+        double counter = 0;
+        for (int i = 0; i < points; i++) {
+            time += 15_000;
+            counter += random.nextInt(100);
+            times[i] = time;
+            values[i] = counter;
+        }
+    }
+
+    @Benchmark
+    public double[] rates() {
+        kernels.rates(times, values, points, 1000, rates);
+        return rates;
+    }
+
+    /**
+     * Sums up intervals of 15 minutes, as done when computing the per-interval means.
+     */
+    @Benchmark
+    public void intervalSums(Blackhole blackhole) {
+        for (int start = 0; start < points; start += 60) {
+            kernels.sumAndSquares(values, start, Math.min(points, start + 60), sums);
+            blackhole.consume(sums[0]);
+            blackhole.consume(sums[1]);
+        }
+    }
+
+    @Benchmark
+    public double[] totalSum() {
+        kernels.sumAndSquares(values, 0, points, sums);
+        return sums;
+    }
+}
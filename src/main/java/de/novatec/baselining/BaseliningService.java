@@ -1,20 +1,34 @@
 package de.novatec.baselining;
 
-import de.novatec.baselining.baselines.BaselineGenerator;
+import de.novatec.baselining.baselines.*;
 import de.novatec.baselining.config.BaselineServiceSettings;
+import de.novatec.baselining.config.StateCacheSettings;
 import de.novatec.baselining.config.baselines.AbstractBaselineDefinition;
+import de.novatec.baselining.config.baselines.RollupBaselineDefinition;
+import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.datasources.*;
 import de.novatec.baselining.influx.InfluxAccess;
+import de.novatec.baselining.scheduling.BaselineUpdateScheduler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @Slf4j
@@ -26,63 +40,124 @@ public class BaseliningService {
     @Autowired
     private InfluxAccess influx;
 
+    private BaselineUpdateScheduler scheduler;
+
+    private BaselineStateStore.Factory stateStoreFactory;
+
+    /**
+     * Used for baselines with quantile sketches, because the memory-mapped state has a fixed size per point.
+     */
+    private BaselineStateStore.Factory heapStateStoreFactory;
+
+    /**
+     * Fetches the sub-ranges of chunked updates in parallel, null if parallel fetching is disabled.
+     */
+    private ExecutorService fetchExecutor;
+
     private List<BaselineGenerator> baselines;
 
-    private Map<BaselineGenerator, Long> lastUpdatedTimestamp;
+    /**
+     * Decides which of the configured baselines are computed by this instance.
+     */
+    private ShardAssignment shards;
 
     @PostConstruct
     void start() {
+        shards = new ShardAssignment(config.getSharding().getIndex(), config.getSharding().getCount());
+        fetchExecutor = buildFetchExecutor();
+        heapStateStoreFactory = buildHeapStateStoreFactory();
+        stateStoreFactory = buildStateStoreFactory();
         long start = System.currentTimeMillis() - config.getBackfill().toMillis();
         baselines = new ArrayList<>();
-        lastUpdatedTimestamp = new HashMap<>();
         baselines.addAll(buildQueryBaselines());
         baselines.addAll(buildGaugeBaselines());
         baselines.addAll(buildRateBaselines());
         baselines.addAll(buildCounterBaselines());
         baselines.addAll(buildCounterRatioBaselines());
-        baselines.forEach(blg -> lastUpdatedTimestamp.put(blg, start));
+        baselines.addAll(buildQuantileBaselines());
+        baselines.addAll(buildRollupBaselines());
+
+        baselines.stream()
+                .collect(Collectors.groupingBy(BaselineGenerator::getId, Collectors.counting()))
+                .forEach((id, count) -> {
+                    if (count > 1) {
+                        log.warn("Output '{}' is used by {} baselines, they will overwrite each other", id, count);
+                    }
+                });
+        if (shards.isSharded()) {
+            log.info("Instance {} of {} computes {} baselines", config.getSharding().getIndex(), config.getSharding().getCount(), baselines.size());
+        }
+
+        scheduler = new BaselineUpdateScheduler(config.getScheduler(), baselines, config.getUpdateDelay().toMillis(), start, config.getCheckpoints());
+        scheduler.start();
+    }
 
-        new Thread(() -> {
-            while (true) {
-                updateAll();
+    @PreDestroy
+    void stop() {
+        scheduler.shutdown();
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+        }
+        baselines.forEach(BaselineGenerator::close);
+    }
+
+    /**
+     * Every update thread fetches its first sub-range itself, so only the remaining ones require additional threads.
+     *
+     * @return the executor for fetching sub-ranges in parallel, null if every update fetches its sub-ranges sequentially
+     */
+    private ExecutorService buildFetchExecutor() {
+        int parallelism = config.getChunking().getParallelism();
+        if (parallelism <= 1) {
+            return null;
+        }
+        int threads = config.getScheduler().getThreads() * (parallelism - 1);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("baseline-fetch-"));
+    }
+
+    /**
+     * @return the factory for the stores keeping the state of the generators, null if the state is only kept in influx
+     */
+    private BaselineStateStore.Factory buildStateStoreFactory() {
+        StateCacheSettings settings = config.getStateCache();
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        if (!ObjectUtils.isEmpty(settings.getDirectory())) {
+            Path directory = Paths.get(settings.getDirectory());
+            return (id, precisionMillis, capacity) -> {
                 try {
-                    Thread.sleep(5000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
+                    return new MappedStateStore(directory, id, precisionMillis, capacity, settings.isWriteInfinityBaselines());
+                } catch (IOException e) {
+                    if (!settings.isWriteInfinityBaselines()) {
+                        throw new UncheckedIOException("Could not open the stored state of '" + id + "'", e);
+                    }
+                    log.error("Could not open the stored state of '{}', it will be queried from influx", id, e);
+                    return null;
                 }
-            }
-        }).start();
+            };
+        }
+        return heapStateStoreFactory;
     }
 
     /**
-     * This method is executed regularly. Depending on the baselining configuration, the baselines will be updated.
-     * First the original data and existing baselines are queried.
-     * After that the new information is used to update and extend the baselines.
-     * This process will be repeated for every configured data source.
+     * @return the factory for stores keeping the state of the generators on the heap, null if the state is only kept in influx
      */
-    private void updateAll() {
-        for (BaselineGenerator generator : baselines) {
-            long now = System.currentTimeMillis() - config.getUpdateDelay().toMillis() - generator.getMinimumDelayMillis();
-            long updateTimestamp = lastUpdatedTimestamp.get(generator);
-            try {
-                while (generator.getIntervalIndex(now) != generator.getIntervalIndex(updateTimestamp)) {
-                    long updateTo = Math.min(now, updateTimestamp + generator.getMaxUpdateIntervalSizeMillis());
-                    generator.updateBaselines(updateTimestamp, updateTo);
-                    lastUpdatedTimestamp.put(generator, updateTo);
-                    updateTimestamp = updateTo;
-                }
-            } catch (Throwable t) {
-                log.error("An error occurred updating the baseline", t);
-            }
+    private BaselineStateStore.Factory buildHeapStateStoreFactory() {
+        StateCacheSettings settings = config.getStateCache();
+        if (!settings.isEnabled()) {
+            return null;
         }
+        StateCacheBudget budget = new StateCacheBudget(settings.getMaxPoints());
+        return (id, precisionMillis, capacity) -> new SeasonalStateCache(id, precisionMillis, capacity, budget);
     }
 
     /**
      * @return the collection of baseline generators for all query data sources
      */
     private List<BaselineGenerator> buildQueryBaselines() {
-    return config.getQueries().stream()
+        return config.getQueries().stream()
+                .filter(this::isAssigned)
                 .map(definition -> {
                     QueryDataSource src = new QueryDataSource(influx, config, definition);
                     return buildBaselineGenerator(definition, src);
@@ -95,6 +170,7 @@ public class BaseliningService {
      */
     private List<BaselineGenerator> buildGaugeBaselines() {
         return config.getGauges().stream()
+                .filter(this::isAssigned)
                 .map(definition -> {
                     GaugeDataSource src = new GaugeDataSource(influx, definition);
                     return buildBaselineGenerator(definition, src);
@@ -107,6 +183,7 @@ public class BaseliningService {
      */
     private List<BaselineGenerator> buildCounterBaselines() {
         return config.getCounters().stream()
+                .filter(this::isAssigned)
                 .map(definition -> {
                     CounterDataSource src = new CounterDataSource(influx, definition);
                     return buildBaselineGenerator(definition, src);
@@ -119,6 +196,7 @@ public class BaseliningService {
      */
     private List<BaselineGenerator> buildCounterRatioBaselines() {
         return config.getCounterRatios().stream()
+                .filter(this::isAssigned)
                 .map(definition -> {
                     CounterRatioDataSource src = new CounterRatioDataSource(influx, definition);
                     return buildBaselineGenerator(definition, src);
@@ -131,6 +209,7 @@ public class BaseliningService {
      */
     private List<BaselineGenerator> buildRateBaselines() {
         return config.getRates().stream()
+                .filter(this::isAssigned)
                 .map(definition -> {
                     RateBaselineSource src = new RateBaselineSource(influx, definition);
                     return buildBaselineGenerator(definition, src);
@@ -138,10 +217,86 @@ public class BaseliningService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Quantile baselines always write their infinity baselines to influx, because their state is never kept in a directory.
+     *
+     * @return the collection of baseline generators for all quantile data sources
+     */
+    private List<BaselineGenerator> buildQuantileBaselines() {
+        return config.getQuantiles().stream()
+                .filter(this::isAssigned)
+                .map(definition -> {
+                    QuantileDataSource src = new QuantileDataSource(influx, definition);
+                    return new BaselineGenerator(influx, src, definition, heapStateStoreFactory, true, config.getChunking(), fetchExecutor,
+                            getSeriesFilter(definition));
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rollups may be based on any previously built baseline, including rollups defined before them.
+     * They are computed by the instance computing their source and cover the same series, because they are derived from its state.
+     *
+     * @return the collection of baseline generators for all rollups
+     */
+    private List<BaselineGenerator> buildRollupBaselines() {
+        List<BaselineGenerator> rollups = new ArrayList<>();
+        for (RollupBaselineDefinition definition : config.getRollups()) {
+            String sourceId = definition.getSource().getFullMeasurementName();
+            Optional<BaselineGenerator> source = Stream.concat(baselines.stream(), rollups.stream())
+                    .filter(generator -> generator.getId().equals(sourceId))
+                    .findFirst();
+            if (source.isEmpty() && shards.isSharded() && isConfiguredOutput(sourceId)) {
+                log.debug("Rollup '{}' is computed by the instance computing '{}'", definition.getOutput().getFullMeasurementName(), sourceId);
+            } else if (source.isEmpty()) {
+                log.error("Rollup '{}' is ignored, because no baseline with output '{}' exists",
+                        definition.getOutput().getFullMeasurementName(), sourceId);
+            } else if (definition.getPrecision().toMillis() % source.get().getPrecisionMillis() != 0) {
+                log.error("Rollup '{}' is ignored, because its precision is not a multiple of the precision of '{}'",
+                        definition.getOutput().getFullMeasurementName(), sourceId);
+            } else {
+                RollupDataSource src = new RollupDataSource(source.get());
+                BaselineStateStore.Factory storeFactory = src.providesSketches() ? heapStateStoreFactory : stateStoreFactory;
+                boolean writeInfinityBaselines = src.providesSketches() || config.getStateCache().isWriteInfinityBaselines();
+                rollups.add(new BaselineGenerator(influx, src, definition, storeFactory, writeInfinityBaselines, config.getChunking(), fetchExecutor,
+                        source.get().getSeriesFilter()));
+            }
+        }
+        return rollups;
+    }
+
     /**
      * @return the baseline generator for the provided data source
      */
     private BaselineGenerator buildBaselineGenerator(AbstractBaselineDefinition definition, BaselineDataSource source) {
-        return new BaselineGenerator(influx, source, definition);
+        return new BaselineGenerator(influx, source, definition, stateStoreFactory, config.getStateCache().isWriteInfinityBaselines(),
+                config.getChunking(), fetchExecutor, getSeriesFilter(definition));
+    }
+
+    /**
+     * @return true, if the given baseline or a share of its series is computed by this instance
+     */
+    private boolean isAssigned(AbstractBaselineDefinition definition) {
+        return getSeriesFilter(definition) != null || shards.ownsBaseline(definition.getOutput().getFullMeasurementName());
+    }
+
+    /**
+     * @return the filter selecting the series of the given baseline computed by this instance, null if it computes all of them
+     */
+    private Predicate<TagValues> getSeriesFilter(AbstractBaselineDefinition definition) {
+        if (shards.isSharded() && definition.isShardSeries()) {
+            return shards::ownsSeries;
+        }
+        return null;
+    }
+
+    /**
+     * @return true, if any configured baseline writes to the given output
+     */
+    private boolean isConfiguredOutput(String id) {
+        return Stream.of(config.getQueries(), config.getGauges(), config.getRates(), config.getCounters(),
+                        config.getCounterRatios(), config.getQuantiles(), config.getRollups())
+                .flatMap(List::stream)
+                .anyMatch(definition -> definition.getOutput().getFullMeasurementName().equals(id));
     }
 }
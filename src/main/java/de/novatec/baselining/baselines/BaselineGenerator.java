@@ -1,20 +1,23 @@
 package de.novatec.baselining.baselines;
 
-import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.query.InfluxQLQueryResult;
+import de.novatec.baselining.config.ChunkingSettings;
 import de.novatec.baselining.influx.InfluxAccess;
 import de.novatec.baselining.influx.InfluxUtils;
 import de.novatec.baselining.config.baselines.AbstractBaselineDefinition;
 import de.novatec.baselining.config.measurement.MeasurementName;
-import de.novatec.baselining.data.AbstractTimedPoint;
 import de.novatec.baselining.data.AggregatePoint;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.datasources.BaselineDataSource;
 import lombok.extern.slf4j.Slf4j;
-import com.influxdb.client.write.Point;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -29,21 +32,90 @@ public class BaselineGenerator {
 
     private long precisionMillis;
 
-    private long seasonalityMillis;
+    private MeasurementName outputPrefix;
 
-    private List<Long> windowMillis;
+    /**
+     * The baselines of each configured seasonality, all computed from the same data fetched from {@link #src}.
+     */
+    private List<SeasonalBaseline> seasonals;
 
-    private MeasurementName outputPrefix;
+    /**
+     * The timestamp up to which the baselines have been computed by this generator since startup and accepted by influx.
+     */
+    private volatile long writtenUntil = Long.MIN_VALUE;
+
+    /**
+     * The maximum number of intervals computed in a single update.
+     */
+    private int maxUpdateIntervals;
 
-    public BaselineGenerator(InfluxAccess influx, BaselineDataSource src, AbstractBaselineDefinition definition) {
+    /**
+     * The number of queries with consecutive time ranges which are executed in parallel.
+     */
+    private int parallelism;
+
+    /**
+     * Executes all but the first query of an update, null if the queries are executed sequentially.
+     */
+    private Executor fetchExecutor;
+
+    private UpdateChunkSizer chunkSizer;
+
+    /**
+     * Selects the series computed by this instance, null if all series are computed.
+     */
+    private Predicate<TagValues> seriesFilter;
+
+    /**
+     * @param influx                 the influx access
+     * @param src                    the source providing the data to baseline
+     * @param definition             the baseline definition
+     * @param stateStoreFactory      creates the store for the infinity baselines, null to always query them from influx
+     * @param writeInfinityBaselines false, if the infinity baselines should not be written to influx (requires a persistent state store)
+     * @param chunking               the settings for splitting updates into queries
+     * @param fetchExecutor          executes queries in parallel, null to execute them sequentially
+     * @param seriesFilter           selects the series computed by this instance, null to compute all series
+     */
+    public BaselineGenerator(InfluxAccess influx, BaselineDataSource src, AbstractBaselineDefinition definition, BaselineStateStore.Factory stateStoreFactory,
+                             boolean writeInfinityBaselines, ChunkingSettings chunking, Executor fetchExecutor, Predicate<TagValues> seriesFilter) {
         this.influx = influx;
         this.src = src;
+        this.seriesFilter = seriesFilter;
         this.precisionMillis = definition.getPrecision().toMillis();
-        this.seasonalityMillis = definition.getSeasonality().toMillis();
+        this.maxUpdateIntervals = chunking.getMaxUpdateIntervals();
+        this.parallelism = fetchExecutor == null ? 1 : chunking.getParallelism();
+        this.fetchExecutor = fetchExecutor;
+        this.chunkSizer = new UpdateChunkSizer(chunking.getTargetQueryDuration().toMillis(), maxUpdateIntervals);
         this.outputPrefix = definition.getOutput();
-        this.windowMillis = definition.getWindowsWithDefault().stream()
-                .map(Duration::toMillis)
-                .collect(Collectors.toList());
+        this.seasonals = new ArrayList<>();
+        for (Duration seasonality : definition.getAllSeasonalities()) {
+            MeasurementName output = outputPrefix;
+            if (definition.isMultiSeasonal()) {
+                String suffix = "_" + InfluxUtils.prettyPrintDuration(seasonality.toMillis());
+                output = outputPrefix.toBuilder().measurement(outputPrefix.getMeasurement() + suffix).build();
+            }
+            List<Long> windowMillis = definition.getWindowsWithDefault(seasonality).stream()
+                    .map(Duration::toMillis)
+                    .collect(Collectors.toList());
+            seasonals.add(new SeasonalBaseline(influx, output, precisionMillis, seasonality.toMillis(), windowMillis,
+                    stateStoreFactory, maxUpdateIntervals, writeInfinityBaselines, src.providesSketches(), seriesFilter));
+        }
+    }
+
+    /**
+     * The output measurement uniquely identifies a generator, because generators sharing it would corrupt each other's baselines.
+     *
+     * @return the identifier of this generator
+     */
+    public String getId() {
+        return outputPrefix.getFullMeasurementName();
+    }
+
+    /**
+     * @return the filter selecting the series computed by this instance, null if all series are computed
+     */
+    public Predicate<TagValues> getSeriesFilter() {
+        return seriesFilter;
     }
 
     /**
@@ -59,16 +131,48 @@ public class BaselineGenerator {
         return src.getMinimumDelayMillis();
     }
 
+    /**
+     * @return the timestamp up to which the data of the {@link BaselineDataSource} is complete
+     */
+    public long getAvailableUntil() {
+        return src.getAvailableUntil();
+    }
+
+    /**
+     * Baselines which have been computed, but are still queued for writing, are not included,
+     * because reading them back from influx would miss their points.
+     *
+     * @return the timestamp up to which the baselines have been written since startup, {@link Long#MIN_VALUE} if none have been written yet
+     */
+    public long getWrittenUntil() {
+        return writtenUntil;
+    }
+
+    public long getPrecisionMillis() {
+        return precisionMillis;
+    }
+
+    /**
+     * @return true, if the baselines contain quantiles
+     */
+    public boolean providesSketches() {
+        return src.providesSketches();
+    }
+
     /**
      * A suggestion on the maximum number of milliseconds between the start and the end timestamp
      * when invoking {@link #updateBaselines(long, long)}.
      * <p>
-     * This minimizes risk of read or write timeouts when generating baselines.
+     * It adapts to the observed query durations, so that each of the parallel queries of an update
+     * takes roughly the configured target duration.
      *
      * @return the number of milliseconds
      */
     public long getMaxUpdateIntervalSizeMillis() {
-        return precisionMillis * 100;
+        long size = precisionMillis * Math.min(maxUpdateIntervals, (long) chunkSizer.getQueryIntervals() * parallelism);
+        // sources reconstructing their data from other baselines may only provide a limited range
+        long maxRange = src.getMaxRangeMillis() / precisionMillis * precisionMillis;
+        return Math.max(precisionMillis, Math.min(size, maxRange));
     }
 
     /**
@@ -83,241 +187,205 @@ public class BaselineGenerator {
     public void updateBaselines(long startMillis, long endMillis) {
         long startInterval = getIntervalIndex(startMillis);
         long endInterval = getIntervalIndex(endMillis);
-        long seasonIntervalCount = getIntervalIndex(seasonalityMillis);
 
         Date startDate = new Date(startInterval * precisionMillis);
         Date endDate = new Date(endInterval * precisionMillis);
 
         log.info("Updating Baselines '{}' from {} to {}", outputPrefix.getFullMeasurementName(), startDate, endDate);
+        long allocatedBefore = getAllocatedBytes();
 
-        updateInfinityBaseline(startInterval, endInterval);
-        for (long windowSize : windowMillis) {
-            updateWindowedBaseline(startInterval + seasonIntervalCount, endInterval + seasonIntervalCount, windowSize);
+        for (SeasonalBaseline seasonal : seasonals) {
+            seasonal.warmUpStateCache(startInterval);
         }
+        Map<TagValues, List<AggregatePoint>> newData = fetch(startInterval, endInterval);
+        for (SeasonalBaseline seasonal : seasonals) {
+            seasonal.update(startInterval, endInterval, newData);
+        }
+        long updatedUntil = endInterval * precisionMillis;
+        // updates of the same generator are never concurrent, so their callbacks run in order
+        influx.whenWritten(() -> writtenUntil = updatedUntil);
         log.info("Update finished");
-    }
-
-    public long getIntervalIndex(long timestamp) {
-        return timestamp / precisionMillis;
-    }
-
-    private void updateInfinityBaseline(long startInterval, long endInterval) {
-        long seasonIntervalCount = getIntervalIndex(seasonalityMillis);
-
-        long previousRelevant = Math.min(endInterval, startInterval + seasonIntervalCount);
-        Map<TagValues, List<AggregatePoint>> previousBaselines = fetchInfinityBaselines(outputPrefix.getDatabase(), startInterval, previousRelevant);
-
-        Map<TagValues, List<AggregatePoint>> newData = src.fetch(precisionMillis, startInterval, endInterval);
-
-        Set<TagValues> allTags = new HashSet<>();
-        allTags.addAll(previousBaselines.keySet());
-        allTags.addAll(newData.keySet());
-
-        List<Point> baselinePoints = new LinkedList<>();
-
-        for (TagValues tags : allTags) {
-            List<AggregatePoint> oldBaseline = previousBaselines.get(tags);
-            List<AggregatePoint> newPoints = newData.get(tags);
-
-            List<Point> points = generateInfinityBaselineSeriesWithNewData(startInterval, endInterval, tags, oldBaseline, newPoints);
-            baselinePoints.addAll(points);
+        if (log.isDebugEnabled() && allocatedBefore >= 0) {
+            log.debug("Update of '{}' allocated {} KiB", outputPrefix.getFullMeasurementName(), (getAllocatedBytes() - allocatedBefore) / 1024);
         }
-
-        influx.writePoints(outputPrefix.getDatabase(), Collections.emptyMap(), baselinePoints);
     }
 
-    private List<Point> generateInfinityBaselineSeriesWithNewData(long startInterval, long endInterval, TagValues tags, List<AggregatePoint> oldBaseline, List<AggregatePoint> newPoints) {
-        Map<Long, AggregatePoint> intervallToBaselineMap = indexPointsByInterval(oldBaseline);
-        Map<Long, AggregatePoint> intervallToDataMap = indexPointsByInterval(newPoints);
-
-        List<AggregatePoint> outputPoints = new ArrayList<>();
-
-        for (long interval = startInterval; interval < endInterval; interval++) {
-
-            AggregatePoint previousBaseline = intervallToBaselineMap.get(interval);
-            AggregatePoint newValue = intervallToDataMap.get(interval);
-
-            AggregatePoint resultBaseline = incrementBaseline(previousBaseline, newValue);
-
-            if (resultBaseline != null) {
-                intervallToBaselineMap.put(getIntervalIndex(resultBaseline.getTime()), resultBaseline);
-                outputPoints.add(resultBaseline);
+    /**
+     * Splits the given range into sub-ranges aligned to the query size of the {@link #chunkSizer},
+     * fetches them in parallel and merges the results in order.
+     * The first sub-range is fetched by the calling thread.
+     */
+    private Map<TagValues, List<AggregatePoint>> fetch(long startInterval, long endInterval) {
+        long queryIntervals = chunkSizer.getQueryIntervals();
+        List<CompletableFuture<Map<TagValues, List<AggregatePoint>>>> subRanges = new ArrayList<>();
+        Map<TagValues, List<AggregatePoint>> first = null;
+        long subRangeStart = startInterval;
+        while (subRangeStart < endInterval) {
+            long start = subRangeStart;
+            long end = Math.min(endInterval, (Math.floorDiv(start, queryIntervals) + 1) * queryIntervals);
+            if (first == null) {
+                first = fetchTimed(start, end);
+            } else if (fetchExecutor == null) {
+                subRanges.add(CompletableFuture.completedFuture(fetchTimed(start, end)));
+            } else {
+                subRanges.add(CompletableFuture.supplyAsync(() -> fetchTimed(start, end), fetchExecutor));
             }
+            subRangeStart = end;
+        }
+        if (first == null || subRanges.isEmpty()) {
+            return first == null ? Collections.emptyMap() : first;
         }
 
-        return generateBaselinePoints(outputPrefix.getMeasurement() + "_inf", true, tags, outputPoints);
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        first.forEach((tags, points) -> result.put(tags, new ArrayList<>(points)));
+        try {
+            for (CompletableFuture<Map<TagValues, List<AggregatePoint>>> subRange : subRanges) {
+                subRange.join().forEach((tags, points) -> result.computeIfAbsent(tags, t -> new ArrayList<>()).addAll(points));
+            }
+        } catch (CompletionException e) {
+            // the update fails anyway, so the sub-ranges which have not been started yet are not queried anymore
+            subRanges.forEach(subRange -> subRange.cancel(false));
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return result;
     }
 
-    private void updateWindowedBaseline(long startInterval, long endInterval, long windowDuration) {
-        String durationSuffix = "_" + InfluxUtils.prettyPrintDuration(windowDuration);
-        long windowIntervalCount = windowDuration / precisionMillis;
-
-        Map<TagValues, List<AggregatePoint>> now = fetchInfinityBaselines(outputPrefix.getDatabase(), startInterval, endInterval);
-        Map<TagValues, List<AggregatePoint>> past = fetchInfinityBaselines(outputPrefix.getDatabase(), startInterval - windowIntervalCount, endInterval - windowIntervalCount);
-
-        Set<TagValues> allTags = new HashSet<>();
-        allTags.addAll(now.keySet());
-        allTags.addAll(past.keySet());
-
-        List<Point> baselinePoints = new LinkedList<>();
-
-        for (TagValues tags : allTags) {
-            Map<Long, AggregatePoint> nowValues = indexPointsByInterval(now.get(tags));
-            Map<Long, AggregatePoint> pastValues = indexPointsByInterval(past.get(tags));
-
-            List<AggregatePoint> outputPoints = new ArrayList<>();
-
-            for (long intervall = startInterval; intervall < endInterval; intervall++) {
-
-                AggregatePoint previousPoint = pastValues.get(intervall - windowIntervalCount);
-                AggregatePoint nowPoint = nowValues.get(intervall);
-
-                AggregatePoint resultBaseline = computeDelta(previousPoint, nowPoint);
+    private Map<TagValues, List<AggregatePoint>> fetchTimed(long startInterval, long endInterval) {
+        long start = System.nanoTime();
+        Map<TagValues, List<AggregatePoint>> data = src.fetch(precisionMillis, startInterval, endInterval);
+        if (seriesFilter != null) {
+            data = filterSeries(data, seriesFilter);
+        }
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+        chunkSizer.record(endInterval - startInterval, durationMillis);
+        if (log.isDebugEnabled()) {
+            long points = data.values().stream().mapToLong(List::size).sum();
+            log.debug("Fetched {} points of '{}' for {} intervals in {} ms", points, getId(), endInterval - startInterval, durationMillis);
+        }
+        return data;
+    }
 
-                if (resultBaseline != null) {
-                    outputPoints.add(resultBaseline);
-                }
+    /**
+     * @return the series of the given data selected by the filter, the data itself is not modified because sources may share it
+     */
+    private static Map<TagValues, List<AggregatePoint>> filterSeries(Map<TagValues, List<AggregatePoint>> data, Predicate<TagValues> filter) {
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        data.forEach((tags, points) -> {
+            if (filter.test(tags)) {
+                result.put(tags, points);
             }
+        });
+        return result;
+    }
 
-            List<Point> points = generateBaselinePoints(outputPrefix.getMeasurement() + durationSuffix, false, tags, outputPoints);
-            baselinePoints.addAll(points);
-        }
+    /**
+     * Reconstructs the data which has been baselined in the given interval range from the infinity baselines,
+     * so that it can be reused without querying the {@link BaselineDataSource} again.
+     * The intervals must have been written already, see {@link #getWrittenUntil()}.
+     * If the infinity baselines are only kept in the persistent state store, they must lie within
+     * {@link #getBaselinedDataRetentionMillis()} of it.
+     *
+     * @param startInterval the first interval (inclusive)
+     * @param endInterval   the last interval (exclusive)
+     * @return the data per series, at most one point per interval
+     * @throws IllegalStateException if the intervals are no longer held by the state store and have not been written to influx
+     */
+    public Map<TagValues, List<AggregatePoint>> getBaselinedData(long startInterval, long endInterval) {
+        return seasonals.get(0).getBaselinedData(startInterval, endInterval);
+    }
 
-        influx.writePoints(outputPrefix.getDatabase(), Collections.emptyMap(), baselinePoints);
+    /**
+     * If the infinity baselines are only kept in the persistent state store, {@link #getBaselinedData(long, long)}
+     * can only reconstruct the data of a limited range of intervals preceding {@link #getWrittenUntil()}.
+     *
+     * @return the number of milliseconds of this range, {@link Long#MAX_VALUE} if it is not limited
+     */
+    public long getBaselinedDataRetentionMillis() {
+        return seasonals.get(0).getBaselinedDataRetentionMillis();
     }
 
-    private AggregatePoint computeDelta(AggregatePoint firstPoint, AggregatePoint secondPoint) {
-        if (firstPoint == null && secondPoint != null) {
-            return secondPoint.toBuilder().build();
-        } else if (firstPoint != null && secondPoint != null) {
-            AggregatePoint diff = secondPoint.minus(firstPoint);
-            if (diff.getCount() > 0) {
-                return diff;
-            }
+    /**
+     * @return the number of bytes allocated by the current thread, -1 if not supported by the JVM
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
         }
-        return null;
+        return -1;
+    }
 
+    /**
+     * Runs the given action once the points written by the previous updates have been accepted by influx.
+     * The action is never run if some of them could not be written.
+     */
+    public void whenWritten(Runnable action) {
+        influx.whenWritten(action);
     }
 
-    private List<Point> generateBaselinePoints(String measurementName, boolean includeAggregates, TagValues tags, List<AggregatePoint> outputPoints) {
-        List<Point> points = outputPoints.stream()
-                .map(pt -> toInfluxPoint(pt, measurementName, tags.getTags(), includeAggregates))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
-        return points;
+    /**
+     * @return true, if the infinity baselines are not written to influx, but only kept in the persistent state store
+     */
+    public boolean isStateOnlyStored() {
+        return seasonals.stream().anyMatch(SeasonalBaseline::isStateOnlyStored);
     }
 
-    private AggregatePoint incrementBaseline(AggregatePoint previousBaseline, AggregatePoint newSeasonValue) {
-        if (newSeasonValue != null) {
-            if (previousBaseline == null || previousBaseline.getCount() == 0) {
-                return newSeasonValue.shift(seasonalityMillis);
-            } else {
-                return previousBaseline.add(newSeasonValue).shift(seasonalityMillis);
-            }
-        } else if (previousBaseline != null) {
-            return previousBaseline.shift(seasonalityMillis);
-        }
-        return null;
+    /**
+     * If the infinity baselines are only kept in the persistent state store, the store only retains the baselines
+     * required to recompute the last {@code maxUpdateIntervals} intervals. Updates which have not been written yet
+     * must not lag behind the stored state by more than that, otherwise they can not be recomputed after a restart.
+     *
+     * @return the maximum number of milliseconds by which the computed baselines may be ahead of the written ones
+     */
+    public long getMaxUnwrittenMillis() {
+        return maxUpdateIntervals * precisionMillis;
     }
 
-    private <PT extends AbstractTimedPoint> Map<Long, PT> indexPointsByInterval(Collection<PT> points) {
-        Map<Long, PT> result = new HashMap<>();
-        if (points != null) {
-            for (PT pt : points) {
-                long interval = getIntervalIndex(pt.getTime());
-                if (result.containsKey(interval)) {
-                    throw new IllegalArgumentException("Input point set contains multiple points falling into the same interval!");
-                }
-                result.put(interval, pt);
-            }
-        }
-        return result;
+    /**
+     * @return the end timestamp of the last updated interval according to the persistent state store, if it contains any baselines
+     */
+    public OptionalLong getStoredTimestamp() {
+        return seasonals.stream()
+                .map(SeasonalBaseline::getStoredTimestamp)
+                .filter(OptionalLong::isPresent)
+                .mapToLong(OptionalLong::getAsLong)
+                .max();
     }
 
-    private Optional<Point> toInfluxPoint(AggregatePoint pt, String measurementName, Map<String, String> tags, boolean includeAggregates) {
-        if (pt.getCount() == 0) {
-            return Optional.empty();
-        }
-        double value = pt.getAvgValue();
-        double stddev = Math.sqrt(Math.max(0, pt.getAvgSquaredValue() - value * value));
-
-        Point point = new Point(measurementName);
-        point.time(pt.getTime(), WritePrecision.MS)
-            .addField("value", value)
-            .addField("stddev", stddev)
-            .addField("seasons", pt.getCount())
-            .addTags(tags);
-
-        if (includeAggregates) {
-            point.addField("sum", pt.getValuesSum())
-                .addField("sumSq", pt.getSquaredValuesSum());
-        }
-        return Optional.of(point);
+    /**
+     * Releases the resources held by this generator.
+     */
+    public void close() {
+        seasonals.forEach(SeasonalBaseline::close);
     }
 
-    private Map<TagValues, List<AggregatePoint>> fetchInfinityBaselines(String database, long startIntervall, long endIntervall) {
-        long start = startIntervall * precisionMillis;
-        long end = endIntervall * precisionMillis;
-
-        String selectFromQuery = "SELECT sum, sumSq, seasons FROM " + outputPrefix.getFullMeasurementName() + "_inf";
-        InfluxQLQueryResult result = influx.query(database, selectFromQuery, start, end);
-
-        Map<TagValues, List<AggregatePoint>> baselines = result.getResults().stream()
-                .filter(Objects::nonNull)
-                .map(InfluxQLQueryResult.Result::getSeries)
-                .flatMap(List::stream)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toMap(
-                        series -> TagValues.from(series.getTags()),
-                        series -> decodeBaselinePoints(series)
-                ));
-        return baselines;
+    public long getIntervalIndex(long timestamp) {
+        return timestamp / precisionMillis;
     }
 
-    private List<AggregatePoint> decodeBaselinePoints(InfluxQLQueryResult.Series series) {
-        int timeIdx = series.getColumns().get("time");
-        int seasonsIdx = series.getColumns().get("seasons");
-        int sumIdx = series.getColumns().get("sum");
-        int sumSqIdx = series.getColumns().get("sumSq");
-
-        List<AggregatePoint> baselinePoints = new ArrayList<>();
-
-        for (InfluxQLQueryResult.Series.Record record : series.getValues()) {
-            Object[] values = record.getValues();
-            Object time = values[timeIdx];
-            Object seasons = values[seasonsIdx];
-            Object sum = values[sumIdx];
-            Object sumSq = values[sumSqIdx];
-
-            if (time instanceof Number && seasons instanceof Number && sum instanceof Number && sumSq instanceof Number) {
-                AggregatePoint pt = AggregatePoint.builder()
-                        .time(((Number) time).longValue())
-                        .count(((Number) seasons).longValue())
-                        .valuesSum(((Number) sum).doubleValue())
-                        .squaredValuesSum(((Number) sumSq).doubleValue())
-                        .build();
-                baselinePoints.add(pt);
-            }
+    /**
+     * @param timestamp the timestamp since the epoch
+     * @return the start timestamp of the interval following the interval in which the given timestamp lies
+     */
+    public long getNextIntervalStart(long timestamp) {
+        return (getIntervalIndex(timestamp) + 1) * precisionMillis;
+    }
 
-            try {
-                // convert ns to ms
-                long timeValue = Long.parseLong(time.toString()) / 1000 / 1000;
-                long countValue = Long.parseLong(seasons.toString());
-                double sumValue = Double.parseDouble(sum.toString());
-                double sumSqValue = Double.parseDouble(sumSq.toString());
-                AggregatePoint pt = AggregatePoint.builder()
-                        .time(timeValue)
-                        .count(countValue)
-                        .valuesSum(sumValue)
-                        .squaredValuesSum(sumSqValue)
-                        .build();
-                baselinePoints.add(pt);
-            } catch (NumberFormatException e) {
-                // Ignore value
-            }
-        }
-        return baselinePoints;
+    /**
+     * Derives up to which point in time the baselines have been computed.
+     * If multiple seasonalities are configured, the most advanced one is used,
+     * because seasonalities added to an existing definition have no progress yet.
+     *
+     * @param sinceMillis the timestamp since the epoch from which on to look for baselines
+     * @return the end timestamp of the last updated interval, if any infinity baseline has been written since the given timestamp
+     * @throws java.io.UncheckedIOException if influx could not be queried
+     */
+    public OptionalLong findLastUpdatedTimestamp(long sinceMillis) {
+        return seasonals.stream()
+                .map(seasonal -> seasonal.findLastUpdatedTimestamp(sinceMillis))
+                .filter(OptionalLong::isPresent)
+                .mapToLong(OptionalLong::getAsLong)
+                .max();
     }
 
 }
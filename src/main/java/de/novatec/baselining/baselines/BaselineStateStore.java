@@ -0,0 +1,88 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Holds the infinity baseline points of a {@link BaselineGenerator} for a limited number of recent intervals,
+ * so that they do not have to be queried from influx on every update.
+ * Because infinity baselines are cumulative, they act as a prefix sum:
+ * the baseline of any window is the difference of two stored points.
+ * <p>
+ * A store tracks for which intervals it is complete:
+ * for these intervals, a series without a point in the store has no baseline point at all.
+ */
+public interface BaselineStateStore {
+
+    /**
+     * Creates the store for a single generator.
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * @param id              the id of the generator the store belongs to
+         * @param precisionMillis the interval length of the generator
+         * @param capacity        the number of intervals to keep per series
+         * @return the store for the generator
+         */
+        BaselineStateStore create(String id, long precisionMillis, int capacity);
+    }
+
+    /**
+     * @return false, if the store has been disabled and the baselines have to be queried from influx
+     */
+    boolean isEnabled();
+
+    /**
+     * @param startInterval the first interval (inclusive)
+     * @param endInterval   the last interval (exclusive)
+     * @return true, if the store is complete for all intervals within the range
+     */
+    boolean contains(long startInterval, long endInterval);
+
+    /**
+     * Returns the stored baseline points for the given interval range, if the store is complete for all of them.
+     *
+     * @param startInterval the first interval (inclusive)
+     * @param endInterval   the last interval (exclusive)
+     * @return the baseline points of all series within the range, empty if not all intervals are stored
+     */
+    Optional<Map<TagValues, List<AggregatePoint>>> get(long startInterval, long endInterval);
+
+    /**
+     * Stores all baseline points for the given interval range.
+     * Series which are not contained in the given points are known to have no baseline within the range afterwards.
+     * Intervals which are older than the ones already stored are ignored.
+     *
+     * @param points        the baseline points of all series, which must lie within the given range
+     * @param startInterval the first interval (inclusive)
+     * @param endInterval   the last interval (exclusive)
+     */
+    void put(Map<TagValues, List<AggregatePoint>> points, long startInterval, long endInterval);
+
+    /**
+     * @return the newest interval for which the store is complete, if any
+     */
+    default OptionalLong getNewestInterval() {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * @return true, if the stored state survives restarts
+     */
+    default boolean isPersistent() {
+        return false;
+    }
+
+    /**
+     * Releases all resources held by the store.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,425 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Stores the infinity baseline points of a {@link BaselineGenerator} in a memory-mapped file,
+ * so that the state lives off-heap and survives restarts.
+ * <p>
+ * The state file starts with a header and the table of complete intervals (one long per slot),
+ * followed by fixed-size records (interval, values sum, squared values sum, count) for every series and slot.
+ * The records of a series are contiguous, the file is mapped in segments of at most 1GB.
+ * The last segment is only mapped as far as required by the series and grows with their number.
+ * Intervals are stored incremented by one, so that zero-filled regions of the file denote empty slots.
+ * If the capacity changes (e.g. because max-update-intervals has been changed), the stored intervals which still fit
+ * are copied into a new file with the new capacity.
+ * <p>
+ * The tags of the series are appended to a separate series file, the position in this file is the index of a series.
+ * <p>
+ * Writing back the modified pages is left to the operating system, they are only forced to disk when the store is closed.
+ */
+@Slf4j
+public class MappedStateStore implements BaselineStateStore {
+
+    private static final int MAGIC = 0x424c5354;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+
+    private static final int RECORD_BYTES = 32;
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final long PAGE_BYTES = 4096;
+
+    /**
+     * The number of series for which the last segment is mapped initially, it is doubled whenever it is exceeded.
+     */
+    private static final int MIN_MAPPED_SERIES = 16;
+
+    private final String id;
+
+    private final long precisionMillis;
+
+    private final int capacity;
+
+    private final Path seriesFile;
+
+    private final FileChannel channel;
+
+    /**
+     * The header followed by the table of complete intervals.
+     */
+    private final MappedByteBuffer table;
+
+    private final long recordsOffset;
+
+    private final int seriesPerSegment;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The number of series for which the last segment is mapped.
+     */
+    private int lastSegmentSeries = 0;
+
+    private final Map<TagValues, Integer> seriesIndices = new HashMap<>();
+
+    private final DataOutputStream seriesOut;
+
+    /**
+     * @param directory       the directory containing the state files
+     * @param id              the id of the generator the store belongs to
+     * @param precisionMillis the interval length of the generator
+     * @param capacity        the number of intervals to keep per series
+     * @param discardIncompatible true, if a stored state with a different precision may be discarded,
+     *                            because the infinity baselines are written to influx as well
+     * @throws IllegalStateException if the stored state is incompatible and must not be discarded
+     */
+    public MappedStateStore(Path directory, String id, long precisionMillis, int capacity, boolean discardIncompatible) throws IOException {
+        this.id = id;
+        this.precisionMillis = precisionMillis;
+        this.capacity = capacity;
+
+        String fileName = id.replaceAll("[^A-Za-z0-9_.-]", "_");
+        Path dataFile = directory.resolve(fileName + ".state");
+        this.seriesFile = directory.resolve(fileName + ".series");
+
+        long tableBytes = HEADER_BYTES + (long) capacity * Long.BYTES;
+        this.recordsOffset = (tableBytes + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+        this.seriesPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / ((long) capacity * RECORD_BYTES));
+
+        Files.createDirectories(directory);
+        int storedCapacity = readStoredCapacity(dataFile);
+        if (storedCapacity > 0 && storedCapacity != capacity) {
+            migrate(dataFile, storedCapacity);
+            storedCapacity = capacity;
+        }
+        boolean compatible = storedCapacity == capacity;
+        if (!compatible) {
+            if (Files.exists(dataFile)) {
+                if (!discardIncompatible) {
+                    // the stored state is the only copy of the infinity baselines, discarding it would silently reset them
+                    throw new IllegalStateException("The stored state of '" + id + "' in '" + dataFile + "' does not match the precision "
+                            + "of the baseline. Restore the previous configuration or delete the state files to recompute the baseline.");
+                }
+                log.warn("Discarding the stored state of '{}', because the precision has changed", id);
+            }
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(seriesFile);
+        }
+
+        this.channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, tableBytes);
+        if (!compatible) {
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            table.putLong(8, precisionMillis);
+            table.putInt(16, capacity);
+            table.force();
+        }
+
+        loadSeries();
+        this.seriesOut = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(seriesFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        log.info("Opened stored state of '{}' with {} series", id, seriesIndices.size());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public synchronized OptionalLong getNewestInterval() {
+        long newest = -1;
+        for (int slot = 0; slot < capacity; slot++) {
+            newest = Math.max(newest, getCompleteInterval(slot));
+        }
+        return newest >= 0 ? OptionalLong.of(newest) : OptionalLong.empty();
+    }
+
+    @Override
+    public synchronized boolean contains(long startInterval, long endInterval) {
+        if (endInterval - startInterval > capacity) {
+            return false;
+        }
+        for (long interval = startInterval; interval < endInterval; interval++) {
+            if (getCompleteInterval(slot(interval)) != interval) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Optional<Map<TagValues, List<AggregatePoint>>> get(long startInterval, long endInterval) {
+        if (!contains(startInterval, endInterval)) {
+            return Optional.empty();
+        }
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        seriesIndices.forEach((tags, series) -> {
+            MappedByteBuffer segment = segments.get(series / seriesPerSegment);
+            List<AggregatePoint> points = new ArrayList<>();
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                int position = position(series, slot(interval));
+                if (segment.getLong(position) == interval + 1) {
+                    points.add(new AggregatePoint(interval * precisionMillis,
+                            segment.getDouble(position + 8),
+                            segment.getDouble(position + 16),
+                            segment.getLong(position + 24)));
+                }
+            }
+            if (!points.isEmpty()) {
+                result.put(tags, points);
+            }
+        });
+        return Optional.of(result);
+    }
+
+    @Override
+    public synchronized void put(Map<TagValues, List<AggregatePoint>> points, long startInterval, long endInterval) {
+        try {
+            for (TagValues tags : points.keySet()) {
+                if (!seriesIndices.containsKey(tags)) {
+                    addSeries(tags);
+                }
+            }
+            seriesOut.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not add series to the stored state of '" + id + "'", e);
+        }
+
+        for (long interval = startInterval; interval < endInterval; interval++) {
+            int slot = slot(interval);
+            if (getCompleteInterval(slot) <= interval) {
+                table.putLong(HEADER_BYTES + slot * Long.BYTES, interval + 1);
+                // records of older intervals are ignored when reading, so only a previous put of the same interval has to be removed
+                for (int series : seriesIndices.values()) {
+                    MappedByteBuffer segment = segments.get(series / seriesPerSegment);
+                    int position = position(series, slot);
+                    if (segment.getLong(position) == interval + 1) {
+                        segment.putLong(position, 0);
+                    }
+                }
+            }
+        }
+        points.forEach((tags, seriesPoints) -> {
+            int series = seriesIndices.get(tags);
+            MappedByteBuffer segment = segments.get(series / seriesPerSegment);
+            for (AggregatePoint point : seriesPoints) {
+                long interval = point.getTime() / precisionMillis;
+                if (interval >= startInterval && interval < endInterval && getCompleteInterval(slot(interval)) == interval) {
+                    int position = position(series, slot(interval));
+                    segment.putLong(position, interval + 1);
+                    segment.putDouble(position + 8, point.getValuesSum());
+                    segment.putDouble(position + 16, point.getSquaredValuesSum());
+                    segment.putLong(position + 24, point.getCount());
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            segments.forEach(MappedByteBuffer::force);
+            table.force();
+            seriesOut.close();
+            channel.close();
+        } catch (IOException e) {
+            log.error("Could not close the stored state of '{}'", id, e);
+        }
+    }
+
+    /**
+     * @return the capacity of the stored state, -1 if there is none or it is incompatible regardless of the capacity
+     */
+    private int readStoredCapacity(Path dataFile) throws IOException {
+        if (!Files.exists(dataFile) || Files.size(dataFile) < HEADER_BYTES) {
+            return -1;
+        }
+        try (FileChannel existing = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            existing.read(header, 0);
+            boolean compatible = header.getInt(0) == MAGIC
+                    && header.getInt(4) == VERSION
+                    && header.getLong(8) == precisionMillis
+                    && header.getInt(16) > 0;
+            return compatible ? header.getInt(16) : -1;
+        }
+    }
+
+    /**
+     * Copies the stored state into a file with the current capacity, which then replaces the stored file.
+     * If the capacity has been reduced, only the newest intervals are kept. The series file is not affected,
+     * because the series keep their indices.
+     */
+    private void migrate(Path dataFile, int storedCapacity) throws IOException {
+        Path migratedFile = dataFile.resolveSibling(dataFile.getFileName() + ".migrating");
+        try (FileChannel stored = FileChannel.open(dataFile, StandardOpenOption.READ);
+             FileChannel migrated = FileChannel.open(migratedFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            ByteBuffer storedTable = ByteBuffer.allocate(HEADER_BYTES + storedCapacity * Long.BYTES);
+            readFully(stored, storedTable, 0);
+            long newest = -1;
+            for (int slot = 0; slot < storedCapacity; slot++) {
+                newest = Math.max(newest, storedTable.getLong(HEADER_BYTES + slot * Long.BYTES) - 1);
+            }
+            // distinct intervals within the capacity map to distinct slots
+            long keptAfter = newest - capacity;
+            List<Long> keptIntervals = new ArrayList<>();
+            ByteBuffer table = ByteBuffer.allocate(HEADER_BYTES + capacity * Long.BYTES);
+            table.put(storedTable.array(), 0, HEADER_BYTES);
+            table.putInt(16, capacity);
+            for (int slot = 0; slot < storedCapacity; slot++) {
+                long interval = storedTable.getLong(HEADER_BYTES + slot * Long.BYTES) - 1;
+                if (interval >= 0 && interval > keptAfter) {
+                    keptIntervals.add(interval);
+                    table.putLong(HEADER_BYTES + slot(interval) * Long.BYTES, interval + 1);
+                }
+            }
+            writeFully(migrated, table.clear(), 0);
+
+            long storedRecordsOffset = (HEADER_BYTES + (long) storedCapacity * Long.BYTES + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+            long storedSeriesBytes = (long) storedCapacity * RECORD_BYTES;
+            long seriesCount = (stored.size() - storedRecordsOffset + storedSeriesBytes - 1) / storedSeriesBytes;
+            ByteBuffer storedRecords = ByteBuffer.allocate((int) storedSeriesBytes);
+            ByteBuffer records = ByteBuffer.allocate(capacity * RECORD_BYTES);
+            for (long series = 0; series < seriesCount; series++) {
+                // the records of a series are contiguous, also across segments
+                storedRecords.clear();
+                readFully(stored, storedRecords, storedRecordsOffset + series * storedSeriesBytes);
+                records.clear();
+                Arrays.fill(records.array(), (byte) 0);
+                for (long interval : keptIntervals) {
+                    int storedPosition = (int) Math.floorMod(interval, (long) storedCapacity) * RECORD_BYTES;
+                    if (storedRecords.getLong(storedPosition) == interval + 1) {
+                        records.put(slot(interval) * RECORD_BYTES, storedRecords.array(), storedPosition, RECORD_BYTES);
+                    }
+                }
+                writeFully(migrated, records, recordsOffset + series * capacity * RECORD_BYTES);
+            }
+            migrated.force(true);
+        }
+        Files.move(migratedFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Migrated the stored state of '{}' from {} to {} intervals per series", id, storedCapacity, capacity);
+    }
+
+    /**
+     * Reads until the buffer is full, the remainder beyond the end of the file is left zero-filled.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Reads the tags of all series from the series file.
+     * A partially written last entry (e.g. due to a crash) is removed.
+     */
+    private void loadSeries() throws IOException {
+        if (!Files.exists(seriesFile)) {
+            return;
+        }
+        byte[] content = Files.readAllBytes(seriesFile);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        long validBytes = 0;
+        try {
+            while (in.available() > 0) {
+                int tagCount = in.readInt();
+                Map<String, String> tags = new HashMap<>();
+                for (int i = 0; i < tagCount; i++) {
+                    tags.put(in.readUTF(), in.readUTF());
+                }
+                registerSeries(TagValues.from(tags));
+                validBytes = content.length - in.available();
+            }
+        } catch (EOFException e) {
+            log.warn("Removing incomplete series entry from '{}'", seriesFile);
+            try (FileChannel seriesChannel = FileChannel.open(seriesFile, StandardOpenOption.WRITE)) {
+                seriesChannel.truncate(validBytes);
+            }
+        }
+    }
+
+    private void addSeries(TagValues tags) throws IOException {
+        seriesOut.writeInt(tags.getTags().size());
+        for (Map.Entry<String, String> tag : tags.getTags().entrySet()) {
+            seriesOut.writeUTF(tag.getKey());
+            seriesOut.writeUTF(tag.getValue());
+        }
+        registerSeries(tags);
+    }
+
+    private void registerSeries(TagValues tags) throws IOException {
+        int series = seriesIndices.size();
+        seriesIndices.put(tags, series);
+        int segment = series / seriesPerSegment;
+        int required = series % seriesPerSegment + 1;
+        if (segment == segments.size() - 1 && required <= lastSegmentSeries) {
+            return;
+        }
+        if (segment == segments.size()) {
+            // series are registered in order, so the previous segment is full
+            if (segment > 0 && lastSegmentSeries < seriesPerSegment) {
+                segments.set(segment - 1, mapSegment(segment - 1, seriesPerSegment));
+            }
+            segments.add(null);
+            lastSegmentSeries = 0;
+        }
+        int mapped = Math.min(seriesPerSegment, Math.max(required, Math.max(MIN_MAPPED_SERIES, lastSegmentSeries * 2)));
+        segments.set(segment, mapSegment(segment, mapped));
+        lastSegmentSeries = mapped;
+    }
+
+    /**
+     * Maps the records of the given number of series of a segment, the file grows accordingly.
+     * The previous mapping of the segment is replaced, it shares the same pages.
+     */
+    private MappedByteBuffer mapSegment(int segment, int seriesCount) throws IOException {
+        long offset = recordsOffset + segment * (long) seriesPerSegment * capacity * RECORD_BYTES;
+        return channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) seriesCount * capacity * RECORD_BYTES);
+    }
+
+    private long getCompleteInterval(int slot) {
+        return table.getLong(HEADER_BYTES + slot * Long.BYTES) - 1;
+    }
+
+    private int slot(long interval) {
+        return (int) Math.floorMod(interval, (long) capacity);
+    }
+
+    private int position(int series, int slot) {
+        return ((series % seriesPerSegment) * capacity + slot) * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,557 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.config.measurement.MeasurementName;
+import de.novatec.baselining.data.AggregateAccumulator;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.QuantileSketch;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.influx.InfluxAccess;
+import de.novatec.baselining.influx.InfluxUtils;
+import de.novatec.baselining.influx.InfluxWrite;
+import de.novatec.baselining.influx.LinePrefixCache;
+import de.novatec.baselining.influx.LineProtocolEncoder;
+import de.novatec.baselining.influx.SeriesColumns;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Computes and writes the infinity and windowed baselines of a single seasonality.
+ * The data to baseline is provided by the owning {@link BaselineGenerator}, so that multiple seasonalities can share it.
+ */
+@Slf4j
+class SeasonalBaseline {
+
+    /**
+     * The quantiles written for baselines with sketches, by field name.
+     */
+    private static final Map<String, Double> QUANTILE_FIELDS = Map.of("p50", 0.5, "p95", 0.95, "p99", 0.99);
+
+    private InfluxAccess influx;
+
+    private long precisionMillis;
+
+    private long seasonalityMillis;
+
+    private List<Long> windowMillis;
+
+    private MeasurementName outputPrefix;
+
+    /**
+     * Holds the infinity baselines of the largest window, null if they are always queried from influx.
+     * Because infinity baselines are cumulative, the baseline of any window can be computed from it.
+     */
+    private BaselineStateStore stateStore;
+
+    /**
+     * The number of intervals held by the {@link #stateStore}.
+     */
+    private int stateCapacity;
+
+    private int maxUpdateIntervals;
+
+    /**
+     * False, if the infinity baselines are only kept in the persistent {@link #stateStore}.
+     */
+    private boolean writeInfinityBaselines;
+
+    /**
+     * True, if the data contains quantile sketches, which then are part of the infinity baselines as well.
+     */
+    private boolean sketches;
+
+    /**
+     * Selects the series computed by this instance, null if all series are computed.
+     * The infinity baselines of other series are written by other instances and must be ignored when reading them from influx.
+     */
+    private Predicate<TagValues> seriesFilter;
+
+    private LinePrefixCache infinityPrefixes;
+
+    /**
+     * The line prefixes of the windowed baselines, by window.
+     */
+    private Map<Long, LinePrefixCache> windowPrefixes = new HashMap<>();
+
+    /**
+     * @param influx                 the influx access
+     * @param outputPrefix           the output measurement, suffixed with the window of each baseline
+     * @param precisionMillis        the precision of the baselines
+     * @param seasonalityMillis      the seasonality of the baselines
+     * @param windowMillis           the windows for which baselines are written
+     * @param stateStoreFactory      creates the store for the infinity baselines, null to always query them from influx
+     * @param maxUpdateIntervals     the maximum number of intervals computed in a single update
+     * @param writeInfinityBaselines false, if the infinity baselines should not be written to influx (requires a persistent state store)
+     * @param sketches               true, if the data contains quantile sketches
+     * @param seriesFilter           selects the series computed by this instance, null to compute all series
+     */
+    SeasonalBaseline(InfluxAccess influx, MeasurementName outputPrefix, long precisionMillis, long seasonalityMillis, List<Long> windowMillis,
+                     BaselineStateStore.Factory stateStoreFactory, int maxUpdateIntervals, boolean writeInfinityBaselines, boolean sketches,
+                     Predicate<TagValues> seriesFilter) {
+        this.influx = influx;
+        this.seriesFilter = seriesFilter;
+        this.sketches = sketches;
+        this.outputPrefix = outputPrefix;
+        this.precisionMillis = precisionMillis;
+        this.seasonalityMillis = seasonalityMillis;
+        this.windowMillis = windowMillis;
+        this.maxUpdateIntervals = maxUpdateIntervals;
+        this.infinityPrefixes = new LinePrefixCache(outputPrefix.getMeasurement() + "_inf");
+        for (long window : windowMillis) {
+            windowPrefixes.put(window, new LinePrefixCache(outputPrefix.getMeasurement() + "_" + InfluxUtils.prettyPrintDuration(window)));
+        }
+        if (stateStoreFactory != null) {
+            long retainedMillis = Math.max(seasonalityMillis, getMaxWindowMillis());
+            stateCapacity = (int) getIntervalIndex(retainedMillis) + maxUpdateIntervals + 1;
+            if (!writeInfinityBaselines) {
+                // the updates which have not been written yet must not displace the baselines read by rollups,
+                // see BaselineGenerator#getMaxUnwrittenMillis()
+                stateCapacity += maxUpdateIntervals;
+            }
+            this.stateStore = stateStoreFactory.create(outputPrefix.getFullMeasurementName(), precisionMillis, stateCapacity);
+        }
+        this.writeInfinityBaselines = writeInfinityBaselines || stateStore == null || !stateStore.isPersistent();
+    }
+
+    /**
+     * Updates the baselines for the given range of input intervals.
+     *
+     * @param startInterval the first interval of the new data (inclusive)
+     * @param endInterval   the last interval of the new data (exclusive)
+     * @param newData       the new data to baseline, shared with other seasonalities and therefore not modified
+     */
+    void update(long startInterval, long endInterval, Map<TagValues, List<AggregatePoint>> newData) {
+        long seasonIntervalCount = getIntervalIndex(seasonalityMillis);
+        updateInfinityBaseline(startInterval, endInterval, newData);
+        for (long windowSize : windowMillis) {
+            updateWindowedBaseline(startInterval + seasonIntervalCount, endInterval + seasonIntervalCount, windowSize);
+        }
+    }
+
+    /**
+     * The infinity baseline of an interval one season ahead only differs from the one of the interval itself by the data of that interval.
+     *
+     * @param startInterval the first interval (inclusive)
+     * @param endInterval   the last interval (exclusive)
+     * @return the data of the given intervals, which has been used to update the baselines
+     * @throws IllegalStateException if the infinity baselines are only kept in the state store, which no longer holds the intervals
+     */
+    Map<TagValues, List<AggregatePoint>> getBaselinedData(long startInterval, long endInterval) {
+        long seasonIntervalCount = getIntervalIndex(seasonalityMillis);
+
+        Map<TagValues, List<AggregatePoint>> now = getRetainedInfinityBaselines(startInterval + seasonIntervalCount, endInterval + seasonIntervalCount);
+        Map<TagValues, List<AggregatePoint>> past = getRetainedInfinityBaselines(startInterval, endInterval);
+
+        Set<TagValues> allTags = new HashSet<>();
+        allTags.addAll(now.keySet());
+        allTags.addAll(past.keySet());
+
+        AggregateAccumulator data = new AggregateAccumulator();
+        AggregatePoint[] nowValues = new AggregatePoint[(int) (endInterval - startInterval)];
+        AggregatePoint[] pastValues = new AggregatePoint[nowValues.length];
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        for (TagValues tags : allTags) {
+            indexPointsByInterval(now.get(tags), startInterval + seasonIntervalCount, nowValues);
+            indexPointsByInterval(past.get(tags), startInterval, pastValues);
+
+            List<AggregatePoint> points = new ArrayList<>();
+            for (int slot = 0; slot < nowValues.length; slot++) {
+                if (computeDelta(pastValues[slot], nowValues[slot], data)) {
+                    points.add(data.shift(-seasonalityMillis).toPoint());
+                }
+            }
+            if (!points.isEmpty()) {
+                result.put(tags, points);
+            }
+        }
+        return result;
+    }
+
+    void close() {
+        if (stateStore != null) {
+            stateStore.close();
+        }
+    }
+
+    /**
+     * Derives up to which point in time the baselines of this seasonality have been computed from the newest infinity baseline point
+     * in the persistent state store or in influx.
+     * Infinity baseline points are shifted by one season, therefore the point for the last updated interval lies one season in the future.
+     *
+     * @param sinceMillis the timestamp since the epoch from which on to look for baselines
+     * @return the end timestamp of the last updated interval, if any infinity baseline has been written since the given timestamp
+     * @throws java.io.UncheckedIOException if influx could not be queried
+     */
+    OptionalLong findLastUpdatedTimestamp(long sinceMillis) {
+        OptionalLong stored = getStoredTimestamp();
+        if (stored.isPresent()) {
+            return stored;
+        }
+        long until = System.currentTimeMillis() + seasonalityMillis + precisionMillis;
+        String selectFromQuery = "SELECT LAST(seasons) FROM " + outputPrefix.getFullMeasurementName() + "_inf";
+        Map<TagValues, SeriesColumns> result = influx.query(outputPrefix.getDatabase(), selectFromQuery, sinceMillis + seasonalityMillis, until);
+
+        OptionalLong newestPointTime = result.entrySet().stream()
+                .filter(series -> seriesFilter == null || seriesFilter.test(series.getKey()))
+                .map(Map.Entry::getValue)
+                .filter(columns -> columns.size() > 0)
+                .mapToLong(columns -> columns.getTime(columns.size() - 1))
+                .max();
+
+        if (newestPointTime.isPresent()) {
+            return OptionalLong.of(newestPointTime.getAsLong() - seasonalityMillis + precisionMillis);
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * @return the end timestamp of the last updated interval according to the persistent state store, if it contains any baselines
+     */
+    OptionalLong getStoredTimestamp() {
+        if (stateStore != null && stateStore.isPersistent()) {
+            OptionalLong newestInterval = stateStore.getNewestInterval();
+            if (newestInterval.isPresent()) {
+                return OptionalLong.of((newestInterval.getAsLong() + 1) * precisionMillis - seasonalityMillis);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * @return true, if the infinity baselines are not written to influx, but only kept in the persistent state store
+     */
+    boolean isStateOnlyStored() {
+        return !writeInfinityBaselines;
+    }
+
+    private void updateInfinityBaseline(long startInterval, long endInterval, Map<TagValues, List<AggregatePoint>> newData) {
+        long seasonIntervalCount = getIntervalIndex(seasonalityMillis);
+
+        long previousRelevant = Math.min(endInterval, startInterval + seasonIntervalCount);
+        Map<TagValues, List<AggregatePoint>> previousBaselines = getInfinityBaselines(startInterval, previousRelevant);
+
+        Set<TagValues> allTags = new HashSet<>();
+        allTags.addAll(previousBaselines.keySet());
+        allTags.addAll(newData.keySet());
+
+        Map<TagValues, List<AggregatePoint>> newBaselines = new HashMap<>();
+        AggregatePoint[] baselineSlots = new AggregatePoint[(int) (endInterval - startInterval)];
+        AggregatePoint[] dataSlots = new AggregatePoint[baselineSlots.length];
+
+        try (InfluxWrite.Batch batch = writeInfinityBaselines ? influx.openBatch(outputPrefix.getDatabase()) : null) {
+            for (TagValues tags : allTags) {
+                indexPointsByInterval(previousBaselines.get(tags), startInterval, baselineSlots);
+                indexPointsByInterval(newData.get(tags), startInterval, dataSlots);
+
+                List<AggregatePoint> outputPoints = generateInfinityBaselineSeriesWithNewData(startInterval, baselineSlots, dataSlots);
+                newBaselines.put(tags, outputPoints);
+                if (batch != null) {
+                    writeBaselinePoints(batch, infinityPrefixes.get(tags), outputPoints);
+                }
+            }
+        }
+
+        if (stateStore != null) {
+            stateStore.put(newBaselines, startInterval + seasonIntervalCount, endInterval + seasonIntervalCount);
+        }
+    }
+
+    private long getIntervalIndex(long timestamp) {
+        return timestamp / precisionMillis;
+    }
+
+    private long getMaxWindowMillis() {
+        return windowMillis.stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * Makes sure that all infinity baselines read by the update starting at the given interval are in the state store.
+     * These are the baselines of the largest window preceding the first interval written by the update.
+     * They are final, because the update itself only writes the subsequent intervals.
+     * If they are not stored (e.g. after a restart), they are queried from influx once.
+     */
+    void warmUpStateCache(long startInterval) {
+        if (stateStore != null && stateStore.isEnabled()) {
+            long end = startInterval + getIntervalIndex(seasonalityMillis);
+            long start = end - getIntervalIndex(Math.max(seasonalityMillis, getMaxWindowMillis()));
+            if (!stateStore.contains(start, end)) {
+                Map<TagValues, List<AggregatePoint>> baselines = fetchInfinityBaselines(outputPrefix.getDatabase(), start, end);
+                stateStore.put(baselines, start, end);
+            }
+        }
+    }
+
+    /**
+     * Provides the infinity baselines for the given interval range from the state store, or from influx if they are not stored.
+     */
+    private Map<TagValues, List<AggregatePoint>> getInfinityBaselines(long startInterval, long endInterval) {
+        if (stateStore != null) {
+            Optional<Map<TagValues, List<AggregatePoint>>> cached = stateStore.get(startInterval, endInterval);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        return fetchInfinityBaselines(outputPrefix.getDatabase(), startInterval, endInterval);
+    }
+
+    /**
+     * Provides the infinity baselines like {@link #getInfinityBaselines(long, long)}, but never falls back to influx
+     * if they are not written there. Within the intervals retained by the state store, intervals which are not stored
+     * precede the first update and have no baselines. Older intervals have been displaced and can not be provided at all.
+     *
+     * @throws IllegalStateException if the state store no longer holds the intervals
+     */
+    private Map<TagValues, List<AggregatePoint>> getRetainedInfinityBaselines(long startInterval, long endInterval) {
+        if (writeInfinityBaselines) {
+            return getInfinityBaselines(startInterval, endInterval);
+        }
+        OptionalLong newestInterval = stateStore.getNewestInterval();
+        if (newestInterval.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (startInterval <= newestInterval.getAsLong() - stateCapacity) {
+            throw new IllegalStateException("The infinity baselines of '" + outputPrefix.getFullMeasurementName() + "' since "
+                    + new Date(startInterval * precisionMillis) + " are no longer held by the state store and have not been written to influx");
+        }
+        long firstStored = startInterval;
+        while (firstStored < endInterval && !stateStore.contains(firstStored, firstStored + 1)) {
+            firstStored++;
+        }
+        if (firstStored == endInterval) {
+            return Collections.emptyMap();
+        }
+        long from = firstStored;
+        return stateStore.get(from, endInterval).orElseThrow(() -> new IllegalStateException("The state store of '"
+                + outputPrefix.getFullMeasurementName() + "' is incomplete since " + new Date(from * precisionMillis)));
+    }
+
+    /**
+     * @return the range preceding the written baselines for which {@link #getBaselinedData(long, long)} can reconstruct the data,
+     * {@link Long#MAX_VALUE} if the infinity baselines are written to influx
+     */
+    long getBaselinedDataRetentionMillis() {
+        if (writeInfinityBaselines) {
+            return Long.MAX_VALUE;
+        }
+        // the baselines of the following season and the ones computed ahead of the written ones occupy the remaining intervals
+        return (stateCapacity - maxUpdateIntervals - getIntervalIndex(seasonalityMillis)) * precisionMillis;
+    }
+
+    /**
+     * @param startInterval the interval of the first slot
+     * @param baselineSlots the previous infinity baselines per interval, updated with the new ones
+     * @param dataSlots     the new data per interval
+     * @return the new infinity baselines
+     */
+    private List<AggregatePoint> generateInfinityBaselineSeriesWithNewData(long startInterval, AggregatePoint[] baselineSlots, AggregatePoint[] dataSlots) {
+        List<AggregatePoint> outputPoints = new ArrayList<>();
+        AggregateAccumulator accumulator = new AggregateAccumulator();
+
+        for (int slot = 0; slot < baselineSlots.length; slot++) {
+
+            AggregatePoint previousBaseline = baselineSlots[slot];
+            AggregatePoint newValue = dataSlots[slot];
+
+            if (incrementBaseline(previousBaseline, newValue, accumulator)) {
+                AggregatePoint resultBaseline = accumulator.toPoint();
+                // baselines of ranges longer than a season are the previous baselines of the later intervals
+                long resultSlot = getIntervalIndex(resultBaseline.getTime()) - startInterval;
+                if (resultSlot >= 0 && resultSlot < baselineSlots.length) {
+                    baselineSlots[(int) resultSlot] = resultBaseline;
+                }
+                outputPoints.add(resultBaseline);
+            }
+        }
+
+        return outputPoints;
+    }
+
+    private void updateWindowedBaseline(long startInterval, long endInterval, long windowDuration) {
+        long windowIntervalCount = windowDuration / precisionMillis;
+
+        Map<TagValues, List<AggregatePoint>> now = getInfinityBaselines(startInterval, endInterval);
+        Map<TagValues, List<AggregatePoint>> past = getInfinityBaselines(startInterval - windowIntervalCount, endInterval - windowIntervalCount);
+
+        Set<TagValues> allTags = new HashSet<>();
+        allTags.addAll(now.keySet());
+        allTags.addAll(past.keySet());
+
+        LinePrefixCache prefixes = windowPrefixes.get(windowDuration);
+        AggregateAccumulator resultBaseline = new AggregateAccumulator();
+        AggregatePoint[] nowValues = new AggregatePoint[(int) (endInterval - startInterval)];
+        AggregatePoint[] pastValues = new AggregatePoint[nowValues.length];
+
+        try (InfluxWrite.Batch batch = influx.openBatch(outputPrefix.getDatabase())) {
+            for (TagValues tags : allTags) {
+                indexPointsByInterval(now.get(tags), startInterval, nowValues);
+                indexPointsByInterval(past.get(tags), startInterval - windowIntervalCount, pastValues);
+                byte[] prefix = prefixes.get(tags);
+
+                for (int slot = 0; slot < nowValues.length; slot++) {
+
+                    AggregatePoint previousPoint = pastValues[slot];
+                    AggregatePoint nowPoint = nowValues[slot];
+
+                    if (computeDelta(previousPoint, nowPoint, resultBaseline)) {
+                        writeBaselinePoint(batch, prefix, resultBaseline, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the difference between two infinity baselines into the given accumulator.
+     *
+     * @return false, if there is no difference (the accumulator contains garbage in this case)
+     */
+    private boolean computeDelta(AggregatePoint firstPoint, AggregatePoint secondPoint, AggregateAccumulator result) {
+        if (secondPoint == null) {
+            return false;
+        }
+        result.set(secondPoint);
+        if (firstPoint != null) {
+            result.subtract(firstPoint);
+        }
+        return firstPoint == null || result.getCount() > 0;
+    }
+
+    private void writeBaselinePoints(InfluxWrite.Batch batch, byte[] prefix, List<AggregatePoint> outputPoints) {
+        AggregateAccumulator accumulator = new AggregateAccumulator();
+        for (AggregatePoint pt : outputPoints) {
+            writeBaselinePoint(batch, prefix, accumulator.set(pt), true);
+        }
+    }
+
+    /**
+     * Adds the value of the new season to the previous infinity baseline and shifts the result to the next season.
+     *
+     * @return false, if both are missing (the accumulator is left unchanged in this case)
+     */
+    private boolean incrementBaseline(AggregatePoint previousBaseline, AggregatePoint newSeasonValue, AggregateAccumulator result) {
+        if (newSeasonValue != null) {
+            if (previousBaseline == null || previousBaseline.getCount() == 0) {
+                result.set(newSeasonValue);
+            } else {
+                result.set(previousBaseline).add(newSeasonValue);
+            }
+        } else if (previousBaseline != null) {
+            result.set(previousBaseline);
+        } else {
+            return false;
+        }
+        result.shift(seasonalityMillis);
+        return true;
+    }
+
+    /**
+     * Places the given points into the slots of their intervals, the first slot corresponding to the given interval.
+     * Slots without a point are cleared, points outside of the slots are ignored.
+     */
+    private void indexPointsByInterval(Collection<AggregatePoint> points, long firstInterval, AggregatePoint[] slots) {
+        Arrays.fill(slots, null);
+        if (points != null) {
+            for (AggregatePoint pt : points) {
+                long slot = getIntervalIndex(pt.getTime()) - firstInterval;
+                if (slot >= 0 && slot < slots.length) {
+                    if (slots[(int) slot] != null) {
+                        throw new IllegalArgumentException("Input point set contains multiple points falling into the same interval!");
+                    }
+                    slots[(int) slot] = pt;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param prefix            the line prefix of the series
+     * @param includeAggregates true, if the fields required to restore the point should be written (infinity baselines)
+     */
+    private void writeBaselinePoint(InfluxWrite.Batch batch, byte[] prefix, AggregateAccumulator pt, boolean includeAggregates) {
+        if (pt.getCount() == 0) {
+            return;
+        }
+        double value = pt.getAvgValue();
+        double stddev = Math.sqrt(Math.max(0, pt.getAvgSquaredValue() - value * value));
+
+        LineProtocolEncoder line = batch.startLine(prefix)
+                .field("value", value)
+                .field("stddev", stddev)
+                .field("seasons", pt.getCount());
+
+        QuantileSketch sketch = pt.getSketch();
+        if (sketch != null && sketch.getCount() > 0) {
+            QUANTILE_FIELDS.forEach((field, quantile) -> line.field(field, sketch.getQuantile(quantile)));
+        }
+        if (includeAggregates) {
+            line.field("sum", pt.getValuesSum())
+                    .field("sumSq", pt.getSquaredValuesSum());
+            if (sketch != null) {
+                line.field("sketch", Base64.getEncoder().encodeToString(sketch.encode()));
+            }
+        }
+        line.endLine(pt.getTime());
+    }
+
+    private Map<TagValues, List<AggregatePoint>> fetchInfinityBaselines(String database, long startIntervall, long endIntervall) {
+        long start = startIntervall * precisionMillis;
+        long end = endIntervall * precisionMillis;
+
+        String fields = sketches ? "sum, sumSq, seasons, sketch" : "sum, sumSq, seasons";
+        String selectFromQuery = "SELECT " + fields + " FROM " + outputPrefix.getFullMeasurementName() + "_inf";
+        Map<TagValues, SeriesColumns> result = influx.query(database, selectFromQuery, start, end);
+
+        Map<TagValues, List<AggregatePoint>> baselines = new HashMap<>();
+        result.forEach((tags, columns) -> {
+            if (seriesFilter == null || seriesFilter.test(tags)) {
+                baselines.put(tags, decodeBaselinePoints(columns));
+            }
+        });
+        return baselines;
+    }
+
+    private List<AggregatePoint> decodeBaselinePoints(SeriesColumns columns) {
+        int seasonsIdx = columns.indexOf("seasons");
+        int sumIdx = columns.indexOf("sum");
+        int sumSqIdx = columns.indexOf("sumSq");
+        int sketchIdx = columns.indexOf("sketch");
+
+        List<AggregatePoint> baselinePoints = new ArrayList<>(columns.size());
+        if (seasonsIdx < 0 || sumIdx < 0 || sumSqIdx < 0) {
+            return baselinePoints;
+        }
+        for (int row = 0; row < columns.size(); row++) {
+            double seasons = columns.getNumber(seasonsIdx, row);
+            double sum = columns.getNumber(sumIdx, row);
+            double sumSq = columns.getNumber(sumSqIdx, row);
+
+            if (!Double.isNaN(seasons) && !Double.isNaN(sum) && !Double.isNaN(sumSq)) {
+                AggregatePoint pt = AggregatePoint.builder()
+                        .time(columns.getTime(row))
+                        .count((long) seasons)
+                        .valuesSum(sum)
+                        .squaredValuesSum(sumSq)
+                        .sketch(sketchIdx < 0 ? null : decodeSketch(columns.getText(sketchIdx, row)))
+                        .build();
+                baselinePoints.add(pt);
+            }
+        }
+        return baselinePoints;
+    }
+
+    /**
+     * @return the sketch encoded in the given field value, null if there is none or it is invalid
+     */
+    private QuantileSketch decodeSketch(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return QuantileSketch.decode(Base64.getDecoder().decode(value));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid sketch in '{}_inf'", outputPrefix.getFullMeasurementName(), e);
+            return null;
+        }
+    }
+}
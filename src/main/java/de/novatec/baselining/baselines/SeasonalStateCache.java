@@ -0,0 +1,342 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.QuantileSketch;
+import de.novatec.baselining.data.TagValues;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the most recent infinity baseline points of a {@link BaselineGenerator} on the heap.
+ * The points of each series are stored in a ring buffer with one slot per interval.
+ * The number of points of all caches is limited by a shared {@link StateCacheBudget}, in which every stored sketch
+ * additionally counts as many points as would fill the memory of its buckets.
+ */
+@Slf4j
+public class SeasonalStateCache implements BaselineStateStore {
+
+    /**
+     * The budget points a sketch counts in addition to its buckets, covering its objects and array headers.
+     */
+    private static final long SKETCH_OVERHEAD_POINTS = 4;
+
+    /**
+     * A point in a {@link SeriesRing} takes 32 bytes, the same as four buckets of a sketch.
+     */
+    private static final int BUCKETS_PER_POINT = 4;
+
+    @Getter
+    private final String id;
+
+    private final long precisionMillis;
+
+    /**
+     * The number of intervals which are kept per series.
+     */
+    private final int capacity;
+
+    private final StateCacheBudget budget;
+
+    /**
+     * Used to make sure that eviction never happens while the cache is in use.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<TagValues, SeriesRing> series = new HashMap<>();
+
+    /**
+     * For every slot, the index of the interval for which the cache holds all series, -1 if unknown.
+     */
+    private final long[] completeIntervals;
+
+    /**
+     * Set to false, if the series of the generator alone exceed the budget.
+     * Updates which do not fit into the budget only temporarily, because other caches are in use, are not cached instead.
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * @param id              the id of the generator the cache belongs to
+     * @param precisionMillis the interval length of the generator
+     * @param capacity        the number of intervals to keep per series
+     * @param budget          the budget limiting the number of points held in memory
+     */
+    public SeasonalStateCache(String id, long precisionMillis, int capacity, StateCacheBudget budget) {
+        this.id = id;
+        this.precisionMillis = precisionMillis;
+        this.capacity = capacity;
+        this.budget = budget;
+        this.completeIntervals = new long[capacity];
+        Arrays.fill(completeIntervals, -1);
+    }
+
+    @Override
+    public Optional<Map<TagValues, List<AggregatePoint>>> get(long startInterval, long endInterval) {
+        lock.lock();
+        try {
+            if (!enabled || !contains(startInterval, endInterval)) {
+                return Optional.empty();
+            }
+            budget.touch(this);
+            Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+            series.forEach((tags, ring) -> {
+                List<AggregatePoint> points = ring.get(startInterval, endInterval);
+                if (!points.isEmpty()) {
+                    result.put(tags, points);
+                }
+            });
+            return Optional.of(result);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long startInterval, long endInterval) {
+        lock.lock();
+        try {
+            if (!enabled || endInterval - startInterval > capacity) {
+                return false;
+            }
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                if (completeIntervals[slot(interval)] != interval) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Map<TagValues, List<AggregatePoint>> points, long startInterval, long endInterval) {
+        lock.lock();
+        try {
+            if (!enabled) {
+                return;
+            }
+            // the overwritten points are dropped in any case, so that their sketches do not count against this update
+            long releasedWeight = 0;
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                int slot = slot(interval);
+                if (completeIntervals[slot] <= interval) {
+                    completeIntervals[slot] = -1;
+                    for (SeriesRing ring : series.values()) {
+                        releasedWeight += ring.clear(slot, interval);
+                    }
+                }
+            }
+            budget.release(this, releasedWeight);
+
+            long newSeriesCount = points.keySet().stream().filter(tags -> !series.containsKey(tags)).count();
+            long sketchWeight = points.values().stream()
+                    .flatMap(List::stream)
+                    .filter(point -> point.getSketch() != null && isInRange(point, startInterval, endInterval))
+                    .mapToLong(point -> weightOf(point.getSketch()))
+                    .sum();
+            long requested = newSeriesCount * capacity + sketchWeight;
+            StateCacheBudget.Reservation reservation = requested == 0
+                    ? StateCacheBudget.Reservation.RESERVED
+                    : budget.reserve(this, requested);
+            if (reservation == StateCacheBudget.Reservation.EXCEEDS_BUDGET) {
+                log.warn("The state cache is too small for the baselines of '{}', they will be queried from influx", id);
+                enabled = false;
+                clear();
+                budget.release(this);
+                return;
+            } else if (reservation == StateCacheBudget.Reservation.EVICTION_BLOCKED) {
+                // the intervals are not marked as complete, so they are queried from influx until a later update fits into the budget
+                log.debug("Skipped caching the baselines of '{}', because no other cache could be evicted", id);
+                return;
+            }
+            budget.touch(this);
+            points.keySet().forEach(tags -> series.computeIfAbsent(tags, t -> new SeriesRing(capacity, startInterval)));
+
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                int slot = slot(interval);
+                if (completeIntervals[slot] == -1) {
+                    completeIntervals[slot] = interval;
+                }
+            }
+            // sketches which are not stored or replace another one give back their reservation
+            long unusedWeight = sketchWeight;
+            for (Map.Entry<TagValues, List<AggregatePoint>> entry : points.entrySet()) {
+                SeriesRing ring = series.get(entry.getKey());
+                for (AggregatePoint point : entry.getValue()) {
+                    long interval = point.getTime() / precisionMillis;
+                    if (isInRange(point, startInterval, endInterval) && completeIntervals[slot(interval)] == interval) {
+                        unusedWeight += ring.set(slot(interval), interval, point);
+                        if (point.getSketch() != null) {
+                            unusedWeight -= weightOf(point.getSketch());
+                        }
+                    }
+                }
+            }
+            budget.release(this, unusedWeight);
+            removeStaleSeries(endInterval);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Clears the cache, unless it is currently in use.
+     * Invoked by the {@link StateCacheBudget}, which takes care of releasing the reserved points.
+     *
+     * @return true, if the cache has been cleared
+     */
+    boolean tryEvict() {
+        if (lock.tryLock()) {
+            try {
+                clear();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all series which did not have any point within the capacity of the cache.
+     */
+    private void removeStaleSeries(long endInterval) {
+        long staleBefore = endInterval - capacity;
+        int sizeBefore = series.size();
+        long releasedWeight = 0;
+        Iterator<SeriesRing> rings = series.values().iterator();
+        while (rings.hasNext()) {
+            SeriesRing ring = rings.next();
+            if (ring.newestInterval < staleBefore) {
+                releasedWeight += capacity + ring.sketchWeight;
+                rings.remove();
+            }
+        }
+        if (releasedWeight > 0) {
+            budget.release(this, releasedWeight);
+        }
+    }
+
+    private void clear() {
+        series.clear();
+        Arrays.fill(completeIntervals, -1);
+    }
+
+    private int slot(long interval) {
+        return (int) Math.floorMod(interval, (long) capacity);
+    }
+
+    private boolean isInRange(AggregatePoint point, long startInterval, long endInterval) {
+        long interval = point.getTime() / precisionMillis;
+        return interval >= startInterval && interval < endInterval;
+    }
+
+    /**
+     * @return the number of budget points the given sketch counts
+     */
+    static long weightOf(QuantileSketch sketch) {
+        return SKETCH_OVERHEAD_POINTS + sketch.getBucketCount() / BUCKETS_PER_POINT;
+    }
+
+    /**
+     * The baseline points of a single series, stored as primitive columns.
+     */
+    private class SeriesRing {
+
+        private final long[] intervals;
+        private final double[] valuesSums;
+        private final double[] squaredValuesSums;
+        private final long[] counts;
+
+        /**
+         * Only allocated once a point with a sketch is stored.
+         */
+        private QuantileSketch[] sketches;
+
+        /**
+         * The budget points counted for each sketch, allocated together with {@link #sketches}.
+         */
+        private long[] sketchWeights;
+
+        /**
+         * The sum of {@link #sketchWeights}.
+         */
+        private long sketchWeight;
+
+        private long newestInterval;
+
+        SeriesRing(int capacity, long createdInterval) {
+            intervals = new long[capacity];
+            valuesSums = new double[capacity];
+            squaredValuesSums = new double[capacity];
+            counts = new long[capacity];
+            Arrays.fill(intervals, -1);
+            newestInterval = createdInterval;
+        }
+
+        /**
+         * @return the budget points released by removing a sketch
+         */
+        long clear(int slot, long interval) {
+            if (intervals[slot] <= interval) {
+                intervals[slot] = -1;
+                return removeSketch(slot);
+            }
+            return 0;
+        }
+
+        /**
+         * @return the budget points released by replacing a sketch
+         */
+        long set(int slot, long interval, AggregatePoint point) {
+            intervals[slot] = interval;
+            valuesSums[slot] = point.getValuesSum();
+            squaredValuesSums[slot] = point.getSquaredValuesSum();
+            counts[slot] = point.getCount();
+            long released = removeSketch(slot);
+            if (point.getSketch() != null) {
+                if (sketches == null) {
+                    sketches = new QuantileSketch[intervals.length];
+                    sketchWeights = new long[intervals.length];
+                }
+                sketches[slot] = point.getSketch();
+                sketchWeights[slot] = weightOf(point.getSketch());
+                sketchWeight += sketchWeights[slot];
+            }
+            newestInterval = Math.max(newestInterval, interval);
+            return released;
+        }
+
+        private long removeSketch(int slot) {
+            if (sketches == null || sketches[slot] == null) {
+                return 0;
+            }
+            long released = sketchWeights[slot];
+            sketches[slot] = null;
+            sketchWeights[slot] = 0;
+            sketchWeight -= released;
+            return released;
+        }
+
+        List<AggregatePoint> get(long startInterval, long endInterval) {
+            List<AggregatePoint> result = new ArrayList<>();
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                int slot = slot(interval);
+                if (intervals[slot] == interval) {
+                    QuantileSketch sketch = sketches == null ? null : sketches[slot];
+                    result.add(new AggregatePoint(interval * precisionMillis, valuesSums[slot], squaredValuesSums[slot], counts[slot], sketch));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.TagValues;
+
+import java.util.Map;
+
+/**
+ * Decides which baselines and series are computed by this instance, if multiple instances share the same configuration.
+ * <p>
+ * Uses rendezvous hashing: every key is assigned to the instance with the highest hash of the key combined with the instance index.
+ * All instances derive the same assignment without coordinating, and changing the number of instances only moves
+ * the keys of the added or removed instances. The hashes only depend on the key, so they are stable across restarts and JVMs.
+ */
+public final class ShardAssignment {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int index;
+
+    private final int count;
+
+    /**
+     * @param index the index of this instance, from 0 to count-1
+     * @param count the number of instances
+     */
+    public ShardAssignment(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @return true, if there are multiple instances
+     */
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    /**
+     * @param id the id of a baseline, see {@link BaselineGenerator#getId()}
+     * @return true, if the baseline is computed by this instance
+     */
+    public boolean ownsBaseline(String id) {
+        return ownerOf(hash(id, FNV_OFFSET)) == index;
+    }
+
+    /**
+     * Tags with an empty value are ignored, because they are not written to influx and therefore missing when the series is read back.
+     *
+     * @param tags the tags of a series
+     * @return true, if the series is computed by this instance
+     */
+    public boolean ownsSeries(TagValues tags) {
+        // the tags are not sorted, so the hashes of the individual tags are combined independent of their order
+        long hash = 0;
+        for (Map.Entry<String, String> tag : tags.getTags().entrySet()) {
+            String value = tag.getValue();
+            if (value != null && !value.isEmpty()) {
+                hash += mix(hash(value, hash(tag.getKey(), FNV_OFFSET) * FNV_PRIME));
+            }
+        }
+        return ownerOf(hash) == index;
+    }
+
+    /**
+     * @return the index of the instance with the highest score for the given key hash
+     */
+    int ownerOf(long keyHash) {
+        int owner = 0;
+        long highest = Long.MIN_VALUE;
+        for (int shard = 0; shard < count; shard++) {
+            long score = mix(keyHash + (shard + 1) * 0x9e3779b97f4a7c15L);
+            if (score > highest) {
+                highest = score;
+                owner = shard;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * FNV-1a over the characters of the given string.
+     */
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that similar keys result in unrelated scores.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53a6c2fL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
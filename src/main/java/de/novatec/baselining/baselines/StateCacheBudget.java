@@ -0,0 +1,108 @@
+package de.novatec.baselining.baselines;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limits the total number of points held by all {@link SeasonalStateCache}s.
+ * When the limit is reached, the least recently used caches are evicted.
+ */
+@Slf4j
+public class StateCacheBudget {
+
+    /**
+     * The outcome of {@link #reserve(SeasonalStateCache, long)}.
+     */
+    enum Reservation {
+        RESERVED,
+        /**
+         * The points of the cache alone would exceed the budget, so the cache can never hold them.
+         */
+        EXCEEDS_BUDGET,
+        /**
+         * Not enough caches could be evicted at the moment, because they are in use by other updates.
+         */
+        EVICTION_BLOCKED
+    }
+
+    private final long maxPoints;
+
+    /**
+     * The number of points reserved by each cache, ordered from least to most recently used.
+     */
+    private final LinkedHashMap<SeasonalStateCache, Long> reservations = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedPoints = 0;
+
+    public StateCacheBudget(long maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Reserves memory for additional points of the given cache, evicting other caches if necessary.
+     *
+     * @param cache  the cache requesting the memory
+     * @param points the number of additional points
+     * @return whether the points have been reserved
+     */
+    synchronized Reservation reserve(SeasonalStateCache cache, long points) {
+        if (reservations.getOrDefault(cache, 0L) + points > maxPoints) {
+            // evicting other caches would not help
+            return Reservation.EXCEEDS_BUDGET;
+        }
+        Iterator<Map.Entry<SeasonalStateCache, Long>> leastRecentlyUsed = reservations.entrySet().iterator();
+        while (usedPoints + points > maxPoints && leastRecentlyUsed.hasNext()) {
+            Map.Entry<SeasonalStateCache, Long> entry = leastRecentlyUsed.next();
+            if (entry.getKey() != cache && entry.getKey().tryEvict()) {
+                log.debug("Evicted cached baselines of '{}'", entry.getKey().getId());
+                usedPoints -= entry.getValue();
+                leastRecentlyUsed.remove();
+            }
+        }
+        if (usedPoints + points > maxPoints) {
+            return Reservation.EVICTION_BLOCKED;
+        }
+        usedPoints += points;
+        reservations.merge(cache, points, Long::sum);
+        return Reservation.RESERVED;
+    }
+
+    /**
+     * @return the number of points currently reserved by all caches
+     */
+    synchronized long getUsedPoints() {
+        return usedPoints;
+    }
+
+    /**
+     * Marks the given cache as most recently used.
+     */
+    synchronized void touch(SeasonalStateCache cache) {
+        reservations.get(cache);
+    }
+
+    /**
+     * Releases the given number of points reserved by the given cache.
+     */
+    synchronized void release(SeasonalStateCache cache, long points) {
+        Long reserved = reservations.get(cache);
+        if (reserved != null) {
+            long released = Math.min(reserved, points);
+            usedPoints -= released;
+            reservations.put(cache, reserved - released);
+        }
+    }
+
+    /**
+     * Releases all points reserved by the given cache.
+     */
+    synchronized void release(SeasonalStateCache cache) {
+        Long points = reservations.remove(cache);
+        if (points != null) {
+            usedPoints -= points;
+        }
+    }
+}
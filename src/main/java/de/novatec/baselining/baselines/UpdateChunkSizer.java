@@ -0,0 +1,65 @@
+package de.novatec.baselining.baselines;
+
+/**
+ * Adapts the number of intervals fetched by a single query of a {@link BaselineGenerator} to the observed query durations.
+ * Definitions with few series are fetched in large time ranges, while the queries of definitions with many series
+ * are kept short enough to not exceed the read timeout.
+ */
+class UpdateChunkSizer {
+
+    /**
+     * The weight of the newest observation in the estimated duration per interval.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * The number of intervals of a query before the first observation.
+     */
+    private static final int INITIAL_INTERVALS = 64;
+
+    private final long targetMillis;
+
+    private final int maxIntervals;
+
+    /**
+     * The estimated query duration per interval, NaN until the first query has been observed.
+     */
+    private double millisPerInterval = Double.NaN;
+
+    /**
+     * @param targetMillis the desired duration of a single query
+     * @param maxIntervals the maximum number of intervals of a single query
+     */
+    UpdateChunkSizer(long targetMillis, int maxIntervals) {
+        this.targetMillis = targetMillis;
+        this.maxIntervals = maxIntervals;
+    }
+
+    /**
+     * @param intervals      the number of intervals fetched by a query
+     * @param durationMillis the duration of the query
+     */
+    synchronized void record(long intervals, long durationMillis) {
+        if (intervals <= 0) {
+            return;
+        }
+        double observed = Math.max(1, durationMillis) / (double) intervals;
+        if (Double.isNaN(millisPerInterval)) {
+            millisPerInterval = observed;
+        } else {
+            millisPerInterval = SMOOTHING * observed + (1 - SMOOTHING) * millisPerInterval;
+        }
+    }
+
+    /**
+     * The result is rounded down to a power of two, so that generators with similar estimates query identical time ranges,
+     * which can then be shared via the fetch cache.
+     *
+     * @return the number of intervals to fetch with a single query
+     */
+    synchronized int getQueryIntervals() {
+        long intervals = Double.isNaN(millisPerInterval) ? INITIAL_INTERVALS : (long) (targetMillis / millisPerInterval);
+        int limited = (int) Math.max(1, Math.min(maxIntervals, intervals));
+        return Integer.highestOneBit(limited);
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,9 +30,39 @@ public class BaselineServiceSettings {
      */
     private boolean deriveDatabaseFromQuery = false;
 
+    @Valid
+    @NotNull
+    private SchedulerSettings scheduler = new SchedulerSettings();
+
+    @Valid
+    @NotNull
+    private CheckpointSettings checkpoints = new CheckpointSettings();
+
+    @Valid
+    @NotNull
+    private StateCacheSettings stateCache = new StateCacheSettings();
+
+    @Valid
+    @NotNull
+    private FetchCacheSettings fetchCache = new FetchCacheSettings();
+
+    @Valid
+    @NotNull
+    private ChunkingSettings chunking = new ChunkingSettings();
+
+    @Valid
+    @NotNull
+    private WriteSettings write = new WriteSettings();
+
+    @Valid
+    @NotNull
+    private ShardingSettings sharding = new ShardingSettings();
+
     private List<@Valid QueryBaselineDefinition> queries = new ArrayList<>();
     private List<@Valid GaugeBaselineDefinition> gauges = new ArrayList<>();
     private List<@Valid RateBaselineDefinition> rates = new ArrayList<>();
     private List<@Valid CounterBaselineDefinition> counters = new ArrayList<>();
     private List<@Valid CounterRatioBaselineDefinition> counterRatios = new ArrayList<>();
+    private List<@Valid RollupBaselineDefinition> rollups = new ArrayList<>();
+    private List<@Valid QuantileBaselineDefinition> quantiles = new ArrayList<>();
 }
@@ -0,0 +1,21 @@
+package de.novatec.baselining.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class CheckpointSettings {
+
+    /**
+     * The file in which the progress of every baseline is stored, so that a restart resumes where it stopped.
+     * If empty, the progress is not persisted.
+     */
+    private String file = "baselining-checkpoints.properties";
+
+    /**
+     * If no checkpoint exists for a baseline, derive its progress from the newest infinity baseline point in influx.
+     * Otherwise, the baseline is recomputed for the whole backfill period.
+     */
+    private boolean detectFromInflux = true;
+}
@@ -0,0 +1,35 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.validator.constraints.time.DurationMin;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+public class ChunkingSettings {
+
+    /**
+     * The desired duration of a single source query, which should be well below the read-timeout of influx.
+     * The time range of the queries of every baseline is adapted to the observed query durations to match it.
+     */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration targetQueryDuration = Duration.ofSeconds(10);
+
+    /**
+     * The maximum number of intervals computed in a single update.
+     * The state cache keeps this many intervals per series in addition to the largest window.
+     */
+    @Min(1)
+    private int maxUpdateIntervals = 400;
+
+    /**
+     * The number of queries with consecutive time ranges which are executed in parallel when a baseline is backfilled.
+     */
+    @Min(1)
+    private int parallelism = 4;
+}
@@ -0,0 +1,31 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+public class FetchCacheSettings {
+
+    /**
+     * True, if identical source queries of different baselines should be executed only once.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How long the result of a query is reused after it has been fetched.
+     * Baselines with the same precision are updated at the same time, so this only needs to cover one update cycle.
+     */
+    @NotNull
+    private Duration ttl = Duration.ofSeconds(60);
+
+    /**
+     * The maximum number of data points kept for reuse, results exceeding this limit are only shared with concurrent queries.
+     */
+    @Min(0)
+    private long maxPoints = 2_000_000;
+}
@@ -0,0 +1,64 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.validator.constraints.time.DurationMin;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+public class SchedulerSettings {
+
+    /**
+     * The maximum number of baselines which are updated concurrently.
+     * With a single thread, live updates and backfilling share it.
+     */
+    @Min(1)
+    private int threads = 4;
+
+    /**
+     * The share of {@link #threads} which is reserved for backfilling historic baselines.
+     * The remaining threads only process live updates, so that backfilling never delays them.
+     * Both lanes get at least one thread, if there are at least two threads.
+     */
+    @DecimalMin(value = "0", inclusive = false)
+    @DecimalMax("1")
+    private double backfillShare = 0.25;
+
+    /**
+     * The time to wait before retrying a failed update.
+     */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration retryDelay = Duration.ofSeconds(5);
+
+    /**
+     * Updates are started as soon as an interval has been completed (plus the update-delay).
+     * Each baseline gets a random but fixed additional delay of up to this duration,
+     * so that baselines with the same precision do not all query influx at the same time.
+     */
+    @NotNull
+    private Duration maxJitter = Duration.ZERO;
+
+    /**
+     * @return the number of threads reserved for backfilling, 0 if there is only a single thread shared by both lanes
+     */
+    public int getBackfillThreads() {
+        if (threads < 2) {
+            return 0;
+        }
+        return Math.min(threads - 1, Math.max(1, (int) Math.round(threads * backfillShare)));
+    }
+
+    /**
+     * @return the number of threads for live updates, together with the backfill threads exactly {@link #threads}
+     */
+    public int getLiveThreads() {
+        return threads - getBackfillThreads();
+    }
+}
@@ -0,0 +1,28 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ShardingSettings {
+
+    /**
+     * The number of instances sharing the configured baselines, all of them need the same configuration.
+     */
+    @Min(1)
+    private int count = 1;
+
+    /**
+     * The index of this instance, from 0 to count-1 (e.g. via the environment variable BASELINING_SHARDING_INDEX).
+     */
+    @Min(0)
+    private int index = 0;
+
+    @AssertTrue(message = "The sharding index has to be less than the count")
+    public boolean isIndexInRange() {
+        return index < count;
+    }
+}
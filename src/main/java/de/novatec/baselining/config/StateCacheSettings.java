@@ -0,0 +1,43 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.util.ObjectUtils;
+
+@Data
+@NoArgsConstructor
+public class StateCacheSettings {
+
+    /**
+     * True, if the infinity baselines written by this service should be kept in memory
+     * instead of querying them from influx on every update.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum number of baseline points kept in memory across all baselines (roughly 40 bytes each).
+     * Each series requires one point per interval of the largest window of its baseline.
+     * If this limit is exceeded, the least recently updated baselines are evicted and queried from influx again.
+     */
+    @Min(0)
+    private long maxPoints = 5_000_000;
+
+    /**
+     * If set, the state of every baseline is kept in a memory-mapped file within this directory instead of the heap.
+     * The state then survives restarts and is not limited by {@link #maxPoints}.
+     */
+    private String directory;
+
+    /**
+     * False, if the infinity baselines (the "_inf" measurements) should not be written to influx.
+     * This is only possible if the state is stored in a {@link #directory}, because it is the only copy of the state then.
+     */
+    private boolean writeInfinityBaselines = true;
+
+    @AssertTrue(message = "write-infinity-baselines can only be disabled if the state is stored in a directory")
+    public boolean isInfinityBaselinesPersisted() {
+        return writeInfinityBaselines || (enabled && !ObjectUtils.isEmpty(directory));
+    }
+}
@@ -0,0 +1,65 @@
+package de.novatec.baselining.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.validator.constraints.time.DurationMin;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+public class WriteSettings {
+
+    /**
+     * The maximum number of points sent to influx in a single request.
+     */
+    @Min(1)
+    private int batchSize = 5000;
+
+    /**
+     * True, if the requests to influx should be compressed via gzip.
+     */
+    private boolean gzip = true;
+
+    /**
+     * The maximum number of batches waiting to be sent, further writes block the baselines until there is space again.
+     */
+    @Min(1)
+    private int queueCapacity = 32;
+
+    /**
+     * If set, batches are stored in this directory until influx has accepted them, so that they survive outages and restarts.
+     * Otherwise they are only queued in memory.
+     */
+    private String spoolDirectory;
+
+    /**
+     * The delay before retrying a failed write, doubled on every further failure.
+     */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration initialRetryDelay = Duration.ofSeconds(1);
+
+    /**
+     * The maximum delay between retries of a failed write.
+     */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration maxRetryDelay = Duration.ofMinutes(1);
+
+    /**
+     * The number of retries after which a failed write is given up. Given up batches are moved to the file
+     * "write-spool.dead" in the spool directory, if configured, and the checkpoints are not advanced anymore,
+     * so that the affected baselines are recomputed after a restart.
+     */
+    @Min(0)
+    private int maxRetries = 20;
+
+    /**
+     * How long to wait on shutdown for queued batches to be sent.
+     */
+    @NotNull
+    private Duration drainTimeout = Duration.ofSeconds(30);
+}
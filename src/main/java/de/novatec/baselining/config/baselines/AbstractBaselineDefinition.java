@@ -24,30 +24,75 @@ public class AbstractBaselineDefinition {
     @DurationMin(millis = 1)
     private Duration precision = Duration.ofMinutes(15);
 
-    @NotNull
     @DurationMin(millis = 1)
     private Duration seasonality;
 
+    /**
+     * Alternative to {@link #seasonality}: computes baselines for multiple seasonalities from a single query of the input.
+     * The seasonality is appended to the output measurement name of each baseline (e.g. "http_time_1d").
+     */
+    private List<@DurationMin(millis = 1) Duration> seasonalities;
+
     private List<@DurationMin(millis = 1) Duration> windows;
 
+    /**
+     * If multiple instances share the baselines, the series of this baseline are split among all of them
+     * instead of assigning the whole baseline to a single instance. Intended for baselines with many series.
+     * Rollups always follow the assignment of their source.
+     */
+    private boolean shardSeries = false;
+
+    @AssertTrue(message = "Exactly one of 'seasonality' and 'seasonalities' has to be specified")
+    public boolean isSeasonalitySpecified() {
+        boolean hasSeasonalities = seasonalities != null && !seasonalities.isEmpty();
+        return (seasonality != null) != hasSeasonalities;
+    }
+
     @AssertTrue
     public boolean isSeasonalityMultipleOfPrecision() {
-        return seasonality.toMillis() % precision.toMillis() == 0;
+        for (Duration season : getAllSeasonalities()) {
+            if (season.toMillis() % precision.toMillis() != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @AssertTrue
     public boolean isWindowsMultiplesOfSeasonality() {
         if (windows != null) {
             for (Duration window : windows) {
-                if (window.toMillis() % seasonality.toMillis() != 0) {
-                    return false;
+                for (Duration season : getAllSeasonalities()) {
+                    if (window.toMillis() % season.toMillis() != 0) {
+                        return false;
+                    }
                 }
             }
         }
         return true;
     }
 
-    public List<Duration> getWindowsWithDefault() {
+    /**
+     * @return true, if multiple seasonalities have been specified via {@link #seasonalities}
+     */
+    public boolean isMultiSeasonal() {
+        return seasonality == null && seasonalities != null;
+    }
+
+    /**
+     * @return the configured seasonalities, which is either only {@link #seasonality} or all {@link #seasonalities}
+     */
+    public List<Duration> getAllSeasonalities() {
+        if (seasonality != null) {
+            return Collections.singletonList(seasonality);
+        } else if (seasonalities != null) {
+            return seasonalities;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    public List<Duration> getWindowsWithDefault(Duration seasonality) {
         if (windows == null) {
             return Collections.singletonList(seasonality.multipliedBy(10));
         } else {
@@ -19,4 +19,10 @@ public class CounterBaselineDefinition extends AbstractTaggedAggregatingBaseline
 
     @NotNull
     private Duration lookBack = Duration.ofMinutes(15);
+
+    /**
+     * If true, the per-second rate of each series is computed by influx via NON_NEGATIVE_DERIVATIVE instead of on the client.
+     * Counter resets are then dropped instead of resulting in a negative rate.
+     */
+    private boolean pushDownRate = false;
 }
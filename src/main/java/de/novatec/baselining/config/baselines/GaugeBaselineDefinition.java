@@ -16,4 +16,10 @@ public class GaugeBaselineDefinition extends AbstractTaggedAggregatingBaselineDe
     @Valid
     @NotNull
     private MeasurementFieldName input;
+
+    /**
+     * If true, influx already aggregates the sample means to the precision, so that only one row per precision interval is transferred.
+     * The loop-back metric then contains the means per precision instead of the means per sample precision.
+     */
+    private boolean pushDownMean = false;
 }
@@ -0,0 +1,33 @@
+package de.novatec.baselining.config.baselines;
+
+import de.novatec.baselining.config.measurement.MeasurementFieldName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class QuantileBaselineDefinition extends AbstractBaselineDefinition {
+
+    @Valid
+    @NotNull
+    private MeasurementFieldName input;
+
+    private List<@NotBlank String> tags;
+
+    /**
+     * The maximum relative error of the computed quantiles.
+     * Smaller values require more memory for the state of the baseline.
+     */
+    @DecimalMin(value = "0", inclusive = false)
+    @DecimalMax(value = "0.5")
+    private double relativeAccuracy = 0.01;
+}
@@ -0,0 +1,22 @@
+package de.novatec.baselining.config.baselines;
+
+import de.novatec.baselining.config.measurement.MeasurementName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class RollupBaselineDefinition extends AbstractBaselineDefinition {
+
+    /**
+     * The output of the baseline with a finer precision from which this baseline is derived.
+     */
+    @Valid
+    @NotNull
+    private MeasurementName source;
+}
@@ -0,0 +1,91 @@
+package de.novatec.baselining.data;
+
+import lombok.Getter;
+
+/**
+ * Mutable counterpart of {@link AggregatePoint} for chaining arithmetic without allocating intermediate points.
+ * An instance can be reused for any number of computations and is only converted via {@link #toPoint()} if the result is kept.
+ * Instances are not thread safe.
+ */
+@Getter
+public class AggregateAccumulator {
+
+    private long time;
+
+    private double valuesSum;
+
+    private double squaredValuesSum;
+
+    private long count;
+
+    /**
+     * The distribution of the values, null if the points have no sketches.
+     * The instance is reused as well and must therefore be copied if it is kept.
+     */
+    private QuantileSketch sketch;
+
+    public AggregateAccumulator set(AggregatePoint point) {
+        time = point.getTime();
+        valuesSum = point.getValuesSum();
+        squaredValuesSum = point.getSquaredValuesSum();
+        count = point.getCount();
+        if (point.getSketch() == null) {
+            sketch = null;
+        } else if (sketch == null) {
+            sketch = point.getSketch().copy();
+        } else {
+            sketch.set(point.getSketch());
+        }
+        return this;
+    }
+
+    /**
+     * Adds the aggregates of the given point, keeping the time of this accumulator.
+     */
+    public AggregateAccumulator add(AggregatePoint point) {
+        valuesSum += point.getValuesSum();
+        squaredValuesSum += point.getSquaredValuesSum();
+        count += point.getCount();
+        if (point.getSketch() != null) {
+            getOrCreateSketch(point.getSketch()).merge(point.getSketch());
+        }
+        return this;
+    }
+
+    /**
+     * Subtracts the aggregates of the given point, keeping the time of this accumulator.
+     */
+    public AggregateAccumulator subtract(AggregatePoint point) {
+        valuesSum -= point.getValuesSum();
+        squaredValuesSum -= point.getSquaredValuesSum();
+        count -= point.getCount();
+        if (point.getSketch() != null) {
+            getOrCreateSketch(point.getSketch()).subtract(point.getSketch());
+        }
+        return this;
+    }
+
+    public AggregateAccumulator shift(long millis) {
+        time += millis;
+        return this;
+    }
+
+    public double getAvgValue() {
+        return valuesSum / count;
+    }
+
+    public double getAvgSquaredValue() {
+        return squaredValuesSum / count;
+    }
+
+    public AggregatePoint toPoint() {
+        return new AggregatePoint(time, valuesSum, squaredValuesSum, count, sketch == null ? null : sketch.copy());
+    }
+
+    private QuantileSketch getOrCreateSketch(QuantileSketch template) {
+        if (sketch == null) {
+            sketch = new QuantileSketch(template.getRelativeAccuracy());
+        }
+        return sketch;
+    }
+}
@@ -18,6 +18,11 @@ public class AggregatePoint extends AbstractTimedPoint {
 
     long count;
 
+    /**
+     * The distribution of the values, null if no quantiles are computed for the baseline.
+     */
+    QuantileSketch sketch;
+
     public double getAvgValue() {
         return valuesSum / count;
     }
@@ -26,12 +31,17 @@ public class AggregatePoint extends AbstractTimedPoint {
         return squaredValuesSum / count;
     }
 
-    @Builder(toBuilder = true)
     public AggregatePoint(long time, double valuesSum, double squaredValuesSum, long count) {
+        this(time, valuesSum, squaredValuesSum, count, null);
+    }
+
+    @Builder(toBuilder = true)
+    public AggregatePoint(long time, double valuesSum, double squaredValuesSum, long count, QuantileSketch sketch) {
         super(time);
         this.valuesSum = valuesSum;
         this.squaredValuesSum = squaredValuesSum;
         this.count = count;
+        this.sketch = sketch;
     }
 
     @Override
@@ -44,7 +54,8 @@ public class AggregatePoint extends AbstractTimedPoint {
                 this.time,
                 this.valuesSum + other.valuesSum,
                 this.squaredValuesSum + other.squaredValuesSum,
-                this.count + other.count);
+                this.count + other.count,
+                combine(this.sketch, other.sketch, 1));
     }
 
     public AggregatePoint add(DataPoint point) {
@@ -53,7 +64,8 @@ public class AggregatePoint extends AbstractTimedPoint {
                 this.time,
                 this.valuesSum + value,
                 this.squaredValuesSum + value * value,
-                this.count + 1);
+                this.count + 1,
+                sketch == null ? null : sketch.copy().add(value));
     }
 
     public AggregatePoint minus(AggregatePoint other) {
@@ -61,7 +73,19 @@ public class AggregatePoint extends AbstractTimedPoint {
                 this.time,
                 this.valuesSum - other.valuesSum,
                 this.squaredValuesSum - other.squaredValuesSum,
-                this.count - other.count);
+                this.count - other.count,
+                combine(this.sketch, other.sketch, -1));
+    }
+
+    /**
+     * Sketches are shared between points, so the result is always a new instance if both sketches are present.
+     */
+    private static QuantileSketch combine(QuantileSketch first, QuantileSketch second, int sign) {
+        if (second == null) {
+            return first;
+        }
+        QuantileSketch result = first == null ? new QuantileSketch(second.getRelativeAccuracy()) : first.copy();
+        return sign > 0 ? result.merge(second) : result.subtract(second);
     }
 
     public static AggregatePoint from(DataPoint point) {
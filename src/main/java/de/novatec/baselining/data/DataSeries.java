@@ -0,0 +1,209 @@
+package de.novatec.baselining.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A time series of raw values, stored as primitive columns ordered by time.
+ * Compared to a list of {@link DataPoint}s, this avoids allocating an object per sample when processing large time ranges.
+ * Instances are immutable and can therefore be shared.
+ */
+public final class DataSeries {
+
+    public static final DataSeries EMPTY = new DataSeries(new long[0], new double[0]);
+
+    private final long[] times;
+
+    private final double[] values;
+
+    private DataSeries(long[] times, double[] values) {
+        this.times = times;
+        this.values = values;
+    }
+
+    public static DataSeries from(Collection<? extends DataPoint> points) {
+        Builder builder = new Builder(points.size());
+        points.forEach(pt -> builder.add(pt.getTime(), pt.getValue()));
+        return builder.build();
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Provides direct access for numeric kernels.
+     *
+     * @return the backing array of the times, which must not be modified
+     */
+    public long[] times() {
+        return times;
+    }
+
+    /**
+     * Provides direct access for numeric kernels.
+     *
+     * @return the backing array of the values, which must not be modified
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * @param timestamp the timestamp to look for
+     * @return the index of the first point with a time greater than or equal to the given timestamp, {@link #size()} if there is none
+     */
+    public int indexOf(long timestamp) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param timestamp the timestamp since the epoch
+     * @return the points of this series with a time greater than or equal to the given timestamp
+     */
+    public DataSeries since(long timestamp) {
+        int start = indexOf(timestamp);
+        if (start == 0) {
+            return this;
+        }
+        return new DataSeries(Arrays.copyOfRange(times, start, times.length), Arrays.copyOfRange(values, start, values.length));
+    }
+
+    /**
+     * @return the points of both series, ordered by time
+     */
+    public static DataSeries merge(DataSeries first, DataSeries second) {
+        if (first.isEmpty()) {
+            return second;
+        } else if (second.isEmpty()) {
+            return first;
+        }
+        Builder result = new Builder(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (first.times[i] <= second.times[j]) {
+                result.add(first.times[i], first.values[i++]);
+            } else {
+                result.add(second.times[j], second.values[j++]);
+            }
+        }
+        for (; i < first.size(); i++) {
+            result.add(first.times[i], first.values[i]);
+        }
+        for (; j < second.size(); j++) {
+            result.add(second.times[j], second.values[j]);
+        }
+        return result.build();
+    }
+
+    public List<DataPoint> toPoints() {
+        List<DataPoint> points = new ArrayList<>(times.length);
+        for (int i = 0; i < times.length; i++) {
+            points.add(new DataPoint(times[i], values[i]));
+        }
+        return points;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSeries" + toPoints();
+    }
+
+    /**
+     * Collects points into a {@link DataSeries}. The points should be added in time order, otherwise they are sorted on {@link #build()}.
+     */
+    public static class Builder {
+
+        private long[] times;
+
+        private double[] values;
+
+        private int size = 0;
+
+        private boolean sorted = true;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int expectedSize) {
+            times = new long[Math.max(expectedSize, 1)];
+            values = new double[times.length];
+        }
+
+        public Builder add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (size > 0 && times[size - 1] > time) {
+                sorted = false;
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public DataSeries build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (!sorted) {
+                sortByTime();
+            }
+            if (size < times.length) {
+                return new DataSeries(Arrays.copyOf(times, size), Arrays.copyOf(values, size));
+            }
+            return new DataSeries(times, values);
+        }
+
+        private void sortByTime() {
+            // stable, so that points with identical timestamps keep the order in which they have been added
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+            long[] sortedTimes = new long[size];
+            double[] sortedValues = new double[size];
+            for (int i = 0; i < size; i++) {
+                sortedTimes[i] = times[order[i]];
+                sortedValues[i] = values[order[i]];
+            }
+            times = sortedTimes;
+            values = sortedValues;
+            sorted = true;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package de.novatec.baselining.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch of a distribution of values, which estimates quantiles with a bounded relative error.
+ * <p>
+ * Follows the approach of DDSketch: values are counted in buckets whose boundaries grow exponentially,
+ * so that every value of a bucket is within the relative accuracy of the value representing the bucket.
+ * Because the buckets only depend on the relative accuracy, sketches can be added and subtracted exactly, just like sums.
+ * For the same reason buckets are never collapsed, their number only grows logarithmically with the range of the values.
+ * Values with a magnitude below {@link #MIN_INDEXABLE_VALUE} are counted as zero.
+ * <p>
+ * Instances are mutable and not thread safe.
+ * Sketches held by an {@link AggregatePoint} are never modified, so that points remain immutable.
+ */
+public final class QuantileSketch {
+
+    public static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private static final byte ENCODING_VERSION = 1;
+
+    private double relativeAccuracy;
+
+    private double gamma;
+
+    private double logGamma;
+
+    private final Buckets positive = new Buckets();
+
+    private final Buckets negative = new Buckets();
+
+    private long zeroCount;
+
+    /**
+     * @param relativeAccuracy the maximum relative error of the estimated quantiles, in the range (0, 1)
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("The relative accuracy must be between 0 and 1, but was " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Adds a value to the sketch, NaN and infinite values are ignored.
+     */
+    public QuantileSketch add(double value) {
+        if (Double.isFinite(value)) {
+            if (value >= MIN_INDEXABLE_VALUE) {
+                positive.add(index(value), 1);
+            } else if (value <= -MIN_INDEXABLE_VALUE) {
+                negative.add(index(-value), 1);
+            } else {
+                zeroCount++;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds all values of the given sketch to this one.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        return combine(other, 1);
+    }
+
+    /**
+     * Removes all values of the given sketch from this one, which must have been added before.
+     */
+    public QuantileSketch subtract(QuantileSketch other) {
+        return combine(other, -1);
+    }
+
+    /**
+     * Replaces the content of this sketch with the one of the given sketch.
+     */
+    public QuantileSketch set(QuantileSketch other) {
+        relativeAccuracy = other.relativeAccuracy;
+        gamma = other.gamma;
+        logGamma = other.logGamma;
+        positive.set(other.positive);
+        negative.set(other.negative);
+        zeroCount = other.zeroCount;
+        return this;
+    }
+
+    public QuantileSketch copy() {
+        return new QuantileSketch(relativeAccuracy).set(this);
+    }
+
+    /**
+     * @return the number of allocated buckets, which dominates the memory used by the sketch
+     */
+    public int getBucketCount() {
+        return positive.counts.length + negative.counts.length;
+    }
+
+    /**
+     * @return the number of values in the sketch
+     */
+    public long getCount() {
+        return positive.getCount() + negative.getCount() + Math.max(0, zeroCount);
+    }
+
+    /**
+     * @param quantile the quantile, in the range [0, 1]
+     * @return the estimated value of the quantile, NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = quantile * (count - 1);
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += Math.max(0, negative.counts[i]);
+            if (seen > rank) {
+                return -value(negative.offset + i);
+            }
+        }
+        seen += Math.max(0, zeroCount);
+        if (seen > rank) {
+            return 0;
+        }
+        int highest = 0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            if (positive.counts[i] > 0) {
+                seen += positive.counts[i];
+                highest = i;
+                if (seen > rank) {
+                    return value(positive.offset + i);
+                }
+            }
+        }
+        return value(positive.offset + highest);
+    }
+
+    /**
+     * Encodes the sketch as version, relative accuracy, zero count and the non-empty range of the positive and the negative buckets.
+     * All counts and bucket indices are stored as variable-length integers.
+     *
+     * @return the binary representation of this sketch
+     */
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Double.BYTES + 10 + positive.getMaxEncodedBytes() + negative.getMaxEncodedBytes());
+        buffer.put(ENCODING_VERSION);
+        buffer.putDouble(relativeAccuracy);
+        putVarLong(buffer, zeroCount);
+        positive.encode(buffer);
+        negative.encode(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * @param bytes the representation created via {@link #encode()}
+     * @return the decoded sketch
+     * @throws IllegalArgumentException if the representation is invalid
+     */
+    public static QuantileSketch decode(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte version = buffer.get();
+            if (version != ENCODING_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch encoding version " + version);
+            }
+            QuantileSketch sketch = new QuantileSketch(buffer.getDouble());
+            sketch.zeroCount = getVarLong(buffer);
+            sketch.positive.decode(buffer);
+            sketch.negative.decode(buffer);
+            return sketch;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Invalid sketch encoding", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QuantileSketch)) {
+            return false;
+        }
+        QuantileSketch other = (QuantileSketch) o;
+        return relativeAccuracy == other.relativeAccuracy
+                && zeroCount == other.zeroCount
+                && positive.contentEquals(other.positive)
+                && negative.contentEquals(other.negative);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(relativeAccuracy);
+        result = 31 * result + Long.hashCode(zeroCount);
+        result = 31 * result + positive.contentHashCode();
+        return 31 * result + negative.contentHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch(count=" + getCount() + " p50=" + getQuantile(0.5) + " p99=" + getQuantile(0.99) + ")";
+    }
+
+    private QuantileSketch combine(QuantileSketch other, long sign) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches with different relative accuracies can not be combined");
+        }
+        positive.add(other.positive, sign);
+        negative.add(other.negative, sign);
+        zeroCount += sign * other.zeroCount;
+        return this;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /**
+     * @return the value representing the bucket with the given index, which covers the range (gamma^(index-1), gamma^index]
+     */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        buffer.put((byte) zigZag);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Invalid variable-length integer");
+    }
+
+    /**
+     * The counts of consecutive buckets, stored densely starting at the bucket with index {@link #offset}.
+     * The array may contain empty buckets at both ends, which leaves room for growth.
+     */
+    private static final class Buckets {
+
+        private static final long[] EMPTY = new long[0];
+
+        private long[] counts = EMPTY;
+
+        private int offset;
+
+        void add(int index, long count) {
+            ensureRange(index, index);
+            counts[index - offset] += count;
+        }
+
+        void add(Buckets other, long sign) {
+            int first = other.firstUsed();
+            int last = other.lastUsed();
+            if (first > last) {
+                return;
+            }
+            ensureRange(other.offset + first, other.offset + last);
+            for (int i = first; i <= last; i++) {
+                counts[other.offset + i - offset] += sign * other.counts[i];
+            }
+        }
+
+        void set(Buckets other) {
+            int first = other.firstUsed();
+            int last = other.lastUsed();
+            if (first > last) {
+                counts = EMPTY;
+            } else if (counts.length == last - first + 1) {
+                System.arraycopy(other.counts, first, counts, 0, counts.length);
+            } else {
+                counts = Arrays.copyOfRange(other.counts, first, last + 1);
+            }
+            offset = other.offset + first;
+        }
+
+        long getCount() {
+            long count = 0;
+            for (long bucket : counts) {
+                count += Math.max(0, bucket);
+            }
+            return count;
+        }
+
+        int getMaxEncodedBytes() {
+            return 10 + 10 + counts.length * 10;
+        }
+
+        void encode(ByteBuffer buffer) {
+            int first = firstUsed();
+            int last = lastUsed();
+            int length = Math.max(0, last - first + 1);
+            putVarLong(buffer, length);
+            if (length > 0) {
+                putVarLong(buffer, offset + first);
+                for (int i = first; i <= last; i++) {
+                    putVarLong(buffer, counts[i]);
+                }
+            }
+        }
+
+        void decode(ByteBuffer buffer) {
+            long length = getVarLong(buffer);
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid number of buckets " + length);
+            }
+            if (length == 0) {
+                counts = EMPTY;
+                return;
+            }
+            offset = (int) getVarLong(buffer);
+            counts = new long[(int) length];
+            for (int i = 0; i < length; i++) {
+                counts[i] = getVarLong(buffer);
+            }
+        }
+
+        boolean contentEquals(Buckets other) {
+            int first = firstUsed();
+            int last = lastUsed();
+            int otherFirst = other.firstUsed();
+            int otherLast = other.lastUsed();
+            if (first > last || otherFirst > otherLast) {
+                return first > last && otherFirst > otherLast;
+            }
+            return offset + first == other.offset + otherFirst
+                    && Arrays.equals(counts, first, last + 1, other.counts, otherFirst, otherLast + 1);
+        }
+
+        int contentHashCode() {
+            int first = firstUsed();
+            int last = lastUsed();
+            int result = first > last ? 0 : offset + first;
+            for (int i = first; i <= last; i++) {
+                result = 31 * result + Long.hashCode(counts[i]);
+            }
+            return result;
+        }
+
+        /**
+         * @return the position of the first non-empty bucket, the length of the array if there is none
+         */
+        private int firstUsed() {
+            int first = 0;
+            while (first < counts.length && counts[first] == 0) {
+                first++;
+            }
+            return first;
+        }
+
+        /**
+         * @return the position of the last non-empty bucket, -1 if there is none
+         */
+        private int lastUsed() {
+            int last = counts.length - 1;
+            while (last >= 0 && counts[last] == 0) {
+                last--;
+            }
+            return last;
+        }
+
+        /**
+         * Grows the array so that it covers the given range of bucket indices.
+         * The array grows by at least half of its length, so that adding values in increasing order does not copy it every time.
+         */
+        private void ensureRange(int minIndex, int maxIndex) {
+            if (counts.length == 0) {
+                counts = new long[maxIndex - minIndex + 1];
+                offset = minIndex;
+                return;
+            }
+            int currentMax = offset + counts.length - 1;
+            if (minIndex >= offset && maxIndex <= currentMax) {
+                return;
+            }
+            int slack = counts.length / 2;
+            int newMin = minIndex < offset ? minIndex - slack : offset;
+            int newMax = maxIndex > currentMax ? maxIndex + slack : currentMax;
+            long[] grown = new long[newMax - newMin + 1];
+            System.arraycopy(counts, 0, grown, offset - newMin, counts.length);
+            counts = grown;
+            offset = newMin;
+        }
+    }
+}
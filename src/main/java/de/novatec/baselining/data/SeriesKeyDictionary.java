@@ -0,0 +1,69 @@
+package de.novatec.baselining.data;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns the tag sets of all series, so that each distinct set is represented by a single {@link TagValues} instance with a unique id.
+ * Entries are only weakly referenced, so the tag sets of series which no longer exist do not accumulate.
+ */
+class SeriesKeyDictionary {
+
+    private static class SeriesRef extends WeakReference<TagValues> {
+
+        private final Map<String, String> tags;
+
+        SeriesRef(TagValues series, ReferenceQueue<TagValues> queue) {
+            super(series, queue);
+            this.tags = series.getTags();
+        }
+    }
+
+    private final Map<Map<String, String>, SeriesRef> entries = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<TagValues> collected = new ReferenceQueue<>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * @param tags the tag set, which is copied if it has not been interned yet
+     * @return the only instance representing the given tag set
+     */
+    TagValues intern(Map<String, String> tags) {
+        SeriesRef ref = entries.get(tags);
+        TagValues existing = ref == null ? null : ref.get();
+        if (existing != null) {
+            return existing;
+        }
+        removeCollected();
+        Map<String, String> copy = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        TagValues[] result = new TagValues[1];
+        entries.compute(copy, (key, previous) -> {
+            TagValues alive = previous == null ? null : previous.get();
+            if (alive != null) {
+                result[0] = alive;
+                return previous;
+            }
+            result[0] = new TagValues(copy, nextId.getAndIncrement());
+            return new SeriesRef(result[0], collected);
+        });
+        return result[0];
+    }
+
+    int size() {
+        removeCollected();
+        return entries.size();
+    }
+
+    private void removeCollected() {
+        SeriesRef ref;
+        while ((ref = (SeriesRef) collected.poll()) != null) {
+            entries.remove(ref.tags, ref);
+        }
+    }
+}
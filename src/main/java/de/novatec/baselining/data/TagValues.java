@@ -1,34 +1,112 @@
 package de.novatec.baselining.data;
 
-import lombok.Builder;
-import lombok.Singular;
-import lombok.Value;
-
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-@Builder
-@Value
-public class TagValues {
+/**
+ * Identifies a series by the values of its tags.
+ * Instances are interned: each distinct tag set is represented by exactly one instance with a unique {@link #getId() id},
+ * so hashing and equality do not need to compare the tags.
+ */
+public final class TagValues {
+
+    private static final SeriesKeyDictionary DICTIONARY = new SeriesKeyDictionary();
+
+    private static final class Projection {
+        final Collection<String> tagKeys;
+        final TagValues result;
+
+        Projection(Collection<String> tagKeys, TagValues result) {
+            this.tagKeys = tagKeys;
+            this.result = result;
+        }
+    }
+
+    private final Map<String, String> tags;
+
+    private final int id;
 
-    @Singular
-    private Map<String, String> tags;
+    /**
+     * The result of the last {@link #keepOnly(Collection)} invocation, usually the same tag keys are applied repeatedly.
+     */
+    private volatile Projection lastProjection;
+
+    TagValues(Map<String, String> tags, int id) {
+        this.tags = tags;
+        this.id = id;
+    }
 
     public static TagValues from(Map<String, String> tags) {
         if (tags == null) {
             return TagValues.builder().build();
         } else {
-            return TagValues.builder().tags(tags).build();
+            return DICTIONARY.intern(tags);
         }
     }
 
+    public static TagValuesBuilder builder() {
+        return new TagValuesBuilder();
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return an id which is unique among all currently existing tag sets
+     */
+    public int getId() {
+        return id;
+    }
+
     public TagValues keepOnly(Collection<String> tagKeys) {
+        Projection projection = lastProjection;
+        if (projection != null && projection.tagKeys == tagKeys) {
+            return projection.result;
+        }
         TagValues.TagValuesBuilder result = TagValues.builder();
         for (String tag : tagKeys) {
             if (tags.containsKey(tag)) {
                 result.tag(tag, tags.get(tag));
             }
         }
-        return result.build();
+        TagValues projected = result.build();
+        lastProjection = new Projection(tagKeys, projected);
+        return projected;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "TagValues(tags=" + tags + ")";
+    }
+
+    public static class TagValuesBuilder {
+
+        private final Map<String, String> tags = new LinkedHashMap<>();
+
+        public TagValuesBuilder tag(String key, String value) {
+            tags.put(key, value);
+            return this;
+        }
+
+        public TagValuesBuilder tags(Map<? extends String, ? extends String> tags) {
+            this.tags.putAll(tags);
+            return this;
+        }
+
+        public TagValues build() {
+            return DICTIONARY.intern(tags);
+        }
     }
 }
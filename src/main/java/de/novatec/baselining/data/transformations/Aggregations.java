@@ -1,29 +1,103 @@
 package de.novatec.baselining.data.transformations;
 
 import de.novatec.baselining.data.AbstractTimedPoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 
 public class Aggregations {
 
-    public static <Pt extends AbstractTimedPoint> Map<TagValues, List<Pt>> aggregateByTags(Collection<String> tagsToKeep, Map<TagValues, List<Pt>> data, BiFunction<List<Pt>, List<Pt>, List<Pt>> aggregation) {
-        Map<TagValues, List<Pt>> result = new HashMap<>();
-        data.forEach((tags, values) -> {
-            TagValues newTags = tags.keepOnly(tagsToKeep);
-            List<Pt> previousValues = result.get(newTags);
-            if (previousValues == null) {
-                result.put(newTags, values);
-            } else {
-                result.put(newTags, aggregation.apply(previousValues, values));
-            }
-        });
+    /**
+     * Groups the series by the given tags and combines each group with a single invocation of the given aggregation.
+     * Groups consisting of a single series are not passed to the aggregation.
+     */
+    public static <V> Map<TagValues, V> aggregateByTags(Collection<String> tagsToKeep, Map<TagValues, V> data, Function<List<V>, V> aggregation) {
+        Map<TagValues, List<V>> groups = new HashMap<>();
+        data.forEach((tags, values) -> groups.computeIfAbsent(tags.keepOnly(tagsToKeep), key -> new ArrayList<>()).add(values));
+
+        Map<TagValues, V> result = new HashMap<>();
+        groups.forEach((tags, members) -> result.put(tags, members.size() == 1 ? members.get(0) : aggregation.apply(members)));
         return result;
     }
 
+    /**
+     * @return all points of the given series, ordered by time
+     */
+    public static DataSeries mergeAll(List<DataSeries> series) {
+        int totalSize = series.stream().mapToInt(DataSeries::size).sum();
+        DataSeries.Builder result = new DataSeries.Builder(totalSize);
+        SeriesCursorHeap cursors = new SeriesCursorHeap(series);
+        while (!cursors.isEmpty()) {
+            DataSeries next = series.get(cursors.peekSeries());
+            int index = cursors.cursor(cursors.peekSeries());
+            result.add(next.getTime(index), next.getValue(index));
+            cursors.advance();
+        }
+        return result.build();
+    }
+
+    /**
+     * Sums up the given series at every point in time at which any of them has a point.
+     * Series without a point at that time contribute their linearly interpolated value,
+     * which is the same as folding the series with {@link #joinInterpolating(DataSeries, DataSeries, DoubleBinaryOperator)}.
+     * <p>
+     * Instead of interpolating each series at each point in time, the interpolations are maintained as a running sum of linear functions,
+     * which is only updated for the series having a point at the current time.
+     *
+     * @return the series of sums
+     */
+    public static DataSeries sumInterpolating(List<DataSeries> series) {
+        SeriesCursorHeap cursors = new SeriesCursorHeap(series);
+        if (cursors.isEmpty()) {
+            return DataSeries.EMPTY;
+        }
+        // times are relative to the first point to keep the linear functions well-conditioned
+        long origin = cursors.peekTime();
+
+        // the interpolation of series i at relative time u is offsets[i] + slopes[i] * u
+        double[] offsets = new double[series.size()];
+        double[] slopes = new double[series.size()];
+        double offsetSum = 0;
+        double slopeSum = 0;
+        for (int i = 0; i < series.size(); i++) {
+            if (!series.get(i).isEmpty()) {
+                offsets[i] = series.get(i).getValue(0);
+                offsetSum += offsets[i];
+            }
+        }
+
+        DataSeries.Builder result = new DataSeries.Builder();
+        while (!cursors.isEmpty()) {
+            long time = cursors.peekTime();
+            while (!cursors.isEmpty() && cursors.peekTime() == time) {
+                int seriesIndex = cursors.peekSeries();
+                cursors.advance();
+                DataSeries current = series.get(seriesIndex);
+                int next = cursors.cursor(seriesIndex);
+                if (next < current.size() && current.getTime(next) == time) {
+                    // the segment is updated once the last point at this time has been passed
+                    continue;
+                }
+                double value = current.getValue(next - 1);
+                double slope = 0;
+                if (next < current.size()) {
+                    slope = (current.getValue(next) - value) / (current.getTime(next) - time);
+                }
+                double offset = value - slope * (time - origin);
+                offsetSum += offset - offsets[seriesIndex];
+                slopeSum += slope - slopes[seriesIndex];
+                offsets[seriesIndex] = offset;
+                slopes[seriesIndex] = slope;
+            }
+            result.add(time, offsetSum + slopeSum * (time - origin));
+        }
+        return result.build();
+    }
+
     public static <R, PT extends AbstractTimedPoint> List<R> byIntervall(Collection<? extends PT> points, long intervallMillis, BiFunction<Long, ? super List<PT>, ? extends R> aggregation) {
 
         PriorityQueue<PT> pq = new PriorityQueue<>(AbstractTimedPoint.TIME_COMPARATOR);
@@ -54,26 +128,55 @@ public class Aggregations {
         return results;
     }
 
-    public static List<DataPoint> joinInterpolating(
-            Collection<? extends DataPoint> left,
-            Collection<? extends DataPoint> right,
-            BiFunction<Double, Double, Double> aggregation) {
-
-        LinearInterpolator leftInterpolation = new LinearInterpolator(left);
-        LinearInterpolator rightInterpolation = new LinearInterpolator(right);
-
-        return joinByTime(left, right,
-                (ptL, ptR) -> Optional.ofNullable(aggregation.apply(ptL.getValue(), ptR.getValue()))
-                        .map(value -> new DataPoint(ptL.getTime(), value))
-                        .orElse(null),
-                (ptL) -> Optional.ofNullable(aggregation.apply(ptL.getValue(), rightInterpolation.interpolate(ptL.getTime())))
-                        .map(value -> new DataPoint(ptL.getTime(), value))
-                        .orElse(null),
-                (ptR) -> Optional.ofNullable(aggregation.apply(leftInterpolation.interpolate(ptR.getTime()), ptR.getValue()))
-                        .map(value -> new DataPoint(ptR.getTime(), value))
-                        .orElse(null)
-        );
+    /**
+     * Joins two series by time. Points without a counterpart at the same time are joined with the linearly interpolated value of the other series.
+     *
+     * @param aggregation combines the values of both series, results which are NaN are dropped
+     * @return the joined series
+     */
+    public static DataSeries joinInterpolating(DataSeries left, DataSeries right, DoubleBinaryOperator aggregation) {
+        DataSeries.Builder result = new DataSeries.Builder(Math.max(left.size(), right.size()));
+        int l = 0;
+        int r = 0;
+        while (l < left.size() || r < right.size()) {
+            long time;
+            double value;
+            if (r == right.size() || (l < left.size() && left.getTime(l) < right.getTime(r))) {
+                time = left.getTime(l);
+                value = aggregation.applyAsDouble(left.getValue(l), interpolate(right, r, time));
+                l++;
+            } else if (l == left.size() || right.getTime(r) < left.getTime(l)) {
+                time = right.getTime(r);
+                value = aggregation.applyAsDouble(interpolate(left, l, time), right.getValue(r));
+                r++;
+            } else {
+                time = left.getTime(l);
+                value = aggregation.applyAsDouble(left.getValue(l), right.getValue(r));
+                l++;
+                r++;
+            }
+            if (!Double.isNaN(value)) {
+                result.add(time, value);
+            }
+        }
+        return result.build();
+    }
 
+    /**
+     * Interpolates the value of the series at a time lying between the points at index next-1 and next.
+     */
+    private static double interpolate(DataSeries series, int next, long time) {
+        if (series.isEmpty()) {
+            return 0;
+        } else if (next == 0) {
+            return series.getValue(0);
+        } else if (next == series.size()) {
+            return series.getValue(next - 1);
+        }
+        long lowerTime = series.getTime(next - 1);
+        long upperTime = series.getTime(next);
+        double upperWeight = (time - lowerTime) / (double) (upperTime - lowerTime);
+        return (1 - upperWeight) * series.getValue(next - 1) + upperWeight * series.getValue(next);
     }
 
     public static <R, PTL extends AbstractTimedPoint, PTR extends AbstractTimedPoint> List<R> joinByTime(
@@ -0,0 +1,46 @@
+package de.novatec.baselining.data.transformations;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Selects the {@link NumericKernels} on startup: the Vector API implementation if the incubator module is available,
+ * the scalar implementation otherwise.
+ * <p>
+ * The Vector API implementation lives in the separate source set "vector", which alone is compiled with the incubator module.
+ * It is therefore only loaded by name.
+ */
+@Slf4j
+final class Kernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final String VECTOR_KERNELS = "de.novatec.baselining.data.transformations.VectorKernels";
+
+    static final NumericKernels INSTANCE = select();
+
+    private Kernels() {
+    }
+
+    private static NumericKernels select() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                NumericKernels kernels = loadVectorKernels();
+                log.info("Using SIMD kernels of the Vector API");
+                return kernels;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("Could not load the SIMD kernels, using scalar kernels", e);
+            }
+        } else {
+            log.debug("Module '{}' is not available, using scalar kernels", VECTOR_MODULE);
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * @return a new instance of the Vector API implementation, which requires the incubator module
+     * @throws ReflectiveOperationException if the implementation is not on the classpath
+     */
+    static NumericKernels loadVectorKernels() throws ReflectiveOperationException {
+        return (NumericKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,20 @@
+package de.novatec.baselining.data.transformations;
+
+/**
+ * The numeric inner loops of the transformations, operating on the primitive columns of {@link de.novatec.baselining.data.DataSeries}.
+ * The implementation is selected once by {@link Kernels}.
+ */
+interface NumericKernels {
+
+    /**
+     * Computes the rate between each pair of successive points: for each index i in [1, length),
+     * {@code out[i] = (values[i] - values[i - 1]) / (times[i] - times[i - 1]) * unitMillis}.
+     * The result is undefined for pairs without a positive time difference, these have to be filtered by the caller.
+     */
+    void rates(long[] times, double[] values, int length, double unitMillis, double[] out);
+
+    /**
+     * Stores the sum of the values in [from, to) into {@code out[0]} and the sum of their squares into {@code out[1]}.
+     */
+    void sumAndSquares(double[] values, int from, int to, double[] out);
+}
@@ -0,0 +1,24 @@
+package de.novatec.baselining.data.transformations;
+
+class ScalarKernels implements NumericKernels {
+
+    @Override
+    public void rates(long[] times, double[] values, int length, double unitMillis, double[] out) {
+        for (int i = 1; i < length; i++) {
+            out[i] = (values[i] - values[i - 1]) / (times[i] - times[i - 1]) * unitMillis;
+        }
+    }
+
+    @Override
+    public void sumAndSquares(double[] values, int from, int to, double[] out) {
+        double sum = 0;
+        double sumSq = 0;
+        for (int i = from; i < to; i++) {
+            double value = values[i];
+            sum += value;
+            sumSq += value * value;
+        }
+        out[0] = sum;
+        out[1] = sumSq;
+    }
+}
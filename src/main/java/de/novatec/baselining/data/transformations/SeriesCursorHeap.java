@@ -0,0 +1,116 @@
+package de.novatec.baselining.data.transformations;
+
+import de.novatec.baselining.data.DataSeries;
+
+import java.util.List;
+
+/**
+ * Min-heap over the cursors of multiple series, ordered by the time of the point each cursor points to.
+ * Used to walk all points of k series in time order with O(log k) per point.
+ */
+class SeriesCursorHeap {
+
+    private final List<DataSeries> series;
+
+    private final int[] cursors;
+
+    /**
+     * The indices of the series whose cursor has not reached the end, ordered as binary heap.
+     */
+    private final int[] heap;
+
+    private int size = 0;
+
+    SeriesCursorHeap(List<DataSeries> series) {
+        this.series = series;
+        this.cursors = new int[series.size()];
+        this.heap = new int[series.size()];
+        for (int i = 0; i < series.size(); i++) {
+            if (!series.get(i).isEmpty()) {
+                heap[size] = i;
+                siftUp(size++);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the index of the series with the earliest pending point
+     */
+    int peekSeries() {
+        return heap[0];
+    }
+
+    long peekTime() {
+        return timeOf(heap[0]);
+    }
+
+    /**
+     * @return the index of the next pending point within the given series
+     */
+    int cursor(int seriesIndex) {
+        return cursors[seriesIndex];
+    }
+
+    /**
+     * Moves the cursor of the series at the top of the heap to its next point.
+     */
+    void advance() {
+        int top = heap[0];
+        cursors[top]++;
+        if (cursors[top] == series.get(top).size()) {
+            heap[0] = heap[--size];
+        }
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    private long timeOf(int seriesIndex) {
+        return series.get(seriesIndex).getTime(cursors[seriesIndex]);
+    }
+
+    /**
+     * Series with equal times are ordered by their index, so that the walk is stable.
+     */
+    private boolean before(int first, int second) {
+        long firstTime = timeOf(first);
+        long secondTime = timeOf(second);
+        return firstTime < secondTime || (firstTime == secondTime && first < second);
+    }
+
+    private void siftUp(int pos) {
+        int element = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!before(element, heap[parent])) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = element;
+    }
+
+    private void siftDown(int pos) {
+        int element = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], element)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = element;
+    }
+}
@@ -0,0 +1,136 @@
+package de.novatec.baselining.data.transformations;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Computes a percentile over a window sliding forward over an array of values.
+ * <p>
+ * The values are ranked once upfront, afterwards a Fenwick tree over the ranks tracks which values are part of the window.
+ * Moving the window and selecting the k-th smallest value both take O(log n), instead of sorting the window for every evaluation.
+ * The estimation matches the default (legacy) estimation of commons-math's {@code Percentile}, NaN values are ignored.
+ * Instances are not thread safe.
+ */
+public class SlidingWindowPercentile {
+
+    private final double quantile;
+
+    /**
+     * The value of each rank, ascending.
+     */
+    private final double[] sortedValues;
+
+    /**
+     * The rank (one-based) of each value, 0 for NaN values which are never part of the window.
+     */
+    private final int[] ranks;
+
+    /**
+     * Fenwick tree counting the values of the window per rank.
+     */
+    private final int[] tree;
+
+    private final int highestPowerOfTwo;
+
+    private int windowFrom = 0;
+
+    private int windowTo = 0;
+
+    private int count = 0;
+
+    /**
+     * @param values   the values to slide over, must not be modified while this instance is in use
+     * @param length   the number of values to consider, starting at index zero
+     * @param quantile the percentile to compute, in the range (0, 1]
+     */
+    public SlidingWindowPercentile(double[] values, int length, double quantile) {
+        this.quantile = quantile;
+        Integer[] order = new Integer[length];
+        int numbers = 0;
+        for (int i = 0; i < length; i++) {
+            if (!Double.isNaN(values[i])) {
+                order[numbers++] = i;
+            }
+        }
+        Arrays.sort(order, 0, numbers, Comparator.comparingDouble(i -> values[i]));
+        sortedValues = new double[numbers];
+        ranks = new int[length];
+        for (int rank = 0; rank < numbers; rank++) {
+            sortedValues[rank] = values[order[rank]];
+            ranks[order[rank]] = rank + 1;
+        }
+        tree = new int[numbers + 1];
+        highestPowerOfTwo = numbers == 0 ? 0 : Integer.highestOneBit(numbers);
+    }
+
+    /**
+     * Moves the window to the given range. Both bounds must not be smaller than the ones of the previous call.
+     *
+     * @param from the index of the first value in the window
+     * @param to   the index after the last value in the window
+     */
+    public void slideTo(int from, int to) {
+        if (from < windowFrom || to < windowTo) {
+            throw new IllegalArgumentException("The window can only slide forward");
+        }
+        for (; windowTo < to; windowTo++) {
+            update(ranks[windowTo], 1);
+        }
+        for (; windowFrom < from; windowFrom++) {
+            update(ranks[windowFrom], -1);
+        }
+    }
+
+    /**
+     * @return the number of non-NaN values in the window
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the percentile of the values in the window, NaN if the window is empty
+     */
+    public double evaluate() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double pos = quantile == 1 ? count : quantile * (count + 1);
+        if (pos < 1) {
+            return select(1);
+        }
+        if (pos >= count) {
+            return select(count);
+        }
+        int lowerRank = (int) pos;
+        double lower = select(lowerRank);
+        double upper = select(lowerRank + 1);
+        return lower + (pos - lowerRank) * (upper - lower);
+    }
+
+    private void update(int rank, int delta) {
+        if (rank == 0) {
+            return;
+        }
+        count += delta;
+        for (int i = rank; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @param k one-based, at most {@link #size()}
+     * @return the k-th smallest value of the window
+     */
+    private double select(int k) {
+        int position = 0;
+        for (int step = highestPowerOfTwo; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < k) {
+                position = next;
+                k -= tree[next];
+            }
+        }
+        return sortedValues[position];
+    }
+}
@@ -2,44 +2,44 @@ package de.novatec.baselining.data.transformations;
 
 import de.novatec.baselining.data.AbstractTimedPoint;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.QuantileSketch;
 import de.novatec.baselining.data.TagValues;
 
 import java.time.Duration;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class Transformations {
 
     /**
      * Returns the difference betweens successive points
      *
-     * @param points
+     * @param series the series to derive
+     * @param unit   the time unit of the resulting rate
      */
-    public static List<DataPoint> rate(Collection<? extends DataPoint> points, Duration unit) {
-        double unitMillis = unit.toMillis();
-        return combineNeighbors(points, (first, second) -> {
-            double diff = second.getValue() - first.getValue();
-            double timeDiff = second.getTime() - first.getTime();
-            if (timeDiff > 0) {
-                return new DataPoint(second.getTime(), diff / timeDiff * unitMillis);
-            } else {
-                return null;
-            }
-        });
+    public static DataSeries rate(DataSeries series, Duration unit) {
+        return rateSince(series, Long.MIN_VALUE, unit);
     }
 
-    public static List<DataPoint> rateSince(Collection<? extends DataPoint> points, long sinceTimestamp, Duration unit) {
-        return Transformations.rate(points, Duration.ofSeconds(1)).stream()
-                .filter(pt -> pt.getTime() >= sinceTimestamp)
-                .collect(Collectors.toList());
-    }
+    public static DataSeries rateSince(DataSeries series, long sinceTimestamp, Duration unit) {
+        long[] times = series.times();
+        int length = series.size();
+        double[] rates = new double[length];
+        Kernels.INSTANCE.rates(times, series.values(), length, unit.toMillis(), rates);
 
+        DataSeries.Builder result = new DataSeries.Builder(length);
+        for (int i = Math.max(1, series.indexOf(sinceTimestamp)); i < length; i++) {
+            if (times[i] > times[i - 1]) {
+                result.add(times[i], rates[i]);
+            }
+        }
+        return result.build();
+    }
 
-    public static <K> Map<K, List<DataPoint>> rateSince(Map<K, ? extends Collection<? extends DataPoint>> data, long sinceTimestamp, Duration unit) {
-        return mapValues(data, pts -> rateSince(pts, sinceTimestamp, unit));
+    public static <K> Map<K, DataSeries> rateSince(Map<K, DataSeries> data, long sinceTimestamp, Duration unit) {
+        return mapValues(data, series -> rateSince(series, sinceTimestamp, unit));
     }
 
     public static <K, I, R> Map<K, R> mapValues(Map<K, I> input, Function<? super I, ? extends R> transformation) {
@@ -63,13 +63,45 @@ public class Transformations {
         return result;
     }
 
-    public static Map<TagValues, List<AggregatePoint>> meanByInterval(Map<TagValues, List<DataPoint>> data, long intervalMillis) {
-        return mapValues(data, points ->
-                Aggregations
-                        .byIntervall(points, intervalMillis, AggregatePoint::from)
-                        .stream()
-                        .map(pt -> new AggregatePoint(pt.getTime(), pt.getAvgValue(), pt.getAvgSquaredValue(), 1))
-                        .collect(Collectors.toList())
-        );
+    public static Map<TagValues, List<AggregatePoint>> meanByInterval(Map<TagValues, DataSeries> data, long intervalMillis) {
+        return mapValues(data, series -> meanByInterval(series, intervalMillis));
+    }
+
+    /**
+     * @return for each interval containing points, the mean of the values and the mean of their squares
+     */
+    public static List<AggregatePoint> meanByInterval(DataSeries series, long intervalMillis) {
+        List<AggregatePoint> result = new ArrayList<>();
+        long[] times = series.times();
+        double[] sums = new double[2];
+        int start = 0;
+        while (start < times.length) {
+            long interval = times[start] / intervalMillis;
+            int end = start + 1;
+            while (end < times.length && times[end] / intervalMillis == interval) {
+                end++;
+            }
+            Kernels.INSTANCE.sumAndSquares(series.values(), start, end, sums);
+            int count = end - start;
+            result.add(new AggregatePoint(interval * intervalMillis, sums[0] / count, sums[1] / count, 1));
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #meanByInterval(DataSeries, long)}, but the points additionally contain a sketch of the values within each interval.
+     */
+    public static List<AggregatePoint> sketchByInterval(DataSeries series, long intervalMillis, double relativeAccuracy) {
+        List<AggregatePoint> result = new ArrayList<>();
+        for (AggregatePoint mean : meanByInterval(series, intervalMillis)) {
+            QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+            int end = series.indexOf(mean.getTime() + intervalMillis);
+            for (int i = series.indexOf(mean.getTime()); i < end; i++) {
+                sketch.add(series.getValue(i));
+            }
+            result.add(mean.toBuilder().sketch(sketch).build());
+        }
+        return result;
     }
 }
@@ -27,4 +27,29 @@ public interface BaselineDataSource {
     default long getMinimumDelayMillis() {
         return 0;
     }
+
+    /**
+     * Sources depending on other baselines can only provide data up to the point those baselines have been computed.
+     *
+     * @return the timestamp up to which the data of this source is complete
+     */
+    default long getAvailableUntil() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Sources depending on other baselines may only be able to provide the data of a limited range at once.
+     *
+     * @return the maximum number of milliseconds fetched at once
+     */
+    default long getMaxRangeMillis() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true, if the fetched points contain a {@link de.novatec.baselining.data.QuantileSketch} of the values of each interval
+     */
+    default boolean providesSketches() {
+        return false;
+    }
 }
@@ -5,7 +5,7 @@ import de.novatec.baselining.influx.InfluxAccess;
 import de.novatec.baselining.config.baselines.CounterBaselineDefinition;
 import de.novatec.baselining.config.measurement.MeasurementName;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.data.transformations.Aggregations;
 import de.novatec.baselining.data.transformations.Transformations;
@@ -32,10 +32,17 @@ public class CounterDataSource implements BaselineDataSource {
 
     private final MeasurementName rawOutput;
 
+    private final boolean pushDownRate;
+
     public CounterDataSource(InfluxAccess influx, CounterBaselineDefinition settings) {
         this.influx = influx;
         this.input = settings.getInput();
-        this.query = "SELECT LAST(" + input.getField() + ") FROM " + input.getFullMeasurementName();
+        this.pushDownRate = settings.isPushDownRate();
+        if (pushDownRate) {
+            this.query = "SELECT NON_NEGATIVE_DERIVATIVE(LAST(" + input.getField() + "), 1s) FROM " + input.getFullMeasurementName();
+        } else {
+            this.query = "SELECT LAST(" + input.getField() + ") FROM " + input.getFullMeasurementName();
+        }
         this.tags = settings.getTags();
         this.lookBackMillis = settings.getLookBack().toMillis();
         this.samplePrecisionMillis = settings.getSamplePrecision().toMillis();
@@ -47,14 +54,16 @@ public class CounterDataSource implements BaselineDataSource {
         long start = startInterval * intervalMillis;
         long end = endInterval * intervalMillis;
 
-        Map<TagValues, List<DataPoint>> data = influx.queryAggregate(input.getDatabase(), query, start - lookBackMillis, end, samplePrecisionMillis);
+        Map<TagValues, DataSeries> data = influx.queryAggregate(input.getDatabase(), query, start - lookBackMillis, end, samplePrecisionMillis);
 
-        data = Transformations.rateSince(data, start, Duration.ofSeconds(1));
+        if (pushDownRate) {
+            data = Transformations.mapValues(data, series -> series.since(start));
+        } else {
+            data = Transformations.rateSince(data, start, Duration.ofSeconds(1));
+        }
 
         if (tags != null) {
-            data = Aggregations.aggregateByTags(tags, data, (a, b) ->
-                    Aggregations.joinInterpolating(a, b, (v1, v2) -> v1 + v2)
-            );
+            data = Aggregations.aggregateByTags(tags, data, Aggregations::sumInterpolating);
         }
 
         if (rawOutput != null) {
@@ -5,7 +5,7 @@ import de.novatec.baselining.influx.InfluxAccess;
 import de.novatec.baselining.config.baselines.CounterRatioBaselineDefinition;
 import de.novatec.baselining.config.measurement.MeasurementName;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.data.transformations.Aggregations;
 import de.novatec.baselining.data.transformations.Transformations;
@@ -15,7 +15,6 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class CounterRatioDataSource implements BaselineDataSource {
@@ -38,12 +37,15 @@ public class CounterRatioDataSource implements BaselineDataSource {
 
     private final MeasurementName rawOuput;
 
+    private final boolean pushDownRate;
+
     public CounterRatioDataSource(InfluxAccess influx, CounterRatioBaselineDefinition settings) {
         this.influx = influx;
         this.input = settings.getInput();
         this.divideBy = settings.getDivideBy();
-        this.numeratorQuery = "SELECT LAST(" + input.getField() + ") FROM " + input.getFullMeasurementName();
-        this.denominatorQuery = "SELECT LAST(" + divideBy.getField() + ") FROM " + divideBy.getFullMeasurementName();
+        this.pushDownRate = settings.isPushDownRate();
+        this.numeratorQuery = buildQuery(input);
+        this.denominatorQuery = buildQuery(divideBy);
         this.tags = settings.getTags();
         this.lookBackMillis = settings.getLookBack().toMillis();
         this.samplePrecisionMillis = settings.getSamplePrecision().toMillis();
@@ -56,20 +58,21 @@ public class CounterRatioDataSource implements BaselineDataSource {
         long start = startInterval * intervalMillis;
         long end = endInterval * intervalMillis;
 
-        Map<TagValues, List<DataPoint>> numerators = influx.queryAggregate(input.getDatabase(), numeratorQuery, start - lookBackMillis, end, samplePrecisionMillis);
-        Map<TagValues, List<DataPoint>> denominators = influx.queryAggregate(divideBy.getDatabase(), denominatorQuery, start - lookBackMillis, end, samplePrecisionMillis);
+        Map<TagValues, DataSeries> numerators = influx.queryAggregate(input.getDatabase(), numeratorQuery, start - lookBackMillis, end, samplePrecisionMillis);
+        Map<TagValues, DataSeries> denominators = influx.queryAggregate(divideBy.getDatabase(), denominatorQuery, start - lookBackMillis, end, samplePrecisionMillis);
 
 
         if (tags != null) {
-            numerators = Aggregations.aggregateByTags(tags, numerators, (a, b) ->
-                    Aggregations.joinInterpolating(a, b, (v1, v2) -> v1 + v2)
-            );
-            denominators = Aggregations.aggregateByTags(tags, denominators, (a, b) ->
-                    Aggregations.joinInterpolating(a, b, (v1, v2) -> v1 + v2)
-            );
+            numerators = Aggregations.aggregateByTags(tags, numerators, Aggregations::sumInterpolating);
+            denominators = Aggregations.aggregateByTags(tags, denominators, Aggregations::sumInterpolating);
+        }
+
+        if (!pushDownRate) {
+            numerators = Transformations.mapValues(numerators, series -> Transformations.rate(series, Duration.ofHours(1)));
+            denominators = Transformations.mapValues(denominators, series -> Transformations.rate(series, Duration.ofHours(1)));
         }
 
-        Map<TagValues, List<DataPoint>> averages = divideCounters(start, numerators, denominators);
+        Map<TagValues, DataSeries> averages = divideRates(start, numerators, denominators);
 
         if (rawOuput != null) {
             influx.writePoints(rawOuput.getDatabase(), rawOuput.getMeasurement(), averages);
@@ -78,23 +81,31 @@ public class CounterRatioDataSource implements BaselineDataSource {
         return Transformations.meanByInterval(averages, intervalMillis);
     }
 
-    private Map<TagValues, List<DataPoint>> divideCounters(long start, Map<TagValues, List<DataPoint>> numerators, Map<TagValues, List<DataPoint>> denominators) {
-        Map<TagValues, List<DataPoint>> averages = new HashMap<>();
+    /**
+     * The unit of the rates does not matter, as long as it is the same for numerators and denominators.
+     */
+    private String buildQuery(MeasurementFieldName field) {
+        if (pushDownRate) {
+            return "SELECT NON_NEGATIVE_DERIVATIVE(LAST(" + field.getField() + "), 1s) FROM " + field.getFullMeasurementName();
+        }
+        return "SELECT LAST(" + field.getField() + ") FROM " + field.getFullMeasurementName();
+    }
+
+    private Map<TagValues, DataSeries> divideRates(long start, Map<TagValues, DataSeries> numerators, Map<TagValues, DataSeries> denominators) {
+        Map<TagValues, DataSeries> averages = new HashMap<>();
         for (TagValues tags : numerators.keySet()) {
             if (denominators.containsKey(tags)) {
-                List<DataPoint> joined = Aggregations.joinInterpolating(
-                        Transformations.rate(numerators.get(tags), Duration.ofHours(1)),
-                        Transformations.rate(denominators.get(tags), Duration.ofHours(1)),
+                DataSeries joined = Aggregations.joinInterpolating(
+                        numerators.get(tags),
+                        denominators.get(tags),
                         (num, denom) -> {
                             if (denom > 0) {
                                 return num / denom;
                             } else {
-                                return null;
+                                return Double.NaN;
                             }
                         }
-                ).stream()
-                        .filter(pt -> pt.getTime() >= start)
-                        .collect(Collectors.toList());
+                ).since(start);
                 averages.put(tags, joined);
             }
         }
@@ -2,16 +2,18 @@ package de.novatec.baselining.datasources;
 
 import de.novatec.baselining.config.measurement.MeasurementFieldName;
 import de.novatec.baselining.influx.InfluxAccess;
+import de.novatec.baselining.influx.SeriesColumns;
 import de.novatec.baselining.config.baselines.GaugeBaselineDefinition;
 import de.novatec.baselining.config.measurement.MeasurementName;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.data.transformations.Aggregations;
 import de.novatec.baselining.data.transformations.Transformations;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +32,8 @@ public class GaugeDataSource implements BaselineDataSource {
 
     private final MeasurementName rawOuput;
 
+    private final boolean pushDownMean;
+
     public GaugeDataSource(InfluxAccess influx, GaugeBaselineDefinition settings) {
         this.influx = influx;
         this.input = settings.getInput();
@@ -37,6 +41,7 @@ public class GaugeDataSource implements BaselineDataSource {
         this.tags = settings.getTags();
         this.samplePrecisionMillis = settings.getSamplePrecision().toMillis();
         this.rawOuput = settings.getLoopBackMetric();
+        this.pushDownMean = settings.isPushDownMean();
     }
 
     @Override
@@ -44,14 +49,14 @@ public class GaugeDataSource implements BaselineDataSource {
         long start = startInterval * intervalMillis;
         long end = endInterval * intervalMillis;
 
-        Map<TagValues, List<DataPoint>> rawPoints = influx.queryAggregate(input.getDatabase(), query, start, end, samplePrecisionMillis);
+        if (pushDownMean) {
+            return fetchIntervalMeans(intervalMillis, start, end);
+        }
+
+        Map<TagValues, DataSeries> rawPoints = influx.queryAggregate(input.getDatabase(), query, start, end, samplePrecisionMillis);
 
         if (tags != null) {
-            rawPoints = Aggregations.aggregateByTags(tags, rawPoints, (a, b) -> {
-                ArrayList<DataPoint> combined = new ArrayList<>(a);
-                combined.addAll(b);
-                return combined;
-            });
+            rawPoints = Aggregations.aggregateByTags(tags, rawPoints, Aggregations::mergeAll);
         }
 
 
@@ -61,4 +66,40 @@ public class GaugeDataSource implements BaselineDataSource {
 
         return Transformations.meanByInterval(rawPoints, intervalMillis);
     }
+
+    /**
+     * Like the regular fetch, but the sample means are aggregated to the interval by influx.
+     */
+    private Map<TagValues, List<AggregatePoint>> fetchIntervalMeans(long intervalMillis, long start, long end) {
+        Map<TagValues, SeriesColumns> intervalMeans = influx.queryMeanOfSampleMeans(input.getDatabase(), input.getField(),
+                input.getFullMeasurementName(), tags, start, end, samplePrecisionMillis, intervalMillis);
+
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        Map<TagValues, DataSeries> means = new HashMap<>();
+        intervalMeans.forEach((tagValues, columns) -> {
+            int mean = columns.indexOf("mean");
+            int squares = columns.indexOf("squares");
+            if (mean < 0 || squares < 0) {
+                log.warn("Query of '{}' did not return the interval means", input.getFullMeasurementName());
+                return;
+            }
+            List<AggregatePoint> points = new ArrayList<>(columns.size());
+            for (int row = 0; row < columns.size(); row++) {
+                double meanValue = columns.getNumber(mean, row);
+                double squaresValue = columns.getNumber(squares, row);
+                if (!Double.isNaN(meanValue) && !Double.isNaN(squaresValue)) {
+                    points.add(new AggregatePoint(columns.getTime(row), meanValue, squaresValue, 1));
+                }
+            }
+            if (!points.isEmpty()) {
+                result.put(tagValues, points);
+                means.put(tagValues, columns.toDataSeries(mean));
+            }
+        });
+
+        if (rawOuput != null) {
+            influx.writePoints(rawOuput.getDatabase(), rawOuput.getMeasurement(), means);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,56 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.config.baselines.QuantileBaselineDefinition;
+import de.novatec.baselining.config.measurement.MeasurementFieldName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.data.transformations.Aggregations;
+import de.novatec.baselining.data.transformations.Transformations;
+import de.novatec.baselining.influx.InfluxAccess;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the raw values of a field together with a sketch of their distribution per interval,
+ * so that the baselines contain quantiles in addition to the mean.
+ */
+public class QuantileDataSource implements BaselineDataSource {
+
+    private final InfluxAccess influx;
+
+    private final MeasurementFieldName input;
+
+    private final String query;
+
+    private final List<String> tags;
+
+    private final double relativeAccuracy;
+
+    public QuantileDataSource(InfluxAccess influx, QuantileBaselineDefinition settings) {
+        this.influx = influx;
+        this.input = settings.getInput();
+        this.query = "SELECT " + input.getField() + " FROM " + input.getFullMeasurementName();
+        this.tags = settings.getTags();
+        this.relativeAccuracy = settings.getRelativeAccuracy();
+    }
+
+    @Override
+    public Map<TagValues, List<AggregatePoint>> fetch(long intervalMillis, long startInterval, long endInterval) {
+        long start = startInterval * intervalMillis;
+        long end = endInterval * intervalMillis;
+
+        Map<TagValues, DataSeries> rawPoints = influx.querySingleField(input.getDatabase(), query, start, end);
+        if (tags != null) {
+            rawPoints = Aggregations.aggregateByTags(tags, rawPoints, Aggregations::mergeAll);
+        }
+
+        return Transformations.mapValues(rawPoints, series -> Transformations.sketchByInterval(series, intervalMillis, relativeAccuracy));
+    }
+
+    @Override
+    public boolean providesSketches() {
+        return true;
+    }
+}
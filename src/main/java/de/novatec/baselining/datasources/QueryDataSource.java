@@ -4,7 +4,7 @@ import de.novatec.baselining.config.BaselineServiceSettings;
 import de.novatec.baselining.influx.InfluxAccess;
 import de.novatec.baselining.config.baselines.QueryBaselineDefinition;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.data.transformations.Transformations;
 import de.novatec.baselining.influx.InfluxUtils;
@@ -33,7 +33,7 @@ public class QueryDataSource implements BaselineDataSource {
         long start = startInterval * intervalMillis;
         long end = endInterval * intervalMillis;
 
-        Map<TagValues, List<DataPoint>> rawPoints = influx.queryTemplate(database, queryTemplate, start, end);
+        Map<TagValues, DataSeries> rawPoints = influx.queryTemplate(database, queryTemplate, start, end);
 
         return Transformations.meanByInterval(rawPoints, intervalMillis);
     }
@@ -5,11 +5,11 @@ import de.novatec.baselining.influx.InfluxAccess;
 import de.novatec.baselining.config.baselines.OutlierRemovalSettings;
 import de.novatec.baselining.config.baselines.RateBaselineDefinition;
 import de.novatec.baselining.data.AggregatePoint;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import de.novatec.baselining.data.transformations.Aggregations;
+import de.novatec.baselining.data.transformations.SlidingWindowPercentile;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -43,20 +43,25 @@ public class RateBaselineSource implements BaselineDataSource {
 
     @Override
     public Map<TagValues, List<AggregatePoint>> fetch(long intervalMillis, long startInterval, long endInterval) {
-        Map<TagValues, List<DataPoint>> filteredPoints = fetchFilteredData(intervalMillis, startInterval, endInterval);
+        Map<TagValues, DataSeries> filteredPoints = fetchFilteredData(intervalMillis, startInterval, endInterval);
 
         double intervallToHours = 60 * 60 * 1000.0 / intervalMillis;
 
         Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
         filteredPoints.forEach((tagValues, values) -> {
-            List<AggregatePoint> aggregated = Aggregations
-                    .byIntervall(values, intervalMillis, AggregatePoint::from).stream()
-                    .map(pt -> new AggregatePoint(pt.getTime(),
-                            pt.getValuesSum() * intervallToHours,
-                            pt.getValuesSum() * intervallToHours * pt.getValuesSum() * intervallToHours,
-                            1))
-                    .map(pt -> pt.shift(-intervalMillis / 2))
-                    .collect(Collectors.toList());
+            List<AggregatePoint> aggregated = new ArrayList<>();
+            int start = 0;
+            while (start < values.size()) {
+                long interval = values.getTime(start) / intervalMillis;
+                double sum = 0;
+                int end = start;
+                while (end < values.size() && values.getTime(end) / intervalMillis == interval) {
+                    sum += values.getValue(end++);
+                }
+                double rate = sum * intervallToHours;
+                aggregated.add(new AggregatePoint(interval * intervalMillis - intervalMillis / 2, rate, rate * rate, 1));
+                start = end;
+            }
             result.put(tagValues, aggregated);
         });
 
@@ -64,7 +69,7 @@ public class RateBaselineSource implements BaselineDataSource {
         return result;
     }
 
-    private Map<TagValues, List<DataPoint>> fetchFilteredData(long intervallMillis, long startIntervall, long endIntervall) {
+    private Map<TagValues, DataSeries> fetchFilteredData(long intervallMillis, long startIntervall, long endIntervall) {
         long start = startIntervall * intervallMillis;
         long end = endIntervall * intervallMillis;
 
@@ -72,13 +77,9 @@ public class RateBaselineSource implements BaselineDataSource {
         long startWithHalo = start - outlierWindowSize / 2;
         long endWithHalo = end + outlierWindowSize / 2;
 
-        Map<TagValues, List<DataPoint>> rawPoints = influx.querySingleField(input.getDatabase(), query, startWithHalo, endWithHalo);
+        Map<TagValues, DataSeries> rawPoints = influx.querySingleField(input.getDatabase(), query, startWithHalo, endWithHalo);
         if (tags != null) {
-            rawPoints = Aggregations.aggregateByTags(tags, rawPoints, (a, b) -> {
-                ArrayList<DataPoint> combined = new ArrayList<>(a);
-                combined.addAll(b);
-                return combined;
-            });
+            rawPoints = Aggregations.aggregateByTags(tags, rawPoints, Aggregations::mergeAll);
         }
 
 
@@ -87,12 +88,11 @@ public class RateBaselineSource implements BaselineDataSource {
                         points -> filterOutliers(points.getValue(), intervallMillis, startIntervall, endIntervall)));
     }
 
-    private List<DataPoint> filterOutliers(Collection<DataPoint> data, long intervallMillis, long startIntervall, long endIntervall) {
+    private DataSeries filterOutliers(DataSeries data, long intervallMillis, long startIntervall, long endIntervall) {
 
-        List<DataPoint> result = new ArrayList<>();
+        DataSeries.Builder result = new DataSeries.Builder(data.size());
+        SlidingWindowPercentile window = new SlidingWindowPercentile(data.values(), data.size(), outlierRemovalConfig.getPercentile());
 
-        TreeMap<Long, DataPoint> pointsSorted = new TreeMap<>();
-        data.forEach(pt -> pointsSorted.put(pt.getTime(), pt));
         for (long interval = startIntervall; interval < endIntervall; interval++) {
 
             long intervalStart = interval * intervallMillis;
@@ -104,20 +104,20 @@ public class RateBaselineSource implements BaselineDataSource {
 
             double percentileValue = Double.MAX_VALUE;
 
-            Collection<DataPoint> windowPoints = pointsSorted.subMap(windowStart, true, windowEnd, false).values();
-            if (windowPoints.size() >= outlierRemovalConfig.getMinPointCount()) {
-                double[] valuesArray = windowPoints.stream().mapToDouble(DataPoint::getValue).toArray();
-                Percentile p = new Percentile(outlierRemovalConfig.getPercentile() * 100);
-                p.setData(valuesArray);
-                percentileValue = p.evaluate();
+            int windowFrom = data.indexOf(windowStart);
+            int windowTo = data.indexOf(windowEnd);
+            window.slideTo(windowFrom, windowTo);
+            if (windowTo - windowFrom >= outlierRemovalConfig.getMinPointCount() && window.size() > 0) {
+                percentileValue = window.evaluate();
             }
 
-            double percentileLimit = percentileValue;
-            pointsSorted.subMap(intervalStart, true, intervalEnd, false)
-                    .values().stream()
-                    .filter(pt -> pt.getValue() <= percentileLimit)
-                    .forEach(result::add);
+            int intervalTo = data.indexOf(intervalEnd);
+            for (int i = data.indexOf(intervalStart); i < intervalTo; i++) {
+                if (data.getValue(i) <= percentileValue) {
+                    result.add(data.getTime(i), data.getValue(i));
+                }
+            }
         }
-        return result;
+        return result.build();
     }
 }
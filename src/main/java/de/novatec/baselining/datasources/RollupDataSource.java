@@ -0,0 +1,67 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.data.transformations.Aggregations;
+import de.novatec.baselining.data.transformations.Transformations;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the data of a coarser precision by combining the intervals of a generator with a finer precision.
+ * The data is reconstructed from the infinity baselines of that generator, so the source measurement is not queried again.
+ */
+public class RollupDataSource implements BaselineDataSource {
+
+    private final BaselineGenerator source;
+
+    public RollupDataSource(BaselineGenerator source) {
+        this.source = source;
+    }
+
+    @Override
+    public Map<TagValues, List<AggregatePoint>> fetch(long intervalMillis, long startInterval, long endInterval) {
+        long sourcePrecision = source.getPrecisionMillis();
+        long sourceStart = startInterval * intervalMillis / sourcePrecision;
+        long sourceEnd = endInterval * intervalMillis / sourcePrecision;
+
+        Map<TagValues, List<AggregatePoint>> sourceData = source.getBaselinedData(sourceStart, sourceEnd);
+
+        // the mean of the finer intervals is the mean of the samples within the coarser interval
+        return Transformations.mapValues(sourceData, points ->
+                Aggregations.byIntervall(points, intervalMillis, (time, pointsInInterval) -> {
+                    AggregatePoint sum = pointsInInterval.stream().reduce(AggregatePoint::add).get();
+                    return new AggregatePoint(time, sum.getAvgValue(), sum.getAvgSquaredValue(), 1, sum.getSketch());
+                })
+        );
+    }
+
+    /**
+     * The sketches of the finer intervals are merged, so rollups of quantile baselines provide quantiles as well.
+     */
+    @Override
+    public boolean providesSketches() {
+        return source.providesSketches();
+    }
+
+    /**
+     * If the infinity baselines of the generator are only kept in its state store, a fetch must not reach back further than it retains.
+     */
+    @Override
+    public long getMaxRangeMillis() {
+        return source.getBaselinedDataRetentionMillis();
+    }
+
+    /**
+     * The infinity baselines are read back from influx if they are not held by the state store of the source,
+     * so only intervals whose points have been accepted by influx are available.
+     *
+     * @return the timestamp up to which the generator with the finer precision has written its baselines
+     */
+    @Override
+    public long getAvailableUntil() {
+        return source.getWrittenUntil();
+    }
+}
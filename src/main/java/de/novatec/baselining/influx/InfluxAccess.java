@@ -1,16 +1,20 @@
 package de.novatec.baselining.influx;
 
-import com.influxdb.client.InfluxDBClient;
-import com.influxdb.client.WriteOptions;
-import com.influxdb.query.InfluxQLQueryResult;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.config.BaselineServiceSettings;
+import de.novatec.baselining.config.FetchCacheSettings;
+import de.novatec.baselining.config.WriteSettings;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import lombok.extern.slf4j.Slf4j;
-import com.influxdb.client.write.Point;
+import com.influxdb.spring.influx.InfluxDB2Properties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Slf4j
 @Component
@@ -20,11 +24,29 @@ public class InfluxAccess {
 
     private final InfluxWrite write;
 
+    /**
+     * Shares the results of identical source queries between baselines, null if disabled.
+     */
+    private final SharedFetchCache fetchCache;
+
+    private final Duration drainTimeout;
+
     @Autowired
-    public InfluxAccess(InfluxDBClient influx) {
-        // we still use InfluxQL instead of Flux for queries
-        this.query = new InfluxQuery(influx.getInfluxQLQueryApi());
-        this.write = new InfluxWrite(influx.makeWriteApi(WriteOptions.DEFAULTS));
+    public InfluxAccess(InfluxDB2Properties influxProperties, BaselineServiceSettings settings) throws IOException {
+        // we still use InfluxQL instead of Flux for queries, writes use the compatible line protocol endpoint
+        this.query = new InfluxQuery(influxProperties.getUrl(), influxProperties.getToken(), influxProperties.getUsername(),
+                influxProperties.getPassword(), influxProperties.getConnectTimeout(), influxProperties.getReadTimeout());
+        WriteSettings writeSettings = settings.getWrite();
+        String authorization = InfluxUtils.buildAuthorization(influxProperties.getToken(), influxProperties.getUsername(), influxProperties.getPassword());
+        this.write = new InfluxWrite(influxProperties.getUrl(), authorization, influxProperties.getConnectTimeout(),
+                influxProperties.getWriteTimeout(), writeSettings);
+        this.drainTimeout = writeSettings.getDrainTimeout();
+        FetchCacheSettings fetchCacheSettings = settings.getFetchCache();
+        if (fetchCacheSettings.isEnabled()) {
+            this.fetchCache = new SharedFetchCache(fetchCacheSettings.getTtl().toMillis(), fetchCacheSettings.getMaxPoints());
+        } else {
+            this.fetchCache = null;
+        }
     }
 
     /**
@@ -32,21 +54,22 @@ public class InfluxAccess {
      *
      * @param database the database (bucket) to query data
      * @param queryTemplate the configured InfluxQL query template
-     * @return the InfluxQL query result mapped to datapoints for each unique tag combination
+     * @return the InfluxQL query result mapped to data series for each unique tag combination
      */
-    public Map<TagValues, List<DataPoint>> queryTemplate(String database, String queryTemplate, long startMillis, long endMillis) {
-        return query.queryTemplate(database, queryTemplate, startMillis, endMillis);
+    public Map<TagValues, DataSeries> queryTemplate(String database, String queryTemplate, long startMillis, long endMillis) {
+        return shared(new SharedFetchCache.FetchKey(database, queryTemplate, startMillis, endMillis, 0),
+                () -> query.queryTemplate(database, queryTemplate, startMillis, endMillis));
     }
 
     /**
      * Query data via complete query.
-     * A warn message may be logged, if no data could be fetched.
      *
      * @param database the database (bucket) to query data
      * @param selectFrom the InfluxQL query
-     * @return the InfluxQL query result
+     * @return the columns of each unique tag combination
+     * @throws java.io.UncheckedIOException if the query failed, so that it is not mistaken for an empty result
      */
-    public InfluxQLQueryResult query(String database, String selectFrom, long startMillis, long endMillis) {
+    public Map<TagValues, SeriesColumns> query(String database, String selectFrom, long startMillis, long endMillis) {
         return query.query(database, selectFrom, startMillis, endMillis);
     }
 
@@ -55,10 +78,11 @@ public class InfluxAccess {
      *
      * @param database the database (bucket) to query data
      * @param selectFrom the InfluxQL query
-     * @return the InfluxQL query result mapped to datapoints for each unique tag combination
+     * @return the InfluxQL query result mapped to data series for each unique tag combination
      */
-    public Map<TagValues, List<DataPoint>> querySingleField(String database, String selectFrom, long startMillis, long endMillis) {
-        return query.querySingleField(database, selectFrom, startMillis, endMillis);
+    public Map<TagValues, DataSeries> querySingleField(String database, String selectFrom, long startMillis, long endMillis) {
+        return shared(new SharedFetchCache.FetchKey(database, selectFrom, startMillis, endMillis, 0),
+                () -> query.querySingleField(database, selectFrom, startMillis, endMillis));
     }
 
     /**
@@ -67,10 +91,39 @@ public class InfluxAccess {
      * @param database the database (bucket) to query data
      * @param selectFrom the InfluxQL query
      * @param intervalMillis the aggregation interval
-     * @return the InfluxQL query result mapped to datapoints for each unique tag combination
+     * @return the InfluxQL query result mapped to data series for each unique tag combination
+     */
+    public Map<TagValues, DataSeries> queryAggregate(String database, String selectFrom, long startMillis, long endMillis, long intervalMillis) {
+        return shared(new SharedFetchCache.FetchKey(database, selectFrom, startMillis, endMillis, intervalMillis),
+                () -> query.queryAggregate(database, selectFrom, startMillis, endMillis, intervalMillis));
+    }
+
+    /**
+     * Query the mean of a field and the mean of its squares per interval, computed by influx from the means per sample interval.
+     * The results are not shared via the fetch cache, as they are already reduced to a single row per interval.
+     *
+     * @param database the database (bucket) to query data
+     * @param field the field to aggregate
+     * @param from the fully qualified measurement
+     * @param groupByTags the tags to group by, null to keep every series separate
+     * @param sampleMillis the interval of the sample means
+     * @param intervalMillis the aggregation interval
+     * @return the columns "mean" and "squares" for each tag group
+     */
+    public Map<TagValues, SeriesColumns> queryMeanOfSampleMeans(String database, String field, String from, List<String> groupByTags,
+                                                              long startMillis, long endMillis, long sampleMillis, long intervalMillis) {
+        return query.queryMeanOfSampleMeans(database, field, from, groupByTags, startMillis, endMillis, sampleMillis, intervalMillis);
+    }
+
+    /**
+     * Executes the given query only if no identical query is running or has been executed recently.
+     * The returned result may be shared with other callers and therefore must not be modified.
      */
-    public Map<TagValues, List<DataPoint>> queryAggregate(String database, String selectFrom, long startMillis, long endMillis, long intervalMillis) {
-        return query.queryAggregate(database, selectFrom, startMillis, endMillis, intervalMillis);
+    private Map<TagValues, DataSeries> shared(SharedFetchCache.FetchKey key, Supplier<Map<TagValues, DataSeries>> query) {
+        if (fetchCache == null) {
+            return query.get();
+        }
+        return fetchCache.get(key, query);
     }
 
     /**
@@ -80,18 +133,32 @@ public class InfluxAccess {
      * @param measurement the measurement to write data into
      * @param points the collection of tags and their data points
      */
-    public void writePoints(String database, String measurement, Map<TagValues, ? extends Collection<DataPoint>> points) {
+    public void writePoints(String database, String measurement, Map<TagValues, DataSeries> points) {
         write.writePoints(database, measurement, points);
     }
 
     /**
-     * Writes the data points into InfluxDB with their tags.
+     * Sends the queued points before shutting down. Baselines are stopped before, because they depend on this component.
+     */
+    @PreDestroy
+    void close() {
+        write.close(drainTimeout);
+    }
+
+    /**
+     * Opens a batch for writing line protocol into InfluxDB, which has to be closed to send the remaining lines.
      *
      * @param database the database (bucket) to write data into
-     * @param tags the collection of tag keys and values
-     * @param points the collection of data points
+     * @return the batch
+     */
+    public InfluxWrite.Batch openBatch(String database) {
+        return write.openBatch(database);
+    }
+
+    /**
+     * Runs the given action once all batches closed so far have been sent, see {@link InfluxWrite#whenSent(Runnable)}.
      */
-    public void writePoints(String database, Map<String, String> tags, List<Point> points) {
-        write.writePoints(database, tags, points);
+    public void whenWritten(Runnable action) {
+        write.whenSent(action);
     }
 }
@@ -1,33 +1,62 @@
 package de.novatec.baselining.influx;
 
-import com.influxdb.client.InfluxQLQueryApi;
-import com.influxdb.client.domain.InfluxQLQuery;
-import com.influxdb.query.InfluxQLQueryResult;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.text.StringSubstitutor;
 import org.apache.commons.text.lookup.StringLookup;
 import org.springframework.util.ObjectUtils;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
-@Slf4j
+/**
+ * Executes InfluxQL queries via the /query endpoint.
+ * Results are requested in chunks and decoded while they are streamed, see {@link QueryResultDecoder}.
+ */
 public class InfluxQuery {
 
-    private static final InfluxQLQueryResult EMPTY_QUERY_RESULT = new InfluxQLQueryResult(Collections.emptyList());
-
-    private final InfluxQLQueryApi queryApi;
-
-    public InfluxQuery(InfluxQLQueryApi queryApi) {
-        this.queryApi = queryApi;
+    /**
+     * The maximum number of rows per chunk of a response.
+     */
+    private static final int CHUNK_SIZE = 10000;
+
+    private final HttpClient httpClient;
+
+    private final String queryUrl;
+
+    private final String authorization;
+
+    private final Duration readTimeout;
+
+    /**
+     * @param url            the url of influx
+     * @param token          the token used for authentication, may be empty
+     * @param username       the username used for authentication if no token is given, may be empty
+     * @param password       the password of the user
+     * @param connectTimeout the timeout for connecting to influx
+     * @param readTimeout    the timeout for receiving the response to a query
+     */
+    public InfluxQuery(String url, String token, String username, String password, Duration connectTimeout, Duration readTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        this.queryUrl = url.replaceAll("/+$", "") + "/query";
+        this.readTimeout = readTimeout;
+        this.authorization = InfluxUtils.buildAuthorization(token, username, password);
     }
 
-    public Map<TagValues, List<DataPoint>> queryTemplate(String database, String queryTemplate, long startMillis, long endMillis) {
+    public Map<TagValues, DataSeries> queryTemplate(String database, String queryTemplate, long startMillis, long endMillis) {
         StringLookup lookup = (variable) -> {
             if (variable.equalsIgnoreCase("timeFilter")) {
                 return buildTimeFilter(startMillis, endMillis);
@@ -37,82 +66,144 @@ public class InfluxQuery {
         StringSubstitutor subst = new StringSubstitutor(lookup);
         String queryString = subst.replace(queryTemplate);
 
-        InfluxQLQuery influxQLQuery = new InfluxQLQuery(queryString, database);
-        InfluxQLQueryResult result = queryApi.query(influxQLQuery);
-        return extractSeriesResults(result);
+        return querySeries(database, queryString);
     }
 
-    public InfluxQLQueryResult query(String database, String selectFrom, String filter, String groupBy, long startMillis, long endMillis) {
-        StringBuilder query = new StringBuilder(selectFrom);
-        query.append(" WHERE ").append(buildTimeFilter(startMillis, endMillis));
-        if (!ObjectUtils.isEmpty(filter)) {
-            query.append(" AND ").append(filter);
-        }
-        query.append(" GROUP BY ").append(groupBy);
-        InfluxQLQuery influxQLQuery = new InfluxQLQuery(query.toString(), database);
-        try {
-            return queryApi.query(influxQLQuery);
-        } catch (Exception e) {
-            log.error("Exception while executing InfluxDB query.", e);
-            return EMPTY_QUERY_RESULT;
-        }
+    public Map<TagValues, SeriesColumns> query(String database, String selectFrom, String filter, String groupBy, long startMillis, long endMillis) {
+        Map<TagValues, SeriesColumns> result = new HashMap<>();
+        execute(database, buildQuery(selectFrom, filter, groupBy, startMillis, endMillis),
+                (measurement, tags, columns) -> putUnique(result, tags, columns));
+        return result;
     }
 
-    public InfluxQLQueryResult query(String database, String selectFrom, long startMillis, long endMillis) {
+    public Map<TagValues, SeriesColumns> query(String database, String selectFrom, long startMillis, long endMillis) {
         return query(database, selectFrom, null, "*", startMillis, endMillis);
     }
 
-    public Map<TagValues, List<DataPoint>> querySingleField(String database, String selectFrom, long startMillis, long endMillis) {
-        InfluxQLQueryResult queryResult = query(database, selectFrom, startMillis, endMillis);
-        return extractSeriesResults(queryResult);
+    public Map<TagValues, DataSeries> querySingleField(String database, String selectFrom, long startMillis, long endMillis) {
+        return querySeries(database, buildQuery(selectFrom, null, "*", startMillis, endMillis));
     }
 
-    public Map<TagValues, List<DataPoint>> queryAggregate(String database, String selectFrom, long startMillis, long endMillis, long intervalMillis) {
+    public Map<TagValues, DataSeries> queryAggregate(String database, String selectFrom, long startMillis, long endMillis, long intervalMillis) {
         String groupBy = "*, time(" + intervalMillis + "ms) fill(none)";
-        InfluxQLQueryResult queryResult = query(database, selectFrom, null, groupBy, startMillis, endMillis);
-        return extractSeriesResults(queryResult);
+        return querySeries(database, buildQuery(selectFrom, null, groupBy, startMillis, endMillis));
+    }
+
+    /**
+     * Aggregates a field in two steps within influx: first the mean of every series per sample interval,
+     * then per interval and tag group the mean of these sample means and the mean of their squares.
+     * This matches querying the sample means via {@link #queryAggregate(String, String, long, long, long)},
+     * merging the series of each tag group and averaging them per interval, but only a single row per interval is transferred.
+     *
+     * @param from        the fully qualified measurement
+     * @param groupByTags the tags to group by, null to keep every series separate
+     * @return the columns "mean" and "squares" for each tag group
+     */
+    public Map<TagValues, SeriesColumns> queryMeanOfSampleMeans(String database, String field, String from, List<String> groupByTags,
+                                                              long startMillis, long endMillis, long sampleMillis, long intervalMillis) {
+        Map<TagValues, SeriesColumns> result = new HashMap<>();
+        execute(database, buildMeanOfSampleMeansQuery(field, from, groupByTags, startMillis, endMillis, sampleMillis, intervalMillis),
+                (measurement, tags, columns) -> putUnique(result, tags, columns));
+        return result;
     }
 
-    private Map<TagValues, List<DataPoint>> extractSeriesResults(InfluxQLQueryResult queryResult) {
-        return queryResult.getResults()
-                .stream()
-                .filter(Objects::nonNull)
-                .map(InfluxQLQueryResult.Result::getSeries)
-                .flatMap(List::stream)
-                .filter(series -> !series.getValues().isEmpty())
-                .collect(Collectors.toMap(series -> TagValues.from(series.getTags()), this::seriesToPoints));
+    static String buildMeanOfSampleMeansQuery(String field, String from, List<String> groupByTags,
+                                              long startMillis, long endMillis, long sampleMillis, long intervalMillis) {
+        String samples = "SELECT MEAN(" + field + ") AS sample, MEAN(" + field + ") * MEAN(" + field + ") AS squared FROM " + from
+                + " WHERE" + buildTimeFilter(startMillis, endMillis) + "GROUP BY *, time(" + sampleMillis + "ms) fill(none)";
+        String selectFrom = "SELECT MEAN(sample) AS mean, MEAN(squared) AS squares FROM (" + samples + ")";
+        StringBuilder groupBy = new StringBuilder();
+        if (groupByTags == null) {
+            groupBy.append("*, ");
+        } else {
+            groupByTags.forEach(tag -> groupBy.append('"').append(tag).append("\", "));
+        }
+        groupBy.append("time(").append(intervalMillis).append("ms) fill(none)");
+        return buildQuery(selectFrom, null, groupBy.toString(), startMillis, endMillis);
+    }
+
+    /**
+     * Executes a query returning a single field, each series is converted as soon as it has been received.
+     */
+    private Map<TagValues, DataSeries> querySeries(String database, String query) {
+        Map<TagValues, DataSeries> result = new HashMap<>();
+        execute(database, query, (measurement, tags, columns) -> {
+            if (columns.size() > 0) {
+                if (columns.getColumns().size() != 1) {
+                    throw new IllegalArgumentException("Query returned more than one non-time field: " + columns.getColumns());
+                }
+                putUnique(result, tags, columns.toDataSeries(0));
+            }
+        });
+        return result;
     }
 
-    private List<DataPoint> seriesToPoints(InfluxQLQueryResult.Series series) {
-        if (series.getColumns().size() != 2) {
-            throw new IllegalArgumentException("Query returned more than one non-time field: " + series.getColumns());
+    /**
+     * The results are keyed by the tags only, so series of different measurements with the same tags must not be merged silently.
+     */
+    private static <T> void putUnique(Map<TagValues, T> result, TagValues tags, T series) throws IOException {
+        if (result.putIfAbsent(tags, series) != null) {
+            throw new IOException("Query returned multiple series with the tags " + tags + ", e.g. of different measurements");
         }
-        int timeIndex = series.getColumns().get("time");
-        int fieldIndex = timeIndex == 0 ? 1 : 0;
+    }
 
-        return series.getValues().stream()
-                .filter(record -> record.getValues()[fieldIndex] != null)
-                .map(record -> createDataPoint(record, timeIndex, fieldIndex))
-                .collect(Collectors.toList());
+    /**
+     * Executes the query and decodes the response while it is received.
+     * The timestamps are requested as epoch milliseconds, so that they can be used without conversion.
+     *
+     * @param consumer receives each series of the result once it is complete
+     * @throws UncheckedIOException if the query failed
+     */
+    private void execute(String database, String query, QueryResultDecoder.SeriesConsumer consumer) {
+        try {
+            send(database, query, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not execute query: " + query, e);
+        }
     }
 
-    private DataPoint createDataPoint(InfluxQLQueryResult.Series.Record record, int timeIndex, int fieldIndex) {
-        Object[] values = record.getValues();
-        Object time = values[timeIndex];
-        Object value = values[fieldIndex];
-        DataPoint.DataPointBuilder builder = DataPoint.builder();
+    private void send(String database, String query, QueryResultDecoder.SeriesConsumer consumer) throws IOException {
+        StringBuilder uri = new StringBuilder(queryUrl)
+                .append("?epoch=ms&chunked=true&chunk_size=").append(CHUNK_SIZE)
+                .append("&q=").append(URLEncoder.encode(query, StandardCharsets.UTF_8));
+        if (!ObjectUtils.isEmpty(database)) {
+            uri.append("&db=").append(URLEncoder.encode(database, StandardCharsets.UTF_8));
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri.toString()))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET();
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+
+        HttpResponse<InputStream> response;
         try {
-            // convert nanos to millis
-            long timeMillis = Long.parseLong(time.toString()) / 1000 / 1000;
-            double resultValue = Double.parseDouble(value.toString());
-            builder.time(timeMillis).value(resultValue);
-        } catch (NumberFormatException e) {
-            // Ignore value
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while executing query", e);
+        }
+        try (InputStream body = response.body()) {
+            if (response.statusCode() / 100 != 2) {
+                String message = new String(body.readNBytes(1024), StandardCharsets.UTF_8);
+                throw new IOException("Query failed with status " + response.statusCode() + ": " + message);
+            }
+            QueryResultDecoder.decode(body, consumer);
         }
-        return builder.build();
     }
 
-    private String buildTimeFilter(long startMillis, long endMillis) {
+    private static String buildQuery(String selectFrom, String filter, String groupBy, long startMillis, long endMillis) {
+        StringBuilder query = new StringBuilder(selectFrom);
+        query.append(" WHERE ").append(buildTimeFilter(startMillis, endMillis));
+        if (!ObjectUtils.isEmpty(filter)) {
+            query.append(" AND ").append(filter);
+        }
+        query.append(" GROUP BY ").append(groupBy);
+        return query.toString();
+    }
+
+    private static String buildTimeFilter(long startMillis, long endMillis) {
         return new StringBuilder().append(" ( time >= ")
                 .append(startMillis)
                 .append("000000")
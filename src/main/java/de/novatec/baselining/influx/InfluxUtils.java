@@ -1,8 +1,11 @@
 package de.novatec.baselining.influx;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ObjectUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +40,22 @@ public class InfluxUtils {
         else throw new IllegalArgumentException("No match found for database. You can specify the database directly as well");
     }
 
+    /**
+     * @param token    the token used for authentication, may be empty
+     * @param username the username used for authentication if no token is given, may be empty
+     * @param password the password of the user
+     * @return the value of the authorization header, null if neither a token nor a username is given
+     */
+    public static String buildAuthorization(String token, String username, String password) {
+        if (!ObjectUtils.isEmpty(token)) {
+            return "Token " + token;
+        } else if (!ObjectUtils.isEmpty(username)) {
+            String credentials = username + ":" + (password == null ? "" : password);
+            return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+    }
+
     public static String prettyPrintDuration(long millis) {
         long timeLeft = millis;
         StringBuilder result = new StringBuilder();
@@ -1,82 +1,310 @@
 package de.novatec.baselining.influx;
 
-import com.influxdb.client.WriteApi;
-import com.influxdb.client.domain.WriteConsistency;
-import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
-import com.influxdb.client.write.WriteParameters;
-import de.novatec.baselining.data.DataPoint;
+import de.novatec.baselining.config.WriteSettings;
+import de.novatec.baselining.data.DataSeries;
 import de.novatec.baselining.data.TagValues;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.ObjectUtils;
 
-import java.util.Collection;
-import java.util.List;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
+/**
+ * Writes line protocol to the InfluxQL compatible /write endpoint, in requests of a limited number of lines.
+ * The lines are encoded via {@link LineProtocolEncoder} into pooled buffers and handed over to a {@link WriteSpool},
+ * which sends them (optionally gzip compressed) in the background.
+ */
 @Slf4j
 public class InfluxWrite {
 
-    private final WriteApi writeApi;
+    /**
+     * The maximum number of idle encoders kept for reuse.
+     */
+    private static final int MAX_POOLED_ENCODERS = 16;
 
-    public InfluxWrite(WriteApi writeApi) {
-        this.writeApi = writeApi;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final HttpClient httpClient;
+
+    private final String writeUrl;
+
+    private final String authorization;
+
+    private final Duration writeTimeout;
+
+    private final int batchSize;
+
+    private final boolean gzip;
+
+    private final ConcurrentLinkedQueue<LineProtocolEncoder> pool = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Only used by the sending thread of the {@link #spool}.
+     */
+    private final GzipCompressor compressor = new GzipCompressor();
+
+    private final WriteSpool spool;
+
+    /**
+     * @param url            the url of influx
+     * @param authorization  the value of the authorization header, null if not required
+     * @param connectTimeout the timeout for connecting to influx
+     * @param writeTimeout   the timeout for completing a single request
+     * @param settings       the batch size, compression and spool settings
+     * @throws IOException if the spool directory can not be opened
+     */
+    public InfluxWrite(String url, String authorization, Duration connectTimeout, Duration writeTimeout, WriteSettings settings) throws IOException {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        this.writeUrl = url.replaceAll("/+$", "") + "/write";
+        this.authorization = authorization;
+        this.writeTimeout = writeTimeout;
+        this.batchSize = settings.getBatchSize();
+        this.gzip = settings.isGzip();
+        this.spool = new WriteSpool(this::send,
+                ObjectUtils.isEmpty(settings.getSpoolDirectory()) ? null : Paths.get(settings.getSpoolDirectory()),
+                settings.getQueueCapacity(), settings.getMaxRetries(), settings.getInitialRetryDelay(), settings.getMaxRetryDelay());
+    }
+
+    public void writePoints(String database, String measurement, Map<TagValues, DataSeries> points) {
+        try (Batch batch = openBatch(database)) {
+            points.forEach((tags, series) -> {
+                byte[] prefix = LineProtocolEncoder.encodePrefix(measurement, tags.getTags());
+                for (int i = 0; i < series.size(); i++) {
+                    batch.startLine(prefix)
+                            .field("value", series.getValue(i))
+                            .endLine(series.getTime(i));
+                }
+            });
+        }
+    }
+
+    /**
+     * @param database the database to write to
+     * @return a batch, which sends its lines once the batch size is reached and when it is closed
+     */
+    public Batch openBatch(String database) {
+        LineProtocolEncoder encoder = pool.poll();
+        if (encoder == null) {
+            encoder = new LineProtocolEncoder();
+        } else {
+            pooled.decrementAndGet();
+        }
+        return new Batch(database, encoder);
+    }
+
+    /**
+     * Runs the given action once all batches closed so far have been sent or rejected by influx.
+     * The action is never run if a batch has been given up after the maximum number of retries.
+     */
+    public void whenSent(Runnable action) {
+        spool.whenSent(action);
     }
 
-    public void writePoints(String database, String measurement, Map<TagValues, ? extends Collection<DataPoint>> points) {
-        points.forEach((tags, pts) -> {
-            List<Point> converted = pts.stream()
-                    .map(pt -> new Point(measurement)
-                            .time(pt.getTime(), WritePrecision.MS)
-                            .addField("value", pt.getValue())
-                    )
-                    .collect(Collectors.toList());
-            if (!converted.isEmpty()) {
-                writePoints(database, tags.getTags(), converted);
+    /**
+     * Waits up to the given timeout until all queued points have been sent.
+     * Points which have not been sent remain in the spool directory, if one is configured.
+     */
+    public void close(Duration drainTimeout) {
+        spool.close(drainTimeout);
+    }
+
+    private void release(LineProtocolEncoder encoder) {
+        encoder.reset();
+        if (pooled.incrementAndGet() <= MAX_POOLED_ENCODERS) {
+            pool.offer(encoder);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Hands the lines of the encoder over to the spool and resets it.
+     */
+    private void enqueue(String database, LineProtocolEncoder encoder) {
+        if (encoder.getLineCount() == 0) {
+            return;
+        }
+        try {
+            spool.enqueue(database, Arrays.copyOf(encoder.getBuffer(), encoder.getSize()), encoder.getLineCount());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for queued points to be written", e);
+        } finally {
+            encoder.reset();
+        }
+    }
+
+    /**
+     * Invoked by the spool. Requests rejected by influx due to their content are not retried, as they would fail again,
+     * and requests which are too large are split. All other failures (including authentication errors or a missing database)
+     * are thrown, so that the spool retries them.
+     */
+    private void send(String database, byte[] lines, int lineCount) throws IOException {
+        log.info("Writing {} points into the InfluxDB", lineCount);
+        HttpResponse<String> response = post(database, lines);
+        int status = response.statusCode();
+        if (status == 413 && lineCount > 1) {
+            int firstCount = lineCount / 2;
+            int middle = lineEnd(lines, firstCount);
+            send(database, Arrays.copyOfRange(lines, 0, middle), firstCount);
+            send(database, Arrays.copyOfRange(lines, middle, lines.length), lineCount - firstCount);
+        } else if (status == 400 || status == 413) {
+            log.error("Influx rejected {} points for '{}' with status {}: {}", lineCount, database, status, response.body());
+        }
+    }
+
+    /**
+     * @return the response, if it is a success or a rejection of the content
+     * @throws IOException if the request failed for any other reason
+     */
+    private HttpResponse<String> post(String database, byte[] lines) throws IOException {
+        String uri = writeUrl + "?precision=ms&db=" + URLEncoder.encode(database, StandardCharsets.UTF_8);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri))
+                .timeout(writeTimeout)
+                .header("Content-Type", "text/plain; charset=utf-8");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        if (gzip) {
+            int length = compressor.compress(lines, lines.length);
+            request.header("Content-Encoding", "gzip")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(compressor.compressed, 0, length));
+        } else {
+            request.POST(HttpRequest.BodyPublishers.ofByteArray(lines));
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing points", e);
+        }
+        int status = response.statusCode();
+        if (status / 100 != 2 && status != 400 && status != 413) {
+            throw new IOException("Write failed with status " + status + ": " + response.body());
+        }
+        return response;
+    }
+
+    /**
+     * @return the index after the line terminator of the given number of lines
+     */
+    static int lineEnd(byte[] lines, int lineCount) {
+        int found = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] == '\n' && ++found == lineCount) {
+                return i + 1;
             }
-        });
+        }
+        return lines.length;
     }
 
-    public void writePoints(String database, Map<String, String> tags, List<Point> points) {
-        // writing in chunks
-        int chunkSize = 25_000;
-        int startIndex = 0;
-        int endIndex = Math.min(points.size(), chunkSize);
-        boolean done = false;
-
-        while (!done) {
-            List<Point> chunk = points.subList(startIndex, endIndex);
-
-            tags.entrySet().stream()
-                    .filter(entry -> !ObjectUtils.isEmpty(entry.getValue()))
-                    .forEach(entry -> chunk.forEach(p -> p.addTag(entry.getKey(), entry.getValue())));
-
-            // Read org from influx configuration
-            WriteParameters parameters = new WriteParameters(database, null, WritePrecision.MS, WriteConsistency.ONE);
-            writePoints(chunk, parameters);
-
-            if (endIndex == points.size()) {
-                done = true;
-            } else {
-                startIndex = endIndex;
-                endIndex = Math.min(points.size(), (endIndex + chunkSize));
+    /**
+     * Collects the lines written to a single database.
+     * The lines are sent whenever the batch size is reached and when the batch is closed, afterwards it must not be used anymore.
+     */
+    public class Batch implements AutoCloseable {
+
+        private final String database;
+
+        private LineProtocolEncoder encoder;
+
+        private Batch(String database, LineProtocolEncoder encoder) {
+            this.database = database;
+            this.encoder = encoder;
+        }
+
+        /**
+         * Starts a new line, see {@link LineProtocolEncoder#startLine(byte[])}.
+         * The previous line has to be completed before.
+         *
+         * @throws IllegalStateException if interrupted while waiting for the queue of the spool
+         */
+        public LineProtocolEncoder startLine(byte[] prefix) {
+            if (encoder.getLineCount() >= batchSize) {
+                enqueue(database, encoder);
+            }
+            return encoder.startLine(prefix);
+        }
+
+        /**
+         * @throws IllegalStateException if interrupted while waiting for the queue of the spool
+         */
+        @Override
+        public void close() {
+            if (encoder != null) {
+                try {
+                    enqueue(database, encoder);
+                } finally {
+                    release(encoder);
+                    encoder = null;
+                }
             }
         }
     }
 
-    private void writePoints(List<Point> points, WriteParameters writeParameters) {
-        log.info("Writing {} points into the InfluxDB", points.size());
-        try {
-            writeApi.writePoints(points, writeParameters);
-        } catch (Exception first) {
-            try {
-                log.error("Exception while writing InfluxDB data but it is tried once more in 2 seconds.");
-                Thread.sleep(2000);
-                writeApi.writePoints(points);
-            } catch (Exception second) {
-                log.error("Exception while writing InfluxDB data.", second);
+    /**
+     * Compresses in the gzip format into a reusable buffer.
+     * The deflater is kept as well, because it holds native memory which is only freed on {@link Deflater#end()}.
+     */
+    private static class GzipCompressor {
+
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        final CRC32 crc = new CRC32();
+
+        byte[] compressed = new byte[16 * 1024];
+
+        /**
+         * Compresses the given bytes in the gzip format into {@link #compressed}.
+         *
+         * @return the length of the compressed data
+         */
+        int compress(byte[] input, int length) {
+            crc.reset();
+            crc.update(input, 0, length);
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+
+            System.arraycopy(GZIP_HEADER, 0, compressed, 0, GZIP_HEADER.length);
+            int size = GZIP_HEADER.length;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            if (size + 8 > compressed.length) {
+                compressed = Arrays.copyOf(compressed, size + 8);
+            }
+            size = putIntLittleEndian((int) crc.getValue(), size);
+            return putIntLittleEndian(length, size);
+        }
+
+        private int putIntLittleEndian(int value, int offset) {
+            for (int i = 0; i < 4; i++) {
+                compressed[offset + i] = (byte) (value >>> (8 * i));
             }
+            return offset + 4;
         }
     }
 }
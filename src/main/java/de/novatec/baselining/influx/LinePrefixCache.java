@@ -0,0 +1,41 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.TagValues;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the line protocol prefixes of the series of a measurement, so that the tags of a series are only escaped once
+ * instead of on every write.
+ */
+public class LinePrefixCache {
+
+    /**
+     * The cache is cleared once it exceeds this number of series, so that series which are no longer written do not accumulate.
+     */
+    private static final int MAX_SERIES = 100_000;
+
+    private final String measurement;
+
+    private final Map<TagValues, byte[]> prefixes = new ConcurrentHashMap<>();
+
+    public LinePrefixCache(String measurement) {
+        this.measurement = measurement;
+    }
+
+    /**
+     * @return the prefix of the lines of the series with the given tags, see {@link LineProtocolEncoder#encodePrefix(String, Map)}
+     */
+    public byte[] get(TagValues tags) {
+        byte[] prefix = prefixes.get(tags);
+        if (prefix == null) {
+            if (prefixes.size() >= MAX_SERIES) {
+                prefixes.clear();
+            }
+            prefix = LineProtocolEncoder.encodePrefix(measurement, tags.getTags());
+            prefixes.put(tags, prefix);
+        }
+        return prefix;
+    }
+}
@@ -0,0 +1,239 @@
+package de.novatec.baselining.influx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes points as InfluxDB line protocol directly into a reusable byte buffer, without creating an object per point.
+ * <p>
+ * The escaped "measurement,tags " prefix of a series is encoded once via {@link #encodePrefix(String, Map)}
+ * and then copied into every line of the series. Timestamps are written in milliseconds.
+ * Like the influx client, fields with non-finite values are skipped and lines without any field are dropped.
+ * Instances are not thread safe.
+ */
+public final class LineProtocolEncoder {
+
+    private byte[] buffer = new byte[64 * 1024];
+
+    private int size = 0;
+
+    private int lines = 0;
+
+    private int lineStart = -1;
+
+    private boolean hasFields;
+
+    /**
+     * The field names are constants of the callers, so their escaped form is only computed once per encoder.
+     */
+    private final Map<String, byte[]> fieldKeys = new HashMap<>();
+
+    /**
+     * @param measurement the name of the measurement
+     * @param tags        the tags of the series, tags with an empty value are omitted
+     * @return the escaped prefix of all lines of the series, including the separator before the fields
+     */
+    public static byte[] encodePrefix(String measurement, Map<String, String> tags) {
+        StringBuilder prefix = new StringBuilder();
+        escape(measurement, prefix, false);
+        // influx recommends sorting the tags by key, which avoids sorting them on every write
+        new TreeMap<>(tags).forEach((key, value) -> {
+            if (value != null && !value.isEmpty()) {
+                prefix.append(',');
+                escape(key, prefix, true);
+                prefix.append('=');
+                escape(value, prefix, true);
+            }
+        });
+        prefix.append(' ');
+        return prefix.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts a new line, which has to be completed via {@link #endLine(long)} before the next one is started.
+     *
+     * @param prefix the prefix of the series created via {@link #encodePrefix(String, Map)}
+     */
+    public LineProtocolEncoder startLine(byte[] prefix) {
+        lineStart = size;
+        hasFields = false;
+        ensureCapacity(prefix.length);
+        System.arraycopy(prefix, 0, buffer, size, prefix.length);
+        size += prefix.length;
+        return this;
+    }
+
+    /**
+     * Adds a float field, integral values are written without a fraction.
+     */
+    public LineProtocolEncoder field(String key, double value) {
+        if (Double.isFinite(value)) {
+            startField(key);
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                appendLong((long) value);
+            } else {
+                appendAscii(Double.toString(value));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds an integer field.
+     */
+    public LineProtocolEncoder field(String key, long value) {
+        startField(key);
+        appendLong(value);
+        appendByte('i');
+        return this;
+    }
+
+    /**
+     * Adds a string field.
+     */
+    public LineProtocolEncoder field(String key, String value) {
+        startField(key);
+        appendByte('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                appendByte('\\');
+            }
+            if (c < 0x80) {
+                appendByte(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                appendBytes(value.substring(i, i + 2).getBytes(StandardCharsets.UTF_8));
+                i++;
+            } else {
+                appendBytes(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        appendByte('"');
+        return this;
+    }
+
+    /**
+     * Completes the current line, it is dropped if it has no fields.
+     *
+     * @param timeMillis the timestamp in milliseconds since the epoch
+     */
+    public void endLine(long timeMillis) {
+        if (!hasFields) {
+            size = lineStart;
+        } else {
+            appendByte(' ');
+            appendLong(timeMillis);
+            appendByte('\n');
+            lines++;
+        }
+        lineStart = -1;
+    }
+
+    /**
+     * @return the number of completed lines
+     */
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * @return the number of bytes of the completed lines
+     */
+    public int getSize() {
+        return lineStart < 0 ? size : lineStart;
+    }
+
+    /**
+     * @return the backing array, whose first {@link #getSize()} bytes contain the encoded lines
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Removes all lines, the buffer is kept for reuse.
+     */
+    public void reset() {
+        size = 0;
+        lines = 0;
+        lineStart = -1;
+    }
+
+    private void startField(String key) {
+        // the prefix already ends with the space separating the first field
+        if (hasFields) {
+            appendByte(',');
+        }
+        hasFields = true;
+        byte[] escaped = fieldKeys.get(key);
+        if (escaped == null) {
+            StringBuilder result = new StringBuilder();
+            escape(key, result, true);
+            escaped = result.toString().getBytes(StandardCharsets.UTF_8);
+            fieldKeys.put(key, escaped);
+        }
+        appendBytes(escaped);
+        appendByte('=');
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void appendAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void appendBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void appendByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+
+    /**
+     * Measurements only require commas and spaces to be escaped, tag keys, tag values and field keys also equal signs.
+     */
+    private static void escape(String value, StringBuilder result, boolean escapeEquals) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == ' ' || (escapeEquals && c == '=')) {
+                result.append('\\');
+            }
+            result.append(c);
+        }
+    }
+}
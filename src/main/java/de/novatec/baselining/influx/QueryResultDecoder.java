@@ -0,0 +1,232 @@
+package de.novatec.baselining.influx;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.novatec.baselining.data.TagValues;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Decodes the JSON response of an InfluxQL query while it is streamed, without building an object tree of the result.
+ * <p>
+ * Chunked responses consist of a sequence of JSON documents, each containing a part of the result.
+ * The rows of a series may be spread over multiple chunks, they are appended to the same {@link SeriesColumns}.
+ * InfluxDB returns all rows of a series before the next one, so every series is passed on as soon as another series starts,
+ * instead of holding the whole result until the end of the response.
+ * Timestamps have to be returned as epoch milliseconds.
+ */
+final class QueryResultDecoder {
+
+    /**
+     * Receives the series of a result one after another.
+     */
+    @FunctionalInterface
+    interface SeriesConsumer {
+
+        /**
+         * @param measurement the measurement of the series, empty if the result does not name it
+         * @param tags        the tags of the series
+         * @param columns     the complete columns of the series
+         * @throws IOException to abort decoding
+         */
+        void accept(String measurement, TagValues tags, SeriesColumns columns) throws IOException;
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final SeriesConsumer consumer;
+
+    /**
+     * The measurement of the series currently being decoded.
+     */
+    private String measurement;
+
+    private TagValues tags;
+
+    /**
+     * The columns of the series currently being decoded, null before the first series.
+     */
+    private SeriesColumns.Builder columns;
+
+    private QueryResultDecoder(SeriesConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @param in       the response body, which is not closed
+     * @param consumer receives every series of the result once all of its rows have been decoded
+     * @throws IOException if the response can not be read or contains an error
+     */
+    static void decode(InputStream in, SeriesConsumer consumer) throws IOException {
+        QueryResultDecoder decoder = new QueryResultDecoder(consumer);
+        try (JsonParser parser = JSON.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                expect(parser, token, JsonToken.START_OBJECT);
+                decoder.decodeChunk(parser);
+            }
+        }
+        decoder.completeSeries();
+    }
+
+    private void decodeChunk(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("results".equals(field)) {
+                expect(parser, value, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    decodeStatementResult(parser);
+                }
+            } else if ("error".equals(field)) {
+                throw new IOException("Query failed: " + parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void decodeStatementResult(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("series".equals(field)) {
+                expect(parser, value, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    decodeSeries(parser);
+                }
+            } else if ("error".equals(field)) {
+                throw new IOException("Query failed: " + parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * InfluxDB writes the tags and columns of a series before its values, so rows can be decoded directly into the columns.
+     */
+    private void decodeSeries(JsonParser parser) throws IOException {
+        String name = "";
+        Map<String, String> tags = Collections.emptyMap();
+        List<String> columns = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("name".equals(field)) {
+                name = parser.getValueAsString("");
+            } else if ("tags".equals(field)) {
+                tags = decodeTags(parser, value);
+            } else if ("columns".equals(field)) {
+                columns = decodeColumns(parser, value);
+            } else if ("values".equals(field)) {
+                if (columns == null) {
+                    throw new IOException("Series values received before its columns");
+                }
+                expect(parser, value, JsonToken.START_ARRAY);
+                decodeRows(parser, seriesBuilder(name, TagValues.from(tags), columns), columns);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private Map<String, String> decodeTags(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return Collections.emptyMap();
+        }
+        expect(parser, value, JsonToken.START_OBJECT);
+        Map<String, String> tags = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            parser.nextToken();
+            tags.put(key, parser.getValueAsString(""));
+        }
+        return tags;
+    }
+
+    private List<String> decodeColumns(JsonParser parser, JsonToken value) throws IOException {
+        expect(parser, value, JsonToken.START_ARRAY);
+        List<String> columns = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+            columns.add(parser.getText());
+        }
+        return columns;
+    }
+
+    /**
+     * @return the builder of the given series, which continues the current one if it is the same series
+     */
+    private SeriesColumns.Builder seriesBuilder(String name, TagValues seriesTags, List<String> seriesColumns) throws IOException {
+        if (columns == null || !measurement.equals(name) || !tags.equals(seriesTags)) {
+            completeSeries();
+            measurement = name;
+            tags = seriesTags;
+            columns = new SeriesColumns.Builder(withoutTime(seriesColumns));
+        }
+        return columns;
+    }
+
+    private void completeSeries() throws IOException {
+        if (columns != null) {
+            SeriesColumns completed = columns.build();
+            columns = null;
+            consumer.accept(measurement, tags, completed);
+        }
+    }
+
+    private static List<String> withoutTime(List<String> columns) {
+        List<String> fields = new ArrayList<>(columns);
+        fields.remove("time");
+        return fields;
+    }
+
+    private void decodeRows(JsonParser parser, SeriesColumns.Builder builder, List<String> columns) throws IOException {
+        int timeIndex = columns.indexOf("time");
+        int[] mapping = builder.mapColumns(withoutTime(columns));
+
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            builder.startRow();
+            boolean hasTime = false;
+            long time = 0;
+            int column = 0;
+            JsonToken cell;
+            while ((cell = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (column == timeIndex) {
+                    if (cell == JsonToken.VALUE_NUMBER_INT) {
+                        time = parser.getLongValue();
+                        hasTime = true;
+                    }
+                } else {
+                    int field = column < timeIndex || timeIndex < 0 ? column : column - 1;
+                    if (field < mapping.length && mapping[field] >= 0) {
+                        decodeCell(parser, cell, builder, mapping[field]);
+                    }
+                }
+                parser.skipChildren();
+                column++;
+            }
+            if (hasTime) {
+                builder.endRow(time);
+            }
+        }
+    }
+
+    private void decodeCell(JsonParser parser, JsonToken cell, SeriesColumns.Builder builder, int column) throws IOException {
+        if (cell == JsonToken.VALUE_NUMBER_INT || cell == JsonToken.VALUE_NUMBER_FLOAT) {
+            builder.setNumber(column, parser.getDoubleValue());
+        } else if (cell == JsonToken.VALUE_STRING) {
+            builder.setText(column, parser.getText());
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected token " + actual + " instead of " + expected + " at " + parser.currentLocation());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.DataSeries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows of a single series of a query result, stored as one primitive column per field.
+ * Numeric cells are stored as doubles, NaN denotes a missing or non-numeric value.
+ * Text cells (e.g. encoded sketches) are only kept for the columns actually containing text.
+ */
+public final class SeriesColumns {
+
+    private final List<String> columns;
+
+    private final int size;
+
+    private final long[] times;
+
+    private final double[][] numbers;
+
+    private final String[][] texts;
+
+    private SeriesColumns(Builder builder) {
+        this.columns = builder.columns;
+        this.size = builder.size;
+        this.times = builder.times;
+        this.numbers = builder.numbers;
+        this.texts = builder.texts;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the names of all columns except the time
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the index of the given column, -1 if the result does not contain it
+     */
+    public int indexOf(String column) {
+        return columns.indexOf(column);
+    }
+
+    /**
+     * @return the timestamp of the given row in milliseconds since the epoch
+     */
+    public long getTime(int row) {
+        return times[row];
+    }
+
+    /**
+     * @return the numeric value of the given cell, NaN if it is missing or not a number
+     */
+    public double getNumber(int column, int row) {
+        return numbers[column][row];
+    }
+
+    /**
+     * @return the text of the given cell, null if it is missing or not a text
+     */
+    public String getText(int column, int row) {
+        return texts[column] == null ? null : texts[column][row];
+    }
+
+    /**
+     * @return the numeric values of the given column, rows without a numeric value are skipped
+     */
+    public DataSeries toDataSeries(int column) {
+        DataSeries.Builder result = new DataSeries.Builder(size);
+        double[] values = numbers[column];
+        for (int row = 0; row < size; row++) {
+            if (!Double.isNaN(values[row])) {
+                result.add(times[row], values[row]);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Collects the rows of a series, which may be spread over multiple chunks of a query result.
+     */
+    static class Builder {
+
+        private final List<String> columns;
+
+        private int size = 0;
+
+        private long[] times = new long[16];
+
+        private double[][] numbers;
+
+        private String[][] texts;
+
+        Builder(List<String> columns) {
+            this.columns = new ArrayList<>(columns);
+            this.numbers = new double[columns.size()][times.length];
+            this.texts = new String[columns.size()][];
+        }
+
+        /**
+         * @param chunkColumns the non-time columns of a chunk
+         * @return for each of the given columns the index of the column in this builder, -1 for unknown columns
+         */
+        int[] mapColumns(List<String> chunkColumns) {
+            int[] mapping = new int[chunkColumns.size()];
+            for (int i = 0; i < mapping.length; i++) {
+                mapping[i] = columns.indexOf(chunkColumns.get(i));
+            }
+            return mapping;
+        }
+
+        /**
+         * Starts a new row, whose cells are empty until they are set.
+         * The row is only added once it is completed via {@link #endRow(long)}.
+         */
+        void startRow() {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                for (int column = 0; column < numbers.length; column++) {
+                    numbers[column] = Arrays.copyOf(numbers[column], capacity);
+                    if (texts[column] != null) {
+                        texts[column] = Arrays.copyOf(texts[column], capacity);
+                    }
+                }
+            }
+            for (int column = 0; column < numbers.length; column++) {
+                numbers[column][size] = Double.NaN;
+                if (texts[column] != null) {
+                    texts[column][size] = null;
+                }
+            }
+        }
+
+        void setNumber(int column, double value) {
+            numbers[column][size] = value;
+        }
+
+        void setText(int column, String value) {
+            if (texts[column] == null) {
+                texts[column] = new String[times.length];
+            }
+            texts[column][size] = value;
+        }
+
+        void endRow(long time) {
+            times[size++] = time;
+        }
+
+        SeriesColumns build() {
+            return new SeriesColumns(this);
+        }
+    }
+}
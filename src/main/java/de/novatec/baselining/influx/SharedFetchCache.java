@@ -0,0 +1,118 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical queries issued by different baselines.
+ * Concurrent identical queries are executed only once, and their result is reused for a short time afterwards.
+ * The cached results are shared, therefore they are returned as unmodifiable maps of immutable series.
+ */
+@Slf4j
+class SharedFetchCache {
+
+    @Value
+    static class FetchKey {
+        String database;
+        String query;
+        long startMillis;
+        long endMillis;
+        long intervalMillis;
+    }
+
+    private static class CachedFetch {
+        final CompletableFuture<Map<TagValues, DataSeries>> result = new CompletableFuture<>();
+        long completedAt = -1;
+        long pointCount = 0;
+    }
+
+    private final long ttlMillis;
+
+    private final long maxPoints;
+
+    private final Map<FetchKey, CachedFetch> entries = new HashMap<>();
+
+    private long cachedPoints = 0;
+
+    SharedFetchCache(long ttlMillis, long maxPoints) {
+        this.ttlMillis = ttlMillis;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Returns the result for the given query, either from a previous or concurrent execution or by executing it.
+     *
+     * @param key   the query identification
+     * @param query executes the query
+     * @return the (unmodifiable) result of the query
+     */
+    Map<TagValues, DataSeries> get(FetchKey key, Supplier<Map<TagValues, DataSeries>> query) {
+        CachedFetch fetch;
+        boolean execute = false;
+        synchronized (this) {
+            removeExpired(System.currentTimeMillis());
+            fetch = entries.get(key);
+            if (fetch == null) {
+                fetch = new CachedFetch();
+                entries.put(key, fetch);
+                execute = true;
+            }
+        }
+        if (execute) {
+            try {
+                Map<TagValues, DataSeries> result = unmodifiable(query.get());
+                retain(key, fetch, result);
+                fetch.result.complete(result);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    entries.remove(key);
+                }
+                fetch.result.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            log.debug("Reusing result of query '{}'", key.getQuery());
+        }
+        try {
+            return fetch.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void retain(FetchKey key, CachedFetch fetch, Map<TagValues, DataSeries> result) {
+        long pointCount = result.values().stream().mapToLong(DataSeries::size).sum();
+        if (cachedPoints + pointCount > maxPoints) {
+            entries.remove(key);
+        } else {
+            fetch.completedAt = System.currentTimeMillis();
+            fetch.pointCount = pointCount;
+            cachedPoints += pointCount;
+        }
+    }
+
+    private void removeExpired(long now) {
+        Iterator<CachedFetch> it = entries.values().iterator();
+        while (it.hasNext()) {
+            CachedFetch fetch = it.next();
+            if (fetch.completedAt >= 0 && now - fetch.completedAt > ttlMillis) {
+                cachedPoints -= fetch.pointCount;
+                it.remove();
+            }
+        }
+    }
+
+    private static Map<TagValues, DataSeries> unmodifiable(Map<TagValues, DataSeries> result) {
+        return Collections.unmodifiableMap(new HashMap<>(result));
+    }
+}
@@ -0,0 +1,518 @@
+package de.novatec.baselining.influx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Decouples encoding batches of line protocol from sending them to influx.
+ * <p>
+ * Batches are sent in order by a single thread. Failed requests are retried with an exponentially growing delay
+ * up to a maximum number of retries, meanwhile the queue fills up and {@link #enqueue(String, byte[], int)} blocks the writing
+ * generators, instead of dropping their data. Batches which still fail are moved to a dead-letter file in the directory,
+ * if there is one. Callers can wait for their batches via {@link #whenSent(Runnable)}, which never completes once a batch
+ * has been given up, so that progress depending on it is not persisted.
+ * <p>
+ * If a directory is configured, every batch is appended to a spool segment before it is queued, and the offset up to
+ * which the segment has been sent is stored in a separate acknowledgement file. Batches which have not been sent
+ * before a shutdown or crash are replayed on the next start, before any new batch. The segment is truncated
+ * whenever all of its batches have been sent.
+ * <p>
+ * A segment record consists of the length of the database name, the length of the lines, the number of lines
+ * and the CRC32 of both, followed by the database name and the lines. Records which are incomplete or corrupt
+ * (e.g. due to a crash while appending) are discarded together with all subsequent ones.
+ */
+@Slf4j
+class WriteSpool {
+
+    private static final String SEGMENT_FILE = "write-spool.log";
+
+    private static final String ACK_FILE = "write-spool.ack";
+
+    private static final String DEAD_LETTER_FILE = "write-spool.dead";
+
+    private static final int RECORD_HEADER_BYTES = 16;
+
+    /**
+     * Sends a batch of lines to influx.
+     */
+    interface Sender {
+
+        /**
+         * @throws IOException if the request failed and should be retried
+         */
+        void send(String database, byte[] lines, int lineCount) throws IOException;
+    }
+
+    private static class QueuedBatch {
+
+        final String database;
+
+        final byte[] lines;
+
+        final int lineCount;
+
+        /**
+         * The end of the record of this batch in the segment, -1 if it is not spooled.
+         */
+        final long segmentEnd;
+
+        /**
+         * The position of this batch in the order of all enqueued batches.
+         */
+        final long sequence;
+
+        QueuedBatch(String database, byte[] lines, int lineCount, long segmentEnd, long sequence) {
+            this.database = database;
+            this.lines = lines;
+            this.lineCount = lineCount;
+            this.segmentEnd = segmentEnd;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class SentCallback {
+
+        /**
+         * The action is run once the batch with this sequence has been sent.
+         */
+        final long sequence;
+
+        final Runnable action;
+
+        SentCallback(long sequence, Runnable action) {
+            this.sequence = sequence;
+            this.action = action;
+        }
+    }
+
+    private final Sender sender;
+
+    private final long initialRetryDelayMillis;
+
+    private final long maxRetryDelayMillis;
+
+    private final int maxRetries;
+
+    private final LinkedBlockingQueue<QueuedBatch> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Guards the sequences and callbacks, so that the sequences of the batches match their order in the queue.
+     */
+    private final Object sequenceLock = new Object();
+
+    private long enqueuedSequence = 0;
+
+    private long sentSequence = 0;
+
+    /**
+     * Set once a batch could not be sent, afterwards no callback is run anymore.
+     */
+    private boolean batchLost = false;
+
+    private final ArrayDeque<SentCallback> callbacks = new ArrayDeque<>();
+
+    /**
+     * Limits the number of queued batches, permits are returned once a batch has been sent.
+     */
+    private final Semaphore capacity;
+
+    /**
+     * The number of batches which have been enqueued but not yet been sent, plus one while spooled records are replayed.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Thread thread;
+
+    private volatile boolean closing = false;
+
+    /**
+     * The spool segment, null if batches are only kept in memory.
+     */
+    private final FileChannel segment;
+
+    private final FileChannel ack;
+
+    /**
+     * Receives the batches which could not be sent, null if batches are only kept in memory.
+     */
+    private final Path deadLetterFile;
+
+    /**
+     * The end of the last record appended to the segment, guarded by the segment.
+     */
+    private long segmentEnd = 0;
+
+    /**
+     * The end of the last record which has been sent, guarded by the segment.
+     */
+    private long ackOffset = 0;
+
+    /**
+     * The end of the records which have been spooled before the start and are replayed first.
+     */
+    private final long replayEnd;
+
+    /**
+     * @param sender            sends the batches
+     * @param directory         the directory of the spool segment, null to only queue batches in memory
+     * @param queueCapacity     the maximum number of batches which are queued before writers are blocked
+     * @param maxRetries        the number of retries after which a failed batch is given up
+     * @param initialRetryDelay the delay before the first retry of a failed batch
+     * @param maxRetryDelay     the maximum delay between retries
+     */
+    WriteSpool(Sender sender, Path directory, int queueCapacity, int maxRetries, Duration initialRetryDelay, Duration maxRetryDelay) throws IOException {
+        this.sender = sender;
+        this.capacity = new Semaphore(queueCapacity);
+        this.maxRetries = maxRetries;
+        this.initialRetryDelayMillis = initialRetryDelay.toMillis();
+        this.maxRetryDelayMillis = maxRetryDelay.toMillis();
+        if (directory != null) {
+            deadLetterFile = directory.resolve(DEAD_LETTER_FILE);
+            Files.createDirectories(directory);
+            segment = FileChannel.open(directory.resolve(SEGMENT_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ack = FileChannel.open(directory.resolve(ACK_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } else {
+            segment = null;
+            ack = null;
+            deadLetterFile = null;
+        }
+        replayEnd = segmentEnd;
+        if (ackOffset < replayEnd) {
+            pending.incrementAndGet();
+        }
+        thread = new Thread(this::run, "influx-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a batch for sending, blocks while the queue is full.
+     * After {@link #close(Duration)}, batches are only appended to the spool segment, if there is one.
+     *
+     * @param lines     the lines, which must not be modified afterwards
+     * @param lineCount the number of lines
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    void enqueue(String database, byte[] lines, int lineCount) throws InterruptedException {
+        if (closing) {
+            if (segment == null || append(database, lines, lineCount) < 0) {
+                log.error("Dropping {} points for '{}', because the writer has been shut down", lineCount, database);
+            }
+            return;
+        }
+        capacity.acquire();
+        pending.incrementAndGet();
+        if (segment == null) {
+            add(database, lines, lineCount, -1);
+        } else {
+            synchronized (segment) {
+                // appended and queued under the same lock, so that the queue has the order of the segment
+                add(database, lines, lineCount, append(database, lines, lineCount));
+            }
+        }
+    }
+
+    /**
+     * Runs the given action on the sending thread once all batches enqueued so far have been sent, or directly if they already are.
+     * If any batch has been given up, the action is never run.
+     */
+    void whenSent(Runnable action) {
+        synchronized (sequenceLock) {
+            if (batchLost) {
+                return;
+            }
+            if (sentSequence < enqueuedSequence) {
+                callbacks.add(new SentCallback(enqueuedSequence, action));
+                return;
+            }
+        }
+        action.run();
+    }
+
+    private void add(String database, byte[] lines, int lineCount, long segmentEnd) {
+        synchronized (sequenceLock) {
+            queue.add(new QueuedBatch(database, lines, lineCount, segmentEnd, ++enqueuedSequence));
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for all queued batches to be sent and stops the sending thread.
+     * Batches which have not been sent remain in the spool segment, if there is one.
+     */
+    void close(Duration drainTimeout) {
+        closing = true;
+        long deadline = System.currentTimeMillis() + drainTimeout.toMillis();
+        try {
+            while (pending.get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remaining = pending.get();
+        if (remaining > 0) {
+            if (segment == null) {
+                log.error("Dropping {} unsent batches on shutdown", remaining);
+            } else {
+                log.warn("{} unsent batches remain in the write spool and are sent after the next start", remaining);
+            }
+        }
+        thread.interrupt();
+        try {
+            thread.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (segment != null) {
+            synchronized (segment) {
+                try {
+                    segment.close();
+                    ack.close();
+                } catch (IOException e) {
+                    log.error("Could not close the write spool", e);
+                }
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            replay();
+            while (!Thread.currentThread().isInterrupted()) {
+                QueuedBatch batch = queue.take();
+                boolean sent = sendWithRetries(batch.database, batch.lines, batch.lineCount);
+                if (!sent) {
+                    deadLetter(batch.database, batch.lines, batch.lineCount);
+                }
+                acknowledge(batch.segmentEnd);
+                completed(batch.sequence, sent);
+                pending.decrementAndGet();
+                capacity.release();
+            }
+        } catch (InterruptedException e) {
+            log.debug("Stopped sending batches to influx");
+        }
+    }
+
+    /**
+     * @return false, if the batch could not be sent within the maximum number of retries
+     */
+    private boolean sendWithRetries(String database, byte[] lines, int lineCount) throws InterruptedException {
+        long delay = initialRetryDelayMillis;
+        for (int retry = 0; ; retry++) {
+            try {
+                sender.send(database, lines, lineCount);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                if (retry >= maxRetries) {
+                    log.error("Could not write {} points to '{}', giving up after {} retries", lineCount, database, maxRetries, e);
+                    return false;
+                }
+                log.error("Could not write {} points to '{}', retrying in {}", lineCount, database, InfluxUtils.prettyPrintDuration(delay), e);
+                Thread.sleep(delay);
+                delay = Math.min(maxRetryDelayMillis, delay * 2);
+            }
+        }
+    }
+
+    /**
+     * Runs the callbacks waiting for the given batch. If it has not been sent, all current and future callbacks are dropped,
+     * as the progress they persist would skip the lost points.
+     */
+    private void completed(long sequence, boolean sent) {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (sequenceLock) {
+            sentSequence = sequence;
+            if (!sent && !batchLost) {
+                log.error("Checkpoints are not advanced anymore, so that baselines are recomputed from their last checkpoint after a restart");
+                batchLost = true;
+                callbacks.clear();
+            }
+            while (!callbacks.isEmpty() && callbacks.peek().sequence <= sequence) {
+                due.add(callbacks.poll().action);
+            }
+        }
+        for (Runnable action : due) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("Callback for sent points failed", e);
+            }
+        }
+    }
+
+    /**
+     * Keeps a batch which could not be sent as line protocol, the database is written as comment before the lines.
+     */
+    private void deadLetter(String database, byte[] lines, int lineCount) {
+        if (deadLetterFile == null) {
+            log.error("Dropping {} points for '{}'", lineCount, database);
+            return;
+        }
+        byte[] header = ("# database=" + database + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel deadLetters = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer record = ByteBuffer.allocate(header.length + lines.length).put(header).put(lines).flip();
+            while (record.hasRemaining()) {
+                deadLetters.write(record);
+            }
+            log.error("Moved {} points for '{}' to '{}'", lineCount, database, deadLetterFile);
+        } catch (IOException e) {
+            log.error("Dropping {} points for '{}', because they could not be moved to '{}'", lineCount, database, deadLetterFile, e);
+        }
+    }
+
+    /**
+     * Sends the records spooled before the start, they are not part of the queue.
+     */
+    private void replay() throws InterruptedException {
+        if (segment == null || ackOffset >= replayEnd) {
+            return;
+        }
+        log.info("Replaying {} bytes of unsent points from the write spool", replayEnd - ackOffset);
+        long position = ackOffset;
+        while (position < replayEnd) {
+            try {
+                ByteBuffer header = read(position, RECORD_HEADER_BYTES);
+                int databaseLength = header.getInt();
+                int linesLength = header.getInt();
+                int lineCount = header.getInt();
+                ByteBuffer body = read(position + RECORD_HEADER_BYTES, databaseLength + linesLength);
+                String database = new String(body.array(), 0, databaseLength, StandardCharsets.UTF_8);
+                byte[] lines = new byte[linesLength];
+                System.arraycopy(body.array(), databaseLength, lines, 0, linesLength);
+                if (!sendWithRetries(database, lines, lineCount)) {
+                    deadLetter(database, lines, lineCount);
+                }
+                position += RECORD_HEADER_BYTES + databaseLength + linesLength;
+                acknowledge(position);
+            } catch (IOException e) {
+                log.error("Could not replay the write spool, the remaining points are discarded", e);
+                acknowledge(replayEnd);
+                break;
+            }
+        }
+        pending.decrementAndGet();
+    }
+
+    /**
+     * @return the end of the appended record, -1 if it could not be appended
+     */
+    private long append(String database, byte[] lines, int lineCount) {
+        byte[] databaseBytes = database.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(databaseBytes);
+        crc.update(lines);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + databaseBytes.length + lines.length)
+                .putInt(databaseBytes.length)
+                .putInt(lines.length)
+                .putInt(lineCount)
+                .putInt((int) crc.getValue())
+                .put(databaseBytes)
+                .put(lines)
+                .flip();
+        synchronized (segment) {
+            if (!segment.isOpen()) {
+                return -1;
+            }
+            try {
+                long position = segmentEnd;
+                while (record.hasRemaining()) {
+                    position += segment.write(record, position);
+                }
+                segment.force(false);
+                segmentEnd = position;
+                return segmentEnd;
+            } catch (IOException e) {
+                log.error("Could not append {} points to the write spool, they are only kept in memory", lineCount, e);
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Marks the segment as sent up to the given offset. Once everything has been sent, the segment is truncated.
+     */
+    private void acknowledge(long offset) {
+        if (segment == null || offset < 0) {
+            return;
+        }
+        synchronized (segment) {
+            if (!segment.isOpen()) {
+                return;
+            }
+            try {
+                ackOffset = Math.max(ackOffset, offset);
+                if (ackOffset >= segmentEnd) {
+                    segment.truncate(0);
+                    ackOffset = 0;
+                    segmentEnd = 0;
+                }
+                ack.write(ByteBuffer.allocate(Long.BYTES).putLong(0, ackOffset), 0);
+                ack.force(false);
+            } catch (IOException e) {
+                log.error("Could not store the progress of the write spool", e);
+            }
+        }
+    }
+
+    /**
+     * Restores the acknowledged offset and discards incomplete or corrupt records at the end of the segment.
+     */
+    private void recover() throws IOException {
+        ByteBuffer ackBuffer = ByteBuffer.allocate(Long.BYTES);
+        ack.read(ackBuffer, 0);
+        long size = segment.size();
+        ackOffset = ackBuffer.position() == Long.BYTES ? Math.max(0, Math.min(ackBuffer.getLong(0), size)) : 0;
+
+        long position = ackOffset;
+        while (position + RECORD_HEADER_BYTES <= size) {
+            ByteBuffer header = read(position, RECORD_HEADER_BYTES);
+            int databaseLength = header.getInt();
+            int linesLength = header.getInt();
+            header.getInt();
+            int checksum = header.getInt();
+            long end = position + RECORD_HEADER_BYTES + (long) databaseLength + linesLength;
+            if (databaseLength < 0 || linesLength < 0 || end > size) {
+                break;
+            }
+            ByteBuffer body = read(position + RECORD_HEADER_BYTES, databaseLength + linesLength);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            position = end;
+        }
+        if (position < size) {
+            log.warn("Discarding {} bytes of incomplete or corrupt records at the end of the write spool", size - position);
+            segment.truncate(position);
+        }
+        segmentEnd = position;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (segment.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the write spool at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,161 @@
+package de.novatec.baselining.scheduling;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import de.novatec.baselining.config.CheckpointSettings;
+import de.novatec.baselining.config.SchedulerSettings;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ObjectUtils;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Updates {@link BaselineGenerator}s concurrently using bounded pools of worker threads.
+ * <p>
+ * Instead of polling, the scheduler computes for each generator the point in time at which its next interval
+ * is complete and wakes up exactly then. The pending deadlines are kept in the priority queue of a
+ * {@link ScheduledExecutorService}, so idle generators do not cost anything.
+ * <p>
+ * Updates are processed in two lanes: live updates of generators which are up-to-date
+ * and backfill updates of generators which are lagging behind (e.g. after startup).
+ * Each lane has its own workers, so backfilling never delays live updates, unless only a single thread is configured.
+ * Backfilling generators are updated one chunk at a time and then re-queued,
+ * so that all of them progress evenly.
+ */
+@Slf4j
+public class BaselineUpdateScheduler {
+
+    private final List<BaselineUpdateTask> tasks;
+
+    private final long retryDelayMillis;
+
+    private final boolean detectProgressFromInflux;
+
+    private final ScheduledExecutorService timer;
+
+    private final ExecutorService liveWorkers;
+
+    private final ExecutorService backfillWorkers;
+
+    /**
+     * @param settings           the scheduler settings
+     * @param generators         the generators to update
+     * @param updateDelayMillis  the time to wait after an interval has passed before updating it
+     * @param startTimestamp     the timestamp from which on the baselines are computed, if no checkpoint exists
+     * @param checkpointSettings the settings for restoring and persisting the progress
+     */
+    public BaselineUpdateScheduler(SchedulerSettings settings, List<BaselineGenerator> generators, long updateDelayMillis, long startTimestamp, CheckpointSettings checkpointSettings) {
+        String checkpointFile = checkpointSettings.getFile();
+        CheckpointStore checkpoints = new CheckpointStore(ObjectUtils.isEmpty(checkpointFile) ? null : Paths.get(checkpointFile));
+        long maxJitterMillis = settings.getMaxJitter().toMillis();
+        this.tasks = generators.stream()
+                .map(generator -> {
+                    long jitter = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+                    return new BaselineUpdateTask(generator, updateDelayMillis, jitter, startTimestamp, checkpoints);
+                })
+                .collect(Collectors.toList());
+        this.retryDelayMillis = settings.getRetryDelay().toMillis();
+        this.detectProgressFromInflux = checkpointSettings.isDetectFromInflux();
+        this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("baseline-scheduler-"));
+        this.liveWorkers = Executors.newFixedThreadPool(settings.getLiveThreads(), new CustomizableThreadFactory("baseline-live-"));
+        if (settings.getBackfillThreads() > 0) {
+            this.backfillWorkers = Executors.newFixedThreadPool(settings.getBackfillThreads(), new CustomizableThreadFactory("baseline-backfill-"));
+        } else {
+            this.backfillWorkers = liveWorkers;
+        }
+    }
+
+    public void start() {
+        log.info("Scheduling updates of {} baselines", tasks.size());
+        timer.execute(() -> tasks.forEach(this::restore));
+    }
+
+    /**
+     * Stops scheduling new updates and waits for running updates to finish.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        liveWorkers.shutdown();
+        backfillWorkers.shutdown();
+        try {
+            if (!liveWorkers.awaitTermination(30, TimeUnit.SECONDS) || !backfillWorkers.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Baseline updates did not finish in time, interrupting them");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        liveWorkers.shutdownNow();
+        backfillWorkers.shutdownNow();
+    }
+
+    /**
+     * Submits an update of the given generator to the matching lane, if it has new intervals to compute.
+     * Otherwise, the generator is scheduled for the time its next interval is complete.
+     */
+    private void dispatch(BaselineUpdateTask task) {
+        long currentTime = System.currentTimeMillis();
+        if (!task.isUpdateRequired(currentTime)) {
+            long delay = task.getNextDueTime() - currentTime;
+            // the interval is due, but the data of the generator is not available yet (e.g. for rollups)
+            schedule(task, delay > 0 ? delay : retryDelayMillis);
+        } else if (task.tryActivate()) {
+            ExecutorService lane = task.isBackfilling(currentTime) ? backfillWorkers : liveWorkers;
+            try {
+                lane.execute(() -> update(task));
+            } catch (RejectedExecutionException e) {
+                log.debug("Scheduler is shutting down, skipping update");
+                task.deactivate();
+            }
+        }
+    }
+
+    private void update(BaselineUpdateTask task) {
+        boolean success = task.updateNextChunk(System.currentTimeMillis());
+        task.deactivate();
+        if (success) {
+            // directly continues with the next chunk if the generator is still lagging behind
+            dispatch(task);
+        } else {
+            schedule(task, retryDelayMillis);
+        }
+    }
+
+    /**
+     * Schedules the task once its progress is known, until then the progress detection is retried.
+     * Tasks whose progress is inconsistent with their state are never scheduled.
+     */
+    private void restore(BaselineUpdateTask task) {
+        boolean restored;
+        try {
+            restored = task.restoreProgress(detectProgressFromInflux);
+        } catch (IllegalStateException e) {
+            log.error("Not updating baseline '{}'", task.getGenerator().getId(), e);
+            return;
+        }
+        if (restored) {
+            schedule(task, 0);
+        } else {
+            try {
+                timer.schedule(() -> restore(task), retryDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Scheduler is shutting down, skipping progress detection");
+            }
+        }
+    }
+
+    private void schedule(BaselineUpdateTask task, long delayMillis) {
+        try {
+            timer.schedule(() -> dispatch(task), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Scheduler is shutting down, skipping update");
+        }
+    }
+}
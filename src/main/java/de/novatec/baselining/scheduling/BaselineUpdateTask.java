@@ -0,0 +1,217 @@
+package de.novatec.baselining.scheduling;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a single {@link BaselineGenerator} and performs its updates.
+ * At most one update of the same generator is in progress at any time.
+ */
+@Slf4j
+class BaselineUpdateTask {
+
+    @Getter
+    private final BaselineGenerator generator;
+
+    private final long updateDelayMillis;
+
+    /**
+     * Additional delay to spread the updates of generators with the same precision.
+     */
+    private final long jitterMillis;
+
+    /**
+     * The timestamp up to which the baselines have been computed.
+     */
+    private final AtomicLong lastUpdatedTimestamp;
+
+    /**
+     * The timestamp up to which the computed baselines have been accepted by influx.
+     */
+    private final AtomicLong writtenTimestamp;
+
+    private final CheckpointStore checkpoints;
+
+    /**
+     * True, while an update of the generator is queued or running.
+     */
+    private final AtomicBoolean active = new AtomicBoolean(false);
+
+    BaselineUpdateTask(BaselineGenerator generator, long updateDelayMillis, long jitterMillis, long startTimestamp, CheckpointStore checkpoints) {
+        this.generator = generator;
+        this.updateDelayMillis = updateDelayMillis;
+        this.jitterMillis = jitterMillis;
+        this.lastUpdatedTimestamp = new AtomicLong(startTimestamp);
+        this.writtenTimestamp = new AtomicLong(startTimestamp);
+        this.checkpoints = checkpoints;
+    }
+
+    public long getLastUpdatedTimestamp() {
+        return lastUpdatedTimestamp.get();
+    }
+
+    /**
+     * Continues from the stored checkpoint of the generator or, if none exists and detection is enabled,
+     * from the newest baseline found in influx. Progress from before the backfill start is ignored.
+     * <p>
+     * If the detection fails, the progress is unknown: backfilling anyway would add the data to the existing baselines again.
+     * Therefore the task must not be updated until the progress has been restored by a later invocation.
+     * <p>
+     * If the infinity baselines are only kept in the persistent state store, the progress has to match the store instead,
+     * see {@link #restoreFromStateStore(OptionalLong)}.
+     *
+     * @param detectFromInflux true, if the progress should be detected from influx if no checkpoint exists
+     * @return false, if the progress could not be detected from influx
+     * @throws IllegalStateException if the checkpoint lags behind the state store by more than can be recomputed
+     */
+    boolean restoreProgress(boolean detectFromInflux) {
+        long backfillStart = lastUpdatedTimestamp.get();
+        OptionalLong restored = checkpoints.get(generator.getId());
+        if (generator.isStateOnlyStored()) {
+            restored = restoreFromStateStore(restored);
+        } else if (restored.isEmpty() && detectFromInflux) {
+            try {
+                restored = generator.findLastUpdatedTimestamp(backfillStart);
+            } catch (Exception e) {
+                log.error("Could not detect the progress of baseline '{}' from influx", generator.getId(), e);
+                return false;
+            }
+        }
+        if (restored.isPresent() && restored.getAsLong() > backfillStart) {
+            log.info("Resuming baseline '{}' from {}", generator.getId(), new Date(restored.getAsLong()));
+            lastUpdatedTimestamp.set(restored.getAsLong());
+        }
+        writtenTimestamp.set(lastUpdatedTimestamp.get());
+        return true;
+    }
+
+    /**
+     * The state store retains the baselines required to recompute the updates after the checkpoint only for a limited range,
+     * see {@link BaselineGenerator#getMaxUnwrittenMillis()}. Recomputing from older intervals would read baselines which have
+     * already been overwritten and silently reset the infinity baselines.
+     *
+     * @param checkpoint the stored checkpoint of the generator
+     * @return the progress to continue from, empty to compute the baselines from the start
+     */
+    private OptionalLong restoreFromStateStore(OptionalLong checkpoint) {
+        String id = generator.getId();
+        OptionalLong stored = generator.getStoredTimestamp();
+        if (stored.isEmpty()) {
+            if (checkpoint.isPresent()) {
+                log.warn("The state store of baseline '{}' is empty, computing it from the start instead of its checkpoint", id);
+            }
+            return OptionalLong.empty();
+        }
+        if (checkpoint.isEmpty() || checkpoint.getAsLong() > stored.getAsLong()) {
+            return stored;
+        }
+        if (stored.getAsLong() - checkpoint.getAsLong() > generator.getMaxUnwrittenMillis()) {
+            throw new IllegalStateException("The state store of baseline '" + id + "' is ahead of its checkpoint at "
+                    + new Date(checkpoint.getAsLong()) + " by more than it retains, so the baselines since then can not be recomputed. "
+                    + "Delete the checkpoint to continue from the state store (the baselines in between remain missing) "
+                    + "or delete the state files to recompute the baseline.");
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @param currentTime the current time in milliseconds
+     * @return the timestamp up to which the baselines can be computed at the given time
+     */
+    long getUpdatableUntil(long currentTime) {
+        long updatableUntil = currentTime - updateDelayMillis - generator.getMinimumDelayMillis();
+        return Math.min(updatableUntil, generator.getAvailableUntil());
+    }
+
+    /**
+     * If the infinity baselines are only kept in the persistent state store,
+     * the computed baselines must not be ahead of the written ones by more than the store retains.
+     *
+     * @param currentTime the current time in milliseconds
+     * @return the timestamp up to which the next update may compute the baselines
+     */
+    private long getComputableUntil(long currentTime) {
+        long updatableUntil = getUpdatableUntil(currentTime);
+        if (generator.isStateOnlyStored()) {
+            return Math.min(updatableUntil, writtenTimestamp.get() + generator.getMaxUnwrittenMillis());
+        }
+        return updatableUntil;
+    }
+
+    /**
+     * @param currentTime the current time in milliseconds
+     * @return true, if at least one interval of the generator can be completed
+     */
+    boolean isUpdateRequired(long currentTime) {
+        long now = getComputableUntil(currentTime);
+        return generator.getIntervalIndex(now) > generator.getIntervalIndex(lastUpdatedTimestamp.get());
+    }
+
+    /**
+     * @return the point in time at which the next interval of the generator can be completed
+     */
+    long getNextDueTime() {
+        long nextIntervalStart = generator.getNextIntervalStart(lastUpdatedTimestamp.get());
+        return nextIntervalStart + updateDelayMillis + generator.getMinimumDelayMillis() + jitterMillis;
+    }
+
+    /**
+     * A generator is backfilling, if it is lagging behind by more than a single update chunk.
+     * This is the case after startup or when a new baseline definition has been added.
+     *
+     * @param currentTime the current time in milliseconds
+     * @return true, if the next update of this generator is historic work
+     */
+    boolean isBackfilling(long currentTime) {
+        long backlog = getUpdatableUntil(currentTime) - lastUpdatedTimestamp.get();
+        return backlog > generator.getMaxUpdateIntervalSizeMillis();
+    }
+
+    /**
+     * Marks this task as active, if it is not already.
+     *
+     * @return true, if the caller is responsible for executing this task
+     */
+    boolean tryActivate() {
+        return active.compareAndSet(false, true);
+    }
+
+    void deactivate() {
+        active.set(false);
+    }
+
+    /**
+     * Updates the baselines of the generator by at most {@link BaselineGenerator#getMaxUpdateIntervalSizeMillis()}.
+     * Larger backlogs are processed by invoking this method repeatedly,
+     * which allows interleaving them with the updates of other generators.
+     *
+     * @param currentTime the current time in milliseconds
+     * @return true, if the update was successful
+     */
+    boolean updateNextChunk(long currentTime) {
+        try {
+            long now = getComputableUntil(currentTime);
+            long updateTimestamp = lastUpdatedTimestamp.get();
+            if (generator.getIntervalIndex(now) > generator.getIntervalIndex(updateTimestamp)) {
+                long updateTo = Math.min(now, updateTimestamp + generator.getMaxUpdateIntervalSizeMillis());
+                generator.updateBaselines(updateTimestamp, updateTo);
+                lastUpdatedTimestamp.set(updateTo);
+                // the points are sent asynchronously, a checkpoint ahead of them would skip them after a crash
+                generator.whenWritten(() -> {
+                    writtenTimestamp.set(updateTo);
+                    checkpoints.put(generator.getId(), updateTo);
+                });
+            }
+            return true;
+        } catch (Throwable t) {
+            log.error("An error occurred updating the baseline", t);
+            return false;
+        }
+    }
+}
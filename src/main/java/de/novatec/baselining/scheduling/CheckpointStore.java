@@ -0,0 +1,77 @@
+package de.novatec.baselining.scheduling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.OptionalLong;
+import java.util.Properties;
+
+/**
+ * Persists the timestamp up to which each baseline has been computed in a local properties file.
+ * The file is rewritten atomically on every change, so it is never left in a partially written state.
+ */
+@Slf4j
+public class CheckpointStore {
+
+    private final Path file;
+
+    private final Properties checkpoints = new Properties();
+
+    /**
+     * @param file the file to store the checkpoints in, null if checkpoints should only be kept in memory
+     */
+    public CheckpointStore(Path file) {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                checkpoints.load(reader);
+                log.info("Loaded {} checkpoints from '{}'", checkpoints.size(), file);
+            } catch (IOException e) {
+                log.error("Could not read checkpoints from '{}', baselines will be backfilled", file, e);
+            }
+        }
+    }
+
+    /**
+     * @param id the identifier of the baseline
+     * @return the timestamp up to which the baseline has been computed, if known
+     */
+    public synchronized OptionalLong get(String id) {
+        String value = checkpoints.getProperty(id);
+        if (value != null) {
+            try {
+                return OptionalLong.of(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid checkpoint '{}' for '{}'", value, id);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Stores the progress of the given baseline and persists all checkpoints.
+     *
+     * @param id        the identifier of the baseline
+     * @param timestamp the timestamp up to which the baseline has been computed
+     */
+    public synchronized void put(String id, long timestamp) {
+        checkpoints.setProperty(id, String.valueOf(timestamp));
+        if (file != null) {
+            try {
+                Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+                try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    checkpoints.store(writer, "Timestamps up to which the baselines have been computed");
+                }
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Could not write checkpoints to '{}'", file, e);
+            }
+        }
+    }
+}
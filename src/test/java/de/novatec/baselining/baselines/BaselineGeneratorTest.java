@@ -0,0 +1,115 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.config.ChunkingSettings;
+import de.novatec.baselining.config.baselines.AbstractBaselineDefinition;
+import de.novatec.baselining.config.measurement.MeasurementName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.datasources.BaselineDataSource;
+import de.novatec.baselining.influx.InfluxAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class BaselineGeneratorTest {
+
+    private static final long PRECISION = 1000;
+
+    private static final TagValues SERIES = TagValues.builder().tag("host", "a").build();
+
+    @TempDir
+    Path directory;
+
+    private BaselineDataSource src;
+
+    /**
+     * The state stores created by the generator by their id.
+     */
+    private final Map<String, BaselineStateStore> stores = new HashMap<>();
+
+    private BaselineGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        src = mock(BaselineDataSource.class);
+        when(src.fetch(anyLong(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            List<AggregatePoint> points = new ArrayList<>();
+            for (long interval = invocation.getArgument(1, Long.class); interval < invocation.getArgument(2, Long.class); interval++) {
+                points.add(new AggregatePoint(interval * PRECISION, interval, interval * interval, 1));
+            }
+            return Map.of(SERIES, points);
+        });
+    }
+
+    @AfterEach
+    void close() {
+        if (generator != null) {
+            generator.close();
+        }
+    }
+
+    private BaselineGenerator createGenerator(AbstractBaselineDefinition definition) {
+        BaselineStateStore.Factory factory = (id, precisionMillis, capacity) -> {
+            try {
+                BaselineStateStore store = new MappedStateStore(directory, id, precisionMillis, capacity, false);
+                stores.put(id, store);
+                return store;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        ChunkingSettings chunking = new ChunkingSettings();
+        chunking.setMaxUpdateIntervals(4);
+        return new BaselineGenerator(mock(InfluxAccess.class), src, definition, factory, false, chunking, null, null);
+    }
+
+    @Nested
+    class MultipleSeasonalities {
+
+        @BeforeEach
+        void setUp() {
+            AbstractBaselineDefinition definition = new AbstractBaselineDefinition();
+            definition.setOutput(new MeasurementName("db", "autogen", "baseline"));
+            definition.setPrecision(Duration.ofMillis(PRECISION));
+            definition.setSeasonalities(List.of(Duration.ofSeconds(10), Duration.ofSeconds(20)));
+            definition.setWindows(Collections.emptyList());
+            generator = createGenerator(definition);
+        }
+
+        @Test
+        void outputPerSeasonality() {
+            assertThat(stores).containsOnlyKeys("db.autogen.baseline_10s", "db.autogen.baseline_20s");
+        }
+
+        @Test
+        void sourceFetchedOncePerUpdate() {
+            generator.updateBaselines(100 * PRECISION, 104 * PRECISION);
+
+            verify(src).fetch(PRECISION, 100, 104);
+            verify(src, times(1)).fetch(anyLong(), anyLong(), anyLong());
+        }
+
+        @Test
+        void fetchedDataBaselinedForEverySeasonality() {
+            generator.updateBaselines(100 * PRECISION, 104 * PRECISION);
+
+            // the infinity baselines of the updated intervals are stored one season ahead
+            assertThat(stores.get("db.autogen.baseline_10s").get(110, 114)).hasValueSatisfying(
+                    baselines -> assertThat(baselines.get(SERIES)).hasSize(4));
+            assertThat(stores.get("db.autogen.baseline_20s").get(120, 124)).hasValueSatisfying(
+                    baselines -> assertThat(baselines.get(SERIES)).hasSize(4));
+        }
+    }
+}
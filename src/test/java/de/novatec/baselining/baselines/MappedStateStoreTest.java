@@ -0,0 +1,148 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedStateStoreTest {
+
+    private static final long PRECISION = 1000;
+
+    private static final TagValues SERIES_A = TagValues.builder().tag("host", "a").build();
+
+    private static final TagValues SERIES_B = TagValues.builder().tag("host", "b").build();
+
+    @TempDir
+    Path directory;
+
+    private static AggregatePoint point(long interval, double value, long count) {
+        return new AggregatePoint(interval * PRECISION, value, value * value, count);
+    }
+
+    @Nested
+    public class Get {
+
+        @Test
+        void incompleteRange() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 1))), 5, 7);
+
+            assertThat(store.contains(5, 7)).isTrue();
+            assertThat(store.contains(4, 7)).isFalse();
+            assertThat(store.get(5, 8)).isEmpty();
+            store.close();
+        }
+
+        @Test
+        void seriesWithoutPoints() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+            Map<TagValues, List<AggregatePoint>> points = new HashMap<>();
+            points.put(SERIES_A, List.of(point(5, 1, 1), point(6, 2, 1)));
+            points.put(SERIES_B, List.of(point(6, 3, 2)));
+            store.put(points, 5, 7);
+
+            Map<TagValues, List<AggregatePoint>> result = store.get(5, 7).orElseThrow();
+
+            assertThat(result.get(SERIES_A)).containsExactly(point(5, 1, 1), point(6, 2, 1));
+            assertThat(result.get(SERIES_B)).containsExactly(point(6, 3, 2));
+            store.close();
+        }
+
+        @Test
+        void overwrittenSlots() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 1))), 5, 6);
+            store.put(Collections.singletonMap(SERIES_B, List.of(point(15, 2, 1))), 15, 16);
+
+            assertThat(store.contains(5, 6)).isFalse();
+            assertThat(store.get(15, 16).orElseThrow()).containsOnlyKeys(SERIES_B);
+            store.close();
+        }
+    }
+
+    @Nested
+    public class Reopen {
+
+        @Test
+        void stateSurvivesRestart() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 3))), 3, 6);
+            store.close();
+
+            MappedStateStore reopened = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+
+            assertThat(reopened.getNewestInterval()).hasValue(5);
+            assertThat(reopened.get(3, 6).orElseThrow().get(SERIES_A)).containsExactly(point(5, 1, 3));
+            reopened.close();
+        }
+
+        @Test
+        void increasedCapacityKeepsState() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, false);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 3), point(12, 2, 3))), 3, 13);
+            store.put(Collections.singletonMap(SERIES_B, List.of(point(8, 4, 3))), 8, 9);
+            store.close();
+
+            MappedStateStore reopened = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 20, false);
+
+            assertThat(reopened.getNewestInterval()).hasValue(12);
+            assertThat(reopened.contains(3, 13)).isTrue();
+            assertThat(reopened.get(3, 13).orElseThrow().get(SERIES_A)).containsExactly(point(5, 1, 3), point(12, 2, 3));
+            assertThat(reopened.get(8, 9).orElseThrow().get(SERIES_B)).containsExactly(point(8, 4, 3));
+            reopened.close();
+        }
+
+        @Test
+        void reducedCapacityKeepsNewestIntervals() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, false);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 3), point(12, 2, 3))), 3, 13);
+            store.close();
+
+            MappedStateStore reopened = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 4, false);
+
+            assertThat(reopened.getNewestInterval()).hasValue(12);
+            assertThat(reopened.contains(9, 13)).isTrue();
+            assertThat(reopened.contains(8, 9)).isFalse();
+            assertThat(reopened.get(9, 13).orElseThrow().get(SERIES_A)).containsExactly(point(12, 2, 3));
+            reopened.close();
+        }
+
+        @Test
+        void incompatibleStateKeptIfOnlyCopy() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, false);
+            store.put(Collections.singletonMap(SERIES_A, List.of(point(5, 1, 3))), 3, 6);
+            store.close();
+
+            assertThatThrownBy(() -> new MappedStateStore(directory, "db.rp.baseline", 2 * PRECISION, 10, false))
+                    .isInstanceOf(IllegalStateException.class);
+
+            MappedStateStore reopened = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, false);
+            assertThat(reopened.get(3, 6).orElseThrow().get(SERIES_A)).containsExactly(point(5, 1, 3));
+            reopened.close();
+        }
+
+        @Test
+        void manySeriesSurviveRestart() throws Exception {
+            MappedStateStore store = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+            Map<TagValues, List<AggregatePoint>> points = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                points.put(TagValues.builder().tag("host", "host" + i).build(), List.of(point(5, i, 1)));
+            }
+            store.put(points, 5, 6);
+            store.close();
+
+            MappedStateStore reopened = new MappedStateStore(directory, "db.rp.baseline", PRECISION, 10, true);
+
+            assertThat(reopened.get(5, 6).orElseThrow()).isEqualTo(points);
+            reopened.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.config.measurement.MeasurementName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.influx.InfluxAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class SeasonalBaselineTest {
+
+    private static final long PRECISION = 1000;
+
+    private static final long SEASONALITY = 10 * PRECISION;
+
+    private static final int MAX_UPDATE_INTERVALS = 5;
+
+    private static final TagValues SERIES = TagValues.builder().tag("host", "a").build();
+
+    @TempDir
+    Path directory;
+
+    private SeasonalBaseline seasonal;
+
+    private static List<AggregatePoint> points(long startInterval, long endInterval) {
+        List<AggregatePoint> points = new ArrayList<>();
+        for (long interval = startInterval; interval < endInterval; interval++) {
+            points.add(new AggregatePoint(interval * PRECISION, interval, interval * interval, 1));
+        }
+        return points;
+    }
+
+    /**
+     * Updates the given range in chunks of at most {@link #MAX_UPDATE_INTERVALS}, like the {@link BaselineGenerator}.
+     */
+    private void update(long startInterval, long endInterval) {
+        for (long start = startInterval; start < endInterval; start += MAX_UPDATE_INTERVALS) {
+            long end = Math.min(endInterval, start + MAX_UPDATE_INTERVALS);
+            seasonal.warmUpStateCache(start);
+            seasonal.update(start, end, Map.of(SERIES, points(start, end)));
+        }
+    }
+
+    @AfterEach
+    void close() {
+        if (seasonal != null) {
+            seasonal.close();
+        }
+    }
+
+    @Nested
+    class OnlyStoredState {
+
+        @BeforeEach
+        void setUp() {
+            MeasurementName output = new MeasurementName("db", "autogen", "baseline");
+            BaselineStateStore.Factory stores = (id, precisionMillis, capacity) -> {
+                try {
+                    return new MappedStateStore(directory, id, precisionMillis, capacity, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            seasonal = new SeasonalBaseline(mock(InfluxAccess.class), output, PRECISION, SEASONALITY, Collections.emptyList(),
+                    stores, MAX_UPDATE_INTERVALS, false, false, null);
+        }
+
+        @Test
+        void baselinedDataReconstructed() {
+            update(100, 105);
+            assertThat(seasonal.getBaselinedData(100, 105)).containsOnlyKeys(SERIES);
+            assertThat(seasonal.getBaselinedData(100, 105).get(SERIES)).isEqualTo(points(100, 105));
+
+            update(105, 120);
+            assertThat(seasonal.getBaselinedData(110, 115).get(SERIES)).isEqualTo(points(110, 115));
+        }
+
+        @Test
+        void intervalsBeforeFirstUpdateEmpty() {
+            update(100, 105);
+
+            assertThat(seasonal.getBaselinedData(97, 105).get(SERIES)).isEqualTo(points(100, 105));
+        }
+
+        @Test
+        void displacedIntervalsRejected() {
+            update(100, 140);
+
+            assertThatThrownBy(() -> seasonal.getBaselinedData(100, 105)).isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        void retentionExcludesFollowingSeasonAndUnwrittenUpdates() {
+            // the store holds the season, the update chunk, the unwritten chunk and one spare interval
+            assertThat(seasonal.getBaselinedDataRetentionMillis()).isEqualTo((MAX_UPDATE_INTERVALS + 1) * PRECISION);
+        }
+    }
+}
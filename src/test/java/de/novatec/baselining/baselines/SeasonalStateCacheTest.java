@@ -0,0 +1,171 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.QuantileSketch;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SeasonalStateCacheTest {
+
+    private static final long PRECISION = 1000;
+
+    private static final int CAPACITY = 10;
+
+    private static Map<TagValues, List<AggregatePoint>> points(int seriesCount, long startInterval, long endInterval) {
+        Map<TagValues, List<AggregatePoint>> result = new HashMap<>();
+        for (int i = 0; i < seriesCount; i++) {
+            TagValues tags = TagValues.builder().tag("series", String.valueOf(i)).build();
+            List<AggregatePoint> series = new ArrayList<>();
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                series.add(new AggregatePoint(interval * PRECISION, interval, interval * interval, 1));
+            }
+            result.put(tags, series);
+        }
+        return result;
+    }
+
+    @Nested
+    class Put {
+
+        @Test
+        void storedPointsReturned() {
+            SeasonalStateCache cache = new SeasonalStateCache("a", PRECISION, CAPACITY, new StateCacheBudget(100));
+
+            cache.put(points(2, 0, 5), 0, 5);
+
+            assertThat(cache.contains(0, 5)).isTrue();
+            assertThat(cache.contains(0, 6)).isFalse();
+            assertThat(cache.get(1, 3)).hasValueSatisfying(result -> {
+                assertThat(result).hasSize(2);
+                assertThat(result.values()).allSatisfy(series -> assertThat(series).hasSize(2));
+            });
+        }
+
+        @Test
+        void tooLargeForBudgetDisablesCache() {
+            StateCacheBudget budget = new StateCacheBudget(25);
+            SeasonalStateCache cache = new SeasonalStateCache("a", PRECISION, CAPACITY, budget);
+
+            cache.put(points(3, 0, 5), 0, 5);
+
+            assertThat(cache.isEnabled()).isFalse();
+            assertThat(cache.get(0, 5)).isEmpty();
+            assertThat(budget.getUsedPoints()).isZero();
+        }
+    }
+
+    @Nested
+    class Sketches {
+
+        private Map<TagValues, List<AggregatePoint>> sketchPoints(long startInterval, long endInterval) {
+            List<AggregatePoint> series = new ArrayList<>();
+            for (long interval = startInterval; interval < endInterval; interval++) {
+                series.add(new AggregatePoint(interval * PRECISION, interval, interval * interval, 1, sketch()));
+            }
+            return Map.of(TagValues.builder().tag("series", "0").build(), series);
+        }
+
+        private QuantileSketch sketch() {
+            QuantileSketch sketch = new QuantileSketch(0.01);
+            for (int value = 1; value <= 1000; value++) {
+                sketch.add(value);
+            }
+            return sketch;
+        }
+
+        @Test
+        void sketchesCountAgainstBudget() {
+            long weight = SeasonalStateCache.weightOf(sketch());
+            StateCacheBudget budget = new StateCacheBudget(1_000_000);
+            SeasonalStateCache cache = new SeasonalStateCache("a", PRECISION, CAPACITY, budget);
+
+            cache.put(sketchPoints(0, 5), 0, 5);
+            assertThat(weight).isGreaterThan(50);
+            assertThat(budget.getUsedPoints()).isEqualTo(CAPACITY + 5 * weight);
+
+            cache.put(sketchPoints(0, 5), 0, 5);
+            assertThat(budget.getUsedPoints()).isEqualTo(CAPACITY + 5 * weight);
+
+            cache.put(Map.of(TagValues.builder().tag("series", "0").build(), List.of(new AggregatePoint(10 * PRECISION, 1, 1, 1))), 10, 13);
+            assertThat(budget.getUsedPoints()).isEqualTo(CAPACITY + 2 * weight);
+        }
+
+        @Test
+        void largeSketchesEvictOtherCaches() {
+            long weight = SeasonalStateCache.weightOf(sketch());
+            StateCacheBudget budget = new StateCacheBudget(CAPACITY + 6 * weight);
+            SeasonalStateCache plain = new SeasonalStateCache("a", PRECISION, CAPACITY, budget);
+            SeasonalStateCache sketches = new SeasonalStateCache("b", PRECISION, CAPACITY, budget);
+
+            plain.put(points(1, 0, 5), 0, 5);
+            sketches.put(sketchPoints(0, 4), 0, 4);
+            assertThat(plain.contains(0, 5)).isTrue();
+
+            sketches.put(sketchPoints(4, 6), 4, 6);
+            assertThat(plain.contains(0, 5)).isFalse();
+            assertThat(sketches.contains(0, 6)).isTrue();
+            assertThat(budget.getUsedPoints()).isEqualTo(CAPACITY + 6 * weight);
+        }
+    }
+
+    @Nested
+    class Eviction {
+
+        @Test
+        void leastRecentlyUsedEvicted() {
+            StateCacheBudget budget = new StateCacheBudget(20);
+            SeasonalStateCache first = new SeasonalStateCache("a", PRECISION, CAPACITY, budget);
+            SeasonalStateCache second = new SeasonalStateCache("b", PRECISION, CAPACITY, budget);
+            SeasonalStateCache third = new SeasonalStateCache("c", PRECISION, CAPACITY, budget);
+
+            first.put(points(1, 0, 5), 0, 5);
+            second.put(points(1, 0, 5), 0, 5);
+            first.get(0, 5);
+            third.put(points(1, 0, 5), 0, 5);
+
+            assertThat(first.contains(0, 5)).isTrue();
+            assertThat(second.contains(0, 5)).isFalse();
+            assertThat(third.contains(0, 5)).isTrue();
+            assertThat(second.isEnabled()).isTrue();
+            assertThat(budget.getUsedPoints()).isEqualTo(20);
+        }
+
+        @Test
+        void blockedEvictionKeepsCacheEnabled() {
+            StateCacheBudget budget = new StateCacheBudget(20);
+            AtomicBoolean inUse = new AtomicBoolean(true);
+            SeasonalStateCache busy = new SeasonalStateCache("a", PRECISION, CAPACITY, budget) {
+                @Override
+                boolean tryEvict() {
+                    // simulates an update of this cache running concurrently
+                    return !inUse.get() && super.tryEvict();
+                }
+            };
+            SeasonalStateCache cache = new SeasonalStateCache("b", PRECISION, CAPACITY, budget);
+
+            busy.put(points(1, 0, 5), 0, 5);
+            cache.put(points(2, 0, 5), 0, 5);
+
+            assertThat(cache.isEnabled()).isTrue();
+            assertThat(cache.contains(0, 5)).isFalse();
+            assertThat(busy.contains(0, 5)).isTrue();
+            assertThat(budget.getUsedPoints()).isEqualTo(10);
+
+            inUse.set(false);
+            cache.put(points(2, 5, 8), 5, 8);
+
+            assertThat(cache.contains(5, 8)).isTrue();
+            assertThat(busy.contains(0, 5)).isFalse();
+            assertThat(budget.getUsedPoints()).isEqualTo(20);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package de.novatec.baselining.baselines;
+
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardAssignmentTest {
+
+    @Nested
+    class OwnsBaseline {
+
+        @Test
+        void singleInstanceOwnsEverything() {
+            ShardAssignment shards = new ShardAssignment(0, 1);
+
+            assertThat(shards.isSharded()).isFalse();
+            for (int i = 0; i < 100; i++) {
+                assertThat(shards.ownsBaseline("db.autogen.baseline" + i)).isTrue();
+            }
+        }
+
+        @Test
+        void exactlyOneOwner() {
+            ShardAssignment[] shards = create(3);
+
+            for (int i = 0; i < 1000; i++) {
+                String id = "db.autogen.baseline" + i;
+                int owners = 0;
+                for (ShardAssignment shard : shards) {
+                    owners += shard.ownsBaseline(id) ? 1 : 0;
+                }
+                assertThat(owners).isEqualTo(1);
+            }
+        }
+
+        @Test
+        void evenlyDistributed() {
+            ShardAssignment[] shards = create(4);
+
+            int[] owned = new int[shards.length];
+            for (int i = 0; i < 4000; i++) {
+                for (int shard = 0; shard < shards.length; shard++) {
+                    if (shards[shard].ownsBaseline("db.autogen.baseline" + i)) {
+                        owned[shard]++;
+                    }
+                }
+            }
+
+            assertThat(owned).allSatisfy(count -> assertThat(count).isBetween(850, 1150));
+        }
+
+        @Test
+        void addingInstanceOnlyMovesToNewInstance() {
+            ShardAssignment[] before = create(3);
+            ShardAssignment[] after = create(4);
+
+            for (int i = 0; i < 1000; i++) {
+                String id = "db.autogen.baseline" + i;
+                for (int shard = 0; shard < before.length; shard++) {
+                    if (after[shard].ownsBaseline(id)) {
+                        assertThat(before[shard].ownsBaseline(id)).isTrue();
+                    }
+                }
+            }
+        }
+
+        @Test
+        void invalidIndex() {
+            assertThatThrownBy(() -> new ShardAssignment(2, 2)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    class OwnsSeries {
+
+        @Test
+        void exactlyOneOwner() {
+            ShardAssignment[] shards = create(3);
+
+            for (int i = 0; i < 1000; i++) {
+                TagValues tags = TagValues.builder().tag("host", "host" + i).tag("path", "/" + (i % 7)).build();
+                int owners = 0;
+                for (ShardAssignment shard : shards) {
+                    owners += shard.ownsSeries(tags) ? 1 : 0;
+                }
+                assertThat(owners).isEqualTo(1);
+            }
+        }
+
+        @Test
+        void independentOfTagOrderAndEmptyValues() {
+            ShardAssignment[] shards = create(5);
+
+            for (int i = 0; i < 200; i++) {
+                Map<String, String> ordered = new LinkedHashMap<>();
+                ordered.put("host", "host" + i);
+                ordered.put("path", "/" + i);
+                Map<String, String> reversed = new LinkedHashMap<>();
+                reversed.put("status", "");
+                reversed.put("path", "/" + i);
+                reversed.put("host", "host" + i);
+
+                for (ShardAssignment shard : shards) {
+                    assertThat(shard.ownsSeries(TagValues.from(reversed))).isEqualTo(shard.ownsSeries(TagValues.from(ordered)));
+                }
+            }
+        }
+    }
+
+    private static ShardAssignment[] create(int count) {
+        ShardAssignment[] shards = new ShardAssignment[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new ShardAssignment(i, count);
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,74 @@
+package de.novatec.baselining.baselines;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UpdateChunkSizerTest {
+
+    @Nested
+    class GetQueryIntervals {
+
+        @Test
+        void initialSize() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(64);
+        }
+
+        @Test
+        void initialSizeLimitedByMax() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 20);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(16);
+        }
+
+        @Test
+        void fastQueriesGrow() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            sizer.record(64, 64);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(256);
+        }
+
+        @Test
+        void slowQueriesShrink() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            sizer.record(64, 64_000);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(8);
+        }
+
+        @Test
+        void neverBelowOne() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            sizer.record(1, 60_000);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(1);
+        }
+
+        @Test
+        void smoothedObservations() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            sizer.record(100, 10_000);
+            sizer.record(100, 1_000);
+
+            // 0.3 * 10 + 0.7 * 100 = 73ms per interval -> 136 intervals
+            assertThat(sizer.getQueryIntervals()).isEqualTo(128);
+        }
+
+        @Test
+        void emptyRangesIgnored() {
+            UpdateChunkSizer sizer = new UpdateChunkSizer(10_000, 400);
+
+            sizer.record(0, 5_000);
+
+            assertThat(sizer.getQueryIntervals()).isEqualTo(64);
+        }
+    }
+}
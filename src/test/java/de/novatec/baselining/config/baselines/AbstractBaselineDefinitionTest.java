@@ -0,0 +1,103 @@
+package de.novatec.baselining.config.baselines;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AbstractBaselineDefinitionTest {
+
+    private static final Duration DAY = Duration.ofDays(1);
+
+    private static final Duration WEEK = Duration.ofDays(7);
+
+    private static AbstractBaselineDefinition definition(Duration seasonality, List<Duration> seasonalities) {
+        AbstractBaselineDefinition definition = new AbstractBaselineDefinition();
+        definition.setSeasonality(seasonality);
+        definition.setSeasonalities(seasonalities);
+        return definition;
+    }
+
+    @Nested
+    class IsSeasonalitySpecified {
+
+        @Test
+        void singleSeasonality() {
+            assertThat(definition(DAY, null).isSeasonalitySpecified()).isTrue();
+        }
+
+        @Test
+        void multipleSeasonalities() {
+            assertThat(definition(null, List.of(DAY, WEEK)).isSeasonalitySpecified()).isTrue();
+        }
+
+        @Test
+        void both() {
+            assertThat(definition(DAY, List.of(WEEK)).isSeasonalitySpecified()).isFalse();
+        }
+
+        @Test
+        void none() {
+            assertThat(definition(null, null).isSeasonalitySpecified()).isFalse();
+        }
+
+        @Test
+        void emptySeasonalities() {
+            assertThat(definition(null, Collections.emptyList()).isSeasonalitySpecified()).isFalse();
+        }
+    }
+
+    @Nested
+    class GetAllSeasonalities {
+
+        @Test
+        void singleSeasonality() {
+            AbstractBaselineDefinition definition = definition(DAY, null);
+
+            assertThat(definition.getAllSeasonalities()).containsExactly(DAY);
+            assertThat(definition.isMultiSeasonal()).isFalse();
+        }
+
+        @Test
+        void multipleSeasonalities() {
+            AbstractBaselineDefinition definition = definition(null, List.of(DAY, WEEK));
+
+            assertThat(definition.getAllSeasonalities()).containsExactly(DAY, WEEK);
+            assertThat(definition.isMultiSeasonal()).isTrue();
+        }
+
+        @Test
+        void none() {
+            assertThat(definition(null, null).getAllSeasonalities()).isEmpty();
+        }
+    }
+
+    @Nested
+    class GetWindowsWithDefault {
+
+        @Test
+        void defaultWindowOfTenSeasons() {
+            assertThat(definition(DAY, null).getWindowsWithDefault(DAY)).containsExactly(Duration.ofDays(10));
+        }
+
+        @Test
+        void defaultDependsOnSeasonality() {
+            AbstractBaselineDefinition definition = definition(null, List.of(DAY, WEEK));
+
+            assertThat(definition.getWindowsWithDefault(WEEK)).containsExactly(Duration.ofDays(70));
+        }
+
+        @Test
+        void configuredWindowsForEverySeasonality() {
+            AbstractBaselineDefinition definition = definition(null, List.of(DAY, WEEK));
+            definition.setWindows(List.of(Duration.ofDays(14), Duration.ofDays(28)));
+
+            assertThat(definition.getWindowsWithDefault(DAY)).containsExactly(Duration.ofDays(14), Duration.ofDays(28));
+            assertThat(definition.getWindowsWithDefault(WEEK)).containsExactly(Duration.ofDays(14), Duration.ofDays(28));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package de.novatec.baselining.data;
+
+import de.novatec.baselining.data.transformations.Aggregations;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AggregationsTest {
+
+    private static DataSeries series(long... timesAndValues) {
+        DataSeries.Builder builder = new DataSeries.Builder();
+        for (int i = 0; i < timesAndValues.length; i += 2) {
+            builder.add(timesAndValues[i], timesAndValues[i + 1]);
+        }
+        return builder.build();
+    }
+
+    @Nested
+    public class JoinInterpolating {
+
+        @Test
+        void emptySide() {
+            DataSeries result = Aggregations.joinInterpolating(series(10, 1, 20, 2), DataSeries.EMPTY, Double::sum);
+
+            assertThat(result.toPoints()).containsExactly(new DataPoint(10, 1), new DataPoint(20, 2));
+        }
+
+        @Test
+        void interpolatingMissingTimes() {
+            DataSeries left = series(10, 100, 30, 300);
+            DataSeries right = series(0, 10, 20, 20, 30, 30, 40, 40);
+
+            DataSeries result = Aggregations.joinInterpolating(left, right, Double::sum);
+
+            assertThat(result.toPoints()).containsExactly(
+                    new DataPoint(0, 110),
+                    new DataPoint(10, 115),
+                    new DataPoint(20, 220),
+                    new DataPoint(30, 330),
+                    new DataPoint(40, 340)
+            );
+        }
+
+        @Test
+        void droppingNaN() {
+            DataSeries result = Aggregations.joinInterpolating(series(10, 4, 20, 4), series(10, 2, 20, 0),
+                    (num, denom) -> denom > 0 ? num / denom : Double.NaN);
+
+            assertThat(result.toPoints()).containsExactly(new DataPoint(10, 2));
+        }
+    }
+
+    @Nested
+    public class DataSeriesMerge {
+
+        @Test
+        void keepingOrder() {
+            DataSeries merged = DataSeries.merge(series(10, 1, 30, 3), series(20, 2, 30, 4, 40, 5));
+
+            assertThat(merged.toPoints()).containsExactly(
+                    new DataPoint(10, 1),
+                    new DataPoint(20, 2),
+                    new DataPoint(30, 3),
+                    new DataPoint(30, 4),
+                    new DataPoint(40, 5)
+            );
+        }
+
+        @Test
+        void sortingUnorderedPoints() {
+            DataSeries sorted = DataSeries.from(Arrays.asList(new DataPoint(30, 1), new DataPoint(10, 2), new DataPoint(30, 3)));
+
+            assertThat(sorted.toPoints()).containsExactly(new DataPoint(10, 2), new DataPoint(30, 1), new DataPoint(30, 3));
+            assertThat(sorted.since(30).size()).isEqualTo(2);
+        }
+    }
+
+    @Nested
+    public class SumInterpolating {
+
+        @Test
+        void matchingPairwiseJoins() {
+            DataSeries first = series(10, 100, 30, 300);
+            DataSeries second = series(0, 10, 20, 20, 30, 30, 40, 40);
+            DataSeries third = series(15, 1, 35, 5);
+
+            DataSeries expected = Aggregations.joinInterpolating(
+                    Aggregations.joinInterpolating(first, second, Double::sum), third, Double::sum);
+            DataSeries result = Aggregations.sumInterpolating(Arrays.asList(first, second, third));
+
+            assertThat(result.size()).isEqualTo(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(result.getTime(i)).isEqualTo(expected.getTime(i));
+                assertThat(result.getValue(i)).isCloseTo(expected.getValue(i), within(1e-9));
+            }
+        }
+
+        @Test
+        void skippingEmptySeries() {
+            DataSeries result = Aggregations.sumInterpolating(Arrays.asList(DataSeries.EMPTY, series(10, 1, 20, 2)));
+
+            assertThat(result.toPoints()).containsExactly(new DataPoint(10, 1), new DataPoint(20, 2));
+        }
+    }
+
+    @Nested
+    public class AggregateByTags {
+
+        @Test
+        void combiningGroupsOnce() {
+            Map<TagValues, DataSeries> data = new HashMap<>();
+            data.put(TagValues.builder().tag("path", "/a").tag("status", "200").build(), series(10, 1));
+            data.put(TagValues.builder().tag("path", "/a").tag("status", "500").build(), series(20, 2));
+            data.put(TagValues.builder().tag("path", "/b").tag("status", "200").build(), series(30, 3));
+
+            Map<TagValues, DataSeries> result = Aggregations.aggregateByTags(Collections.singletonList("path"), data, Aggregations::mergeAll);
+
+            assertThat(result).hasSize(2);
+            assertThat(result.get(TagValues.builder().tag("path", "/a").build()).toPoints())
+                    .containsExactly(new DataPoint(10, 1), new DataPoint(20, 2));
+            assertThat(result.get(TagValues.builder().tag("path", "/b").build()).toPoints())
+                    .containsExactly(new DataPoint(30, 3));
+        }
+    }
+}
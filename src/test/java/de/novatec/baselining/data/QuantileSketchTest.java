@@ -0,0 +1,118 @@
+package de.novatec.baselining.data;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class QuantileSketchTest {
+
+    private static QuantileSketch sketchOf(double... values) {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (double value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+
+    @Nested
+    public class GetQuantile {
+
+        @Test
+        void empty() {
+            assertThat(new QuantileSketch(0.01).getQuantile(0.5)).isNaN();
+        }
+
+        @Test
+        void withinRelativeAccuracy() {
+            Random random = new Random(3);
+            double[] values = new double[10000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Math.exp(random.nextGaussian() * 2);
+            }
+            QuantileSketch sketch = sketchOf(values);
+            Arrays.sort(values);
+
+            for (double quantile : new double[]{0, 0.5, 0.95, 0.99, 1}) {
+                double expected = values[(int) (quantile * (values.length - 1))];
+                assertThat(sketch.getQuantile(quantile)).isCloseTo(expected, within(expected * 0.01));
+            }
+        }
+
+        @Test
+        void negativeAndZeroValues() {
+            QuantileSketch sketch = sketchOf(-10, -1, 0, 0, 5);
+
+            assertThat(sketch.getCount()).isEqualTo(5);
+            assertThat(sketch.getQuantile(0)).isCloseTo(-10, within(0.1));
+            assertThat(sketch.getQuantile(0.5)).isZero();
+            assertThat(sketch.getQuantile(1)).isCloseTo(5, within(0.05));
+        }
+
+        @Test
+        void ignoresNaN() {
+            QuantileSketch sketch = sketchOf(Double.NaN, 1);
+
+            assertThat(sketch.getCount()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    public class MergeAndSubtract {
+
+        @Test
+        void mergeEqualsSketchOfAllValues() {
+            QuantileSketch merged = sketchOf(1, 2, 3).merge(sketchOf(100, 200));
+
+            assertThat(merged).isEqualTo(sketchOf(1, 2, 3, 100, 200));
+        }
+
+        @Test
+        void subtractRemovesValues() {
+            QuantileSketch all = sketchOf(1, 2, 3, 1000, 2000);
+
+            QuantileSketch result = all.subtract(sketchOf(1000, 2000));
+
+            assertThat(result).isEqualTo(sketchOf(1, 2, 3));
+            assertThat(result.getQuantile(1)).isCloseTo(3, within(0.03));
+        }
+
+        @Test
+        void differentAccuracies() {
+            QuantileSketch sketch = sketchOf(1);
+
+            assertThatThrownBy(() -> sketch.merge(new QuantileSketch(0.02))).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    public class Encoding {
+
+        @Test
+        void roundTrip() {
+            QuantileSketch sketch = sketchOf(-3, 0, 0.5, 1, 1, 42, 1e6);
+
+            QuantileSketch decoded = QuantileSketch.decode(sketch.encode());
+
+            assertThat(decoded).isEqualTo(sketch);
+            assertThat(decoded.getRelativeAccuracy()).isEqualTo(0.01);
+        }
+
+        @Test
+        void emptyBucketsAreNotEncoded() {
+            QuantileSketch sketch = sketchOf(1, 1e6).subtract(sketchOf(1e6));
+
+            assertThat(sketch.encode()).hasSize(sketchOf(1).encode().length);
+        }
+
+        @Test
+        void invalid() {
+            assertThatThrownBy(() -> QuantileSketch.decode(new byte[]{1, 2})).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.novatec.baselining.data;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TagValuesTest {
+
+    @Nested
+    public class Interning {
+
+        @Test
+        void sameTagsSameInstance() {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("http_path", "/login");
+            tags.put("http_status", "200");
+
+            TagValues built = TagValues.builder().tag("http_status", "200").tag("http_path", "/login").build();
+            TagValues fromMap = TagValues.from(tags);
+
+            assertThat(fromMap).isSameAs(built);
+            assertThat(fromMap.getId()).isEqualTo(built.getId());
+        }
+
+        @Test
+        void differentTagsDifferentIds() {
+            TagValues first = TagValues.builder().tag("host", "a").build();
+            TagValues second = TagValues.builder().tag("host", "b").build();
+
+            assertThat(first).isNotEqualTo(second);
+            assertThat(first.getId()).isNotEqualTo(second.getId());
+        }
+
+        @Test
+        void copyingMutableTags() {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("host", "c");
+            TagValues interned = TagValues.from(tags);
+
+            tags.put("host", "d");
+
+            assertThat(interned.getTags()).containsEntry("host", "c");
+        }
+    }
+
+    @Nested
+    public class KeepOnly {
+
+        @Test
+        void projectingToInternedInstance() {
+            List<String> keep = Arrays.asList("http_path", "missing");
+            TagValues tags = TagValues.builder().tag("http_path", "/").tag("http_status", "500").build();
+
+            TagValues projected = tags.keepOnly(keep);
+
+            assertThat(projected.getTags()).containsOnlyKeys("http_path");
+            assertThat(projected).isSameAs(TagValues.builder().tag("http_path", "/").build());
+            assertThat(tags.keepOnly(keep)).isSameAs(projected);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.novatec.baselining.data;
+
+import de.novatec.baselining.data.transformations.Transformations;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransformationsTest {
+
+    @Nested
+    public class RateSince {
+
+        @Test
+        void derivingCounter() {
+            DataSeries counter = new DataSeries.Builder()
+                    .add(0, 10)
+                    .add(1000, 20)
+                    .add(1000, 25)
+                    .add(3000, 45)
+                    .build();
+
+            DataSeries rate = Transformations.rateSince(counter, 1000, Duration.ofSeconds(1));
+
+            assertThat(rate.toPoints()).containsExactly(new DataPoint(1000, 10), new DataPoint(3000, 10));
+        }
+    }
+
+    @Nested
+    public class MeanByInterval {
+
+        @Test
+        void averagingIntervals() {
+            DataSeries data = new DataSeries.Builder()
+                    .add(100, 1)
+                    .add(900, 3)
+                    .add(2500, 4)
+                    .build();
+
+            List<AggregatePoint> means = Transformations.meanByInterval(data, 1000);
+
+            assertThat(means).containsExactly(
+                    new AggregatePoint(0, 2, 5, 1),
+                    new AggregatePoint(2000, 4, 16, 1)
+            );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.novatec.baselining.data.transformations;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class NumericKernelsTest {
+
+    private static final int POINTS = 1003;
+
+    private final NumericKernels scalar = new ScalarKernels();
+
+    private final NumericKernels vector;
+
+    private final long[] times = new long[POINTS];
+
+    private final double[] values = new double[POINTS];
+
+    NumericKernelsTest() throws ReflectiveOperationException {
+        vector = Kernels.loadVectorKernels();
+        Random random = new Random(1);
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < POINTS; i++) {
+            time += 15_000 + random.nextInt(3) * 1000;
+            times[i] = time;
+            values[i] = i * 3.5 + random.nextDouble();
+        }
+    }
+
+    @Nested
+    public class Rates {
+
+        @Test
+        void vectorMatchesScalar() {
+            double[] expected = new double[POINTS];
+            double[] actual = new double[POINTS];
+
+            scalar.rates(times, values, POINTS, 1000, expected);
+            vector.rates(times, values, POINTS, 1000, actual);
+
+            for (int i = 1; i < POINTS; i++) {
+                assertThat(actual[i]).isCloseTo(expected[i], within(1e-12));
+            }
+        }
+    }
+
+    @Nested
+    public class SumAndSquares {
+
+        @Test
+        void vectorMatchesScalar() {
+            double[] expected = new double[2];
+            double[] actual = new double[2];
+
+            scalar.sumAndSquares(values, 5, POINTS - 2, expected);
+            vector.sumAndSquares(values, 5, POINTS - 2, actual);
+
+            assertThat(actual[0]).isCloseTo(expected[0], within(expected[0] * 1e-12));
+            assertThat(actual[1]).isCloseTo(expected[1], within(expected[1] * 1e-12));
+        }
+
+        @Test
+        void shortRange() {
+            double[] sums = new double[2];
+
+            vector.sumAndSquares(new double[]{1, 2, 3}, 1, 3, sums);
+
+            assertThat(sums).containsExactly(5, 13);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.novatec.baselining.data.transformations;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class SlidingWindowPercentileTest {
+
+    private static double expected(double[] values, int from, int to, double quantile) {
+        Percentile percentile = new Percentile(quantile * 100);
+        percentile.setData(Arrays.copyOfRange(values, from, to));
+        return percentile.evaluate();
+    }
+
+    @Nested
+    public class Evaluate {
+
+        @Test
+        void emptyWindow() {
+            SlidingWindowPercentile window = new SlidingWindowPercentile(new double[]{1, 2, 3}, 3, 0.5);
+
+            window.slideTo(1, 1);
+
+            assertThat(window.size()).isZero();
+            assertThat(window.evaluate()).isNaN();
+        }
+
+        @Test
+        void interpolatesBetweenRanks() {
+            SlidingWindowPercentile window = new SlidingWindowPercentile(new double[]{4, 1, 3, 2}, 4, 0.5);
+
+            window.slideTo(0, 4);
+
+            assertThat(window.evaluate()).isEqualTo(2.5);
+        }
+
+        @Test
+        void ignoresNaN() {
+            SlidingWindowPercentile window = new SlidingWindowPercentile(new double[]{Double.NaN, 1, 3, Double.NaN}, 4, 1.0);
+
+            window.slideTo(0, 4);
+
+            assertThat(window.size()).isEqualTo(2);
+            assertThat(window.evaluate()).isEqualTo(3);
+        }
+
+        @Test
+        void matchesCommonsMathWhileSliding() {
+            Random random = new Random(7);
+            double[] values = new double[500];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(50) * 0.5;
+            }
+            for (double quantile : new double[]{0.05, 0.5, 0.9, 0.99, 1.0}) {
+                SlidingWindowPercentile window = new SlidingWindowPercentile(values, values.length, quantile);
+                for (int to = 1; to <= values.length; to += 3) {
+                    int from = Math.max(0, to - 40);
+                    window.slideTo(from, to);
+
+                    assertThat(window.evaluate()).isCloseTo(expected(values, from, to, quantile), within(1e-9));
+                }
+            }
+        }
+    }
+
+    @Nested
+    public class SlideTo {
+
+        @Test
+        void rejectsMovingBackwards() {
+            SlidingWindowPercentile window = new SlidingWindowPercentile(new double[]{1, 2, 3}, 3, 0.5);
+            window.slideTo(1, 3);
+
+            assertThatThrownBy(() -> window.slideTo(0, 3)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
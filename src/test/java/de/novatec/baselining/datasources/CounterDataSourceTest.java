@@ -0,0 +1,122 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.config.baselines.CounterBaselineDefinition;
+import de.novatec.baselining.config.measurement.MeasurementFieldName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.data.transformations.Transformations;
+import de.novatec.baselining.influx.InfluxAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CounterDataSourceTest {
+
+    private static final String RATE_QUERY = "SELECT NON_NEGATIVE_DERIVATIVE(LAST(value), 1s) FROM db.autogen.requests";
+
+    private static final TagValues HOST_A = TagValues.builder().tag("host", "a").tag("service", "web").build();
+
+    private static final TagValues HOST_B = TagValues.builder().tag("host", "b").tag("service", "web").build();
+
+    /**
+     * The counters from one second before the fetched range, which starts at 2000.
+     */
+    private static final Map<TagValues, DataSeries> COUNTERS = Map.of(
+            HOST_A, new DataSeries.Builder()
+                    .add(1000, 10)
+                    .add(2000, 20)
+                    .add(3000, 40)
+                    .add(4000, 70)
+                    .add(5000, 80)
+                    .build(),
+            HOST_B, new DataSeries.Builder()
+                    .add(1000, 3)
+                    .add(2000, 5)
+                    .add(4000, 6)
+                    .add(5000, 12)
+                    .build());
+
+    private InfluxAccess influx;
+
+    @BeforeEach
+    void setUp() {
+        influx = mock(InfluxAccess.class);
+        when(influx.queryAggregate(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            if (invocation.getArgument(1, String.class).contains("NON_NEGATIVE_DERIVATIVE")) {
+                return Transformations.mapValues(COUNTERS, CounterDataSourceTest::nonNegativeDerivative);
+            }
+            return COUNTERS;
+        });
+    }
+
+    /**
+     * The per-second rates as returned by influx for NON_NEGATIVE_DERIVATIVE.
+     */
+    static DataSeries nonNegativeDerivative(DataSeries counter) {
+        DataSeries.Builder rates = new DataSeries.Builder();
+        for (int i = 1; i < counter.size(); i++) {
+            double rate = (counter.getValue(i) - counter.getValue(i - 1)) / (counter.getTime(i) - counter.getTime(i - 1)) * 1000;
+            if (rate >= 0) {
+                rates.add(counter.getTime(i), rate);
+            }
+        }
+        return rates.build();
+    }
+
+    private Map<TagValues, List<AggregatePoint>> fetch(List<String> tags, boolean pushDownRate) {
+        CounterBaselineDefinition settings = new CounterBaselineDefinition();
+        settings.setInput(new MeasurementFieldName("db", "autogen", "requests", "value"));
+        settings.setTags(tags);
+        settings.setSamplePrecision(Duration.ofSeconds(1));
+        settings.setLookBack(Duration.ofSeconds(1));
+        settings.setLoopBackSrc(false);
+        settings.setPushDownRate(pushDownRate);
+        return new CounterDataSource(influx, settings).fetch(2000, 1, 3);
+    }
+
+    @Nested
+    class PushDownRate {
+
+        @Test
+        void sameAsClientWithoutResets() {
+            Map<TagValues, List<AggregatePoint>> client = fetch(List.of("service"), false);
+
+            assertThat(client).containsOnlyKeys(TagValues.builder().tag("service", "web").build());
+            assertThat(fetch(List.of("service"), true)).isEqualTo(client);
+        }
+
+        @Test
+        void ratesQueriedFromLookBack() {
+            fetch(null, true);
+
+            verify(influx).queryAggregate("db", RATE_QUERY, 1000, 6000, 1000);
+        }
+
+        @Test
+        void lookBackCutAtStart() {
+            when(influx.queryAggregate("db", RATE_QUERY, 1000, 6000, 1000)).thenReturn(Map.of(HOST_A, new DataSeries.Builder()
+                    .add(1000, 100)
+                    .add(2000, 1)
+                    .add(3000, 3)
+                    .add(4000, 5)
+                    .add(5000, 7)
+                    .build()));
+
+            Map<TagValues, List<AggregatePoint>> result = fetch(null, true);
+
+            assertThat(result.get(HOST_A)).containsExactly(
+                    new AggregatePoint(2000, 2, 5, 1),
+                    new AggregatePoint(4000, 6, 37, 1));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.config.baselines.CounterRatioBaselineDefinition;
+import de.novatec.baselining.config.measurement.MeasurementFieldName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.data.transformations.Aggregations;
+import de.novatec.baselining.data.transformations.Transformations;
+import de.novatec.baselining.influx.InfluxAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CounterRatioDataSourceTest {
+
+    private static final String ERRORS_QUERY = "SELECT LAST(value) FROM db.autogen.errors";
+
+    private static final String REQUESTS_QUERY = "SELECT LAST(value) FROM db.autogen.requests";
+
+    private static final String ERROR_RATES_QUERY = "SELECT NON_NEGATIVE_DERIVATIVE(LAST(value), 1s) FROM db.autogen.errors";
+
+    private static final String REQUEST_RATES_QUERY = "SELECT NON_NEGATIVE_DERIVATIVE(LAST(value), 1s) FROM db.autogen.requests";
+
+    private static final TagValues HOST_A = TagValues.builder().tag("host", "a").tag("service", "web").build();
+
+    private static final TagValues HOST_B = TagValues.builder().tag("host", "b").tag("service", "web").build();
+
+    private static final TagValues WEB = TagValues.builder().tag("service", "web").build();
+
+    private InfluxAccess influx;
+
+    @BeforeEach
+    void setUp() {
+        influx = mock(InfluxAccess.class);
+    }
+
+    private void returnFromLookBack(String query, Map<TagValues, DataSeries> result) {
+        when(influx.queryAggregate(eq("db"), eq(query), eq(1000L), eq(6000L), anyLong())).thenReturn(result);
+    }
+
+    private Map<TagValues, List<AggregatePoint>> fetch(List<String> tags, boolean pushDownRate) {
+        CounterRatioBaselineDefinition settings = new CounterRatioBaselineDefinition();
+        settings.setInput(new MeasurementFieldName("db", "autogen", "errors", "value"));
+        settings.setDivideBy(new MeasurementFieldName("db", "autogen", "requests", "value"));
+        settings.setTags(tags);
+        settings.setSamplePrecision(Duration.ofSeconds(1));
+        settings.setLookBack(Duration.ofSeconds(1));
+        settings.setLoopBackSrc(false);
+        settings.setPushDownRate(pushDownRate);
+        return new CounterRatioDataSource(influx, settings).fetch(2000, 1, 3);
+    }
+
+    @Nested
+    class ClientRate {
+
+        @Test
+        void sameAsRatioOfCounterRates() {
+            Map<TagValues, DataSeries> errors = Map.of(
+                    HOST_A, new DataSeries.Builder().add(1000, 1).add(2000, 2).add(3000, 4).add(4000, 7).add(5000, 8).build(),
+                    HOST_B, new DataSeries.Builder().add(1000, 0).add(3000, 3).add(5000, 4).build());
+            Map<TagValues, DataSeries> requests = Map.of(
+                    HOST_A, new DataSeries.Builder().add(1000, 10).add(2000, 15).add(3000, 20).add(4000, 30).add(5000, 50).build(),
+                    HOST_B, new DataSeries.Builder().add(1000, 5).add(2000, 9).add(4000, 20).add(5000, 21).build());
+            returnFromLookBack(ERRORS_QUERY, errors);
+            returnFromLookBack(REQUESTS_QUERY, requests);
+
+            // the ratio of the rates of the summed counters, as computed before rates could be pushed down
+            Map<TagValues, DataSeries> summedErrors = Aggregations.aggregateByTags(List.of("service"), errors, Aggregations::sumInterpolating);
+            Map<TagValues, DataSeries> summedRequests = Aggregations.aggregateByTags(List.of("service"), requests, Aggregations::sumInterpolating);
+            DataSeries ratio = Aggregations.joinInterpolating(
+                    Transformations.rate(summedErrors.get(WEB), Duration.ofHours(1)),
+                    Transformations.rate(summedRequests.get(WEB), Duration.ofHours(1)),
+                    (num, denom) -> denom > 0 ? num / denom : Double.NaN
+            ).since(2000);
+            Map<TagValues, DataSeries> expected = new HashMap<>();
+            expected.put(WEB, ratio);
+
+            Map<TagValues, List<AggregatePoint>> result = fetch(List.of("service"), false);
+
+            assertThat(result).isEqualTo(Transformations.meanByInterval(expected, 2000));
+            assertThat(result.get(WEB)).hasSize(2);
+        }
+    }
+
+    @Nested
+    class PushDownRate {
+
+        @Test
+        void lookBackCutAtStart() {
+            returnFromLookBack(ERROR_RATES_QUERY, Map.of(HOST_A, new DataSeries.Builder()
+                    .add(1000, 50)
+                    .add(2000, 1)
+                    .add(3000, 3)
+                    .add(4000, 2)
+                    .add(5000, 1)
+                    .build()));
+            returnFromLookBack(REQUEST_RATES_QUERY, Map.of(HOST_A, new DataSeries.Builder()
+                    .add(1000, 1)
+                    .add(2000, 1)
+                    .add(3000, 1)
+                    .add(4000, 4)
+                    .add(5000, 2)
+                    .build()));
+
+            Map<TagValues, List<AggregatePoint>> result = fetch(null, true);
+
+            assertThat(result.get(HOST_A)).containsExactly(
+                    new AggregatePoint(2000, 2, 5, 1),
+                    new AggregatePoint(4000, 0.5, 0.25, 1));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.config.baselines.GaugeBaselineDefinition;
+import de.novatec.baselining.config.measurement.MeasurementFieldName;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import de.novatec.baselining.influx.InfluxAccess;
+import de.novatec.baselining.influx.QueryResults;
+import de.novatec.baselining.influx.SeriesColumns;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GaugeDataSourceTest {
+
+    private static final long INTERVAL = 3000;
+
+    /**
+     * The sample means as returned by influx when grouping by all tags, a missing tag is returned as empty value.
+     */
+    private static final Map<TagValues, DataSeries> SAMPLES = Map.of(
+            TagValues.builder().tag("host", "a").tag("service", "web").build(), new DataSeries.Builder()
+                    .add(0, 1)
+                    .add(1000, 2.5)
+                    .add(2000, 3)
+                    .add(3000, 4.25)
+                    .add(5000, 0.5)
+                    .build(),
+            TagValues.builder().tag("host", "b").tag("service", "web").build(), new DataSeries.Builder()
+                    .add(0, 2)
+                    .add(2000, 1.75)
+                    .add(4000, 6)
+                    .build(),
+            TagValues.builder().tag("host", "c").tag("service", "").build(), new DataSeries.Builder()
+                    .add(1000, 3.5)
+                    .add(3000, 0.25)
+                    .build());
+
+    private InfluxAccess influx;
+
+    @BeforeEach
+    void setUp() {
+        influx = mock(InfluxAccess.class);
+        when(influx.queryAggregate(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(SAMPLES);
+        when(influx.queryMeanOfSampleMeans(anyString(), anyString(), anyString(), any(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> meanOfSampleMeans(invocation.getArgument(3), invocation.getArgument(7)));
+    }
+
+    /**
+     * Aggregates the samples like the query of {@link InfluxAccess#queryMeanOfSampleMeans} and decodes the response.
+     */
+    private static Map<TagValues, SeriesColumns> meanOfSampleMeans(List<String> groupByTags, long intervalMillis) {
+        Map<TagValues, SortedMap<Long, List<Double>>> groups = new HashMap<>();
+        SAMPLES.forEach((tags, series) -> {
+            TagValues group = groupByTags == null ? tags : tags.keepOnly(groupByTags);
+            for (int i = 0; i < series.size(); i++) {
+                long time = series.getTime(i) / intervalMillis * intervalMillis;
+                groups.computeIfAbsent(group, key -> new TreeMap<>())
+                        .computeIfAbsent(time, key -> new ArrayList<>())
+                        .add(series.getValue(i));
+            }
+        });
+
+        StringJoiner series = new StringJoiner(",");
+        groups.forEach((tags, intervals) -> {
+            StringJoiner tagsJson = new StringJoiner(",", "{", "}");
+            tags.getTags().forEach((key, value) -> tagsJson.add("\"" + key + "\":\"" + value + "\""));
+            StringJoiner rows = new StringJoiner(",");
+            intervals.forEach((time, samples) -> {
+                double sum = samples.stream().mapToDouble(value -> value).sum();
+                double squares = samples.stream().mapToDouble(value -> value * value).sum();
+                rows.add("[" + time + "," + sum / samples.size() + "," + squares / samples.size() + "]");
+            });
+            series.add("{\"name\":\"cpu\"" + (tags.getTags().isEmpty() ? "" : ",\"tags\":" + tagsJson)
+                    + ",\"columns\":[\"time\",\"mean\",\"squares\"],\"values\":[" + rows + "]}");
+        });
+        return QueryResults.decode("{\"results\":[{\"statement_id\":0,\"series\":[" + series + "]}]}");
+    }
+
+    private Map<TagValues, List<AggregatePoint>> fetch(List<String> tags, boolean pushDownMean) {
+        GaugeBaselineDefinition settings = new GaugeBaselineDefinition();
+        settings.setInput(new MeasurementFieldName("db", "autogen", "cpu", "value"));
+        settings.setTags(tags);
+        settings.setSamplePrecision(Duration.ofSeconds(1));
+        settings.setLoopBackSrc(false);
+        settings.setPushDownMean(pushDownMean);
+        return new GaugeDataSource(influx, settings).fetch(INTERVAL, 0, 2);
+    }
+
+    @Nested
+    class PushDownMean {
+
+        @Test
+        void sameAsClientWithoutTags() {
+            Map<TagValues, List<AggregatePoint>> client = fetch(null, false);
+
+            assertThat(client).hasSize(3);
+            assertThat(fetch(null, true)).isEqualTo(client);
+        }
+
+        @Test
+        void sameAsClientForEmptyTags() {
+            Map<TagValues, List<AggregatePoint>> client = fetch(Collections.emptyList(), false);
+
+            assertThat(client).containsOnlyKeys(TagValues.builder().build());
+            assertThat(fetch(Collections.emptyList(), true)).isEqualTo(client);
+        }
+
+        @Test
+        void sameAsClientForTagSubset() {
+            Map<TagValues, List<AggregatePoint>> client = fetch(List.of("service"), false);
+
+            assertThat(client).containsOnlyKeys(
+                    TagValues.builder().tag("service", "web").build(),
+                    TagValues.builder().tag("service", "").build());
+            assertThat(client.get(TagValues.builder().tag("service", "web").build())).containsExactly(
+                    new AggregatePoint(0, 2.05, 4.6625, 1),
+                    new AggregatePoint(3000, 3.5833333333333335, 18.104166666666668, 1));
+            assertThat(fetch(List.of("service"), true)).isEqualTo(client);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package de.novatec.baselining.datasources;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import de.novatec.baselining.data.AggregatePoint;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class RollupDataSourceTest {
+
+    private static final TagValues SERIES = TagValues.builder().tag("host", "a").build();
+
+    private BaselineGenerator source;
+
+    private RollupDataSource rollup;
+
+    @BeforeEach
+    void setUp() {
+        source = mock(BaselineGenerator.class);
+        when(source.getPrecisionMillis()).thenReturn(1000L);
+        rollup = new RollupDataSource(source);
+    }
+
+    @Nested
+    class Fetch {
+
+        @Test
+        void finerIntervalsAveraged() {
+            when(source.getBaselinedData(0, 6)).thenReturn(Map.of(SERIES, List.of(
+                    new AggregatePoint(0, 1, 1, 1),
+                    new AggregatePoint(1000, 2, 4, 1),
+                    new AggregatePoint(2000, 3, 9, 1),
+                    new AggregatePoint(4000, 4, 16, 1))));
+
+            Map<TagValues, List<AggregatePoint>> result = rollup.fetch(3000, 0, 2);
+
+            assertThat(result.get(SERIES)).containsExactly(
+                    new AggregatePoint(0, 2, 14.0 / 3, 1),
+                    new AggregatePoint(3000, 4, 16, 1));
+        }
+
+        @Test
+        void rangeTranslatedToSourceIntervals() {
+            rollup.fetch(3000, 5, 7);
+
+            verify(source).getBaselinedData(15, 21);
+        }
+    }
+
+    @Nested
+    class Availability {
+
+        @Test
+        void limitedToWrittenSourceBaselines() {
+            when(source.getWrittenUntil()).thenReturn(42_000L);
+
+            assertThat(rollup.getAvailableUntil()).isEqualTo(42_000L);
+        }
+
+        @Test
+        void rangeLimitedToRetainedSourceState() {
+            when(source.getBaselinedDataRetentionMillis()).thenReturn(6000L);
+
+            assertThat(rollup.getMaxRangeMillis()).isEqualTo(6000L);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.novatec.baselining.influx;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InfluxQueryTest {
+
+    private static final String SAMPLES = "SELECT MEAN(sample) AS mean, MEAN(squared) AS squares FROM ("
+            + "SELECT MEAN(value) AS sample, MEAN(value) * MEAN(value) AS squared FROM db.autogen.cpu"
+            + " WHERE ( time >= 60000000000 AND time < 120000000000) GROUP BY *, time(15000ms) fill(none))"
+            + " WHERE  ( time >= 60000000000 AND time < 120000000000)  GROUP BY ";
+
+    private static String meanOfSampleMeans(List<String> groupByTags) {
+        return InfluxQuery.buildMeanOfSampleMeansQuery("value", "db.autogen.cpu", groupByTags, 60000, 120000, 15000, 60000);
+    }
+
+    @Nested
+    class MeanOfSampleMeans {
+
+        @Test
+        void groupedByQuotedTags() {
+            assertThat(meanOfSampleMeans(List.of("host", "service")))
+                    .isEqualTo(SAMPLES + "\"host\", \"service\", time(60000ms) fill(none)");
+        }
+
+        @Test
+        void seriesKeptSeparateWithoutTags() {
+            assertThat(meanOfSampleMeans(null))
+                    .isEqualTo(SAMPLES + "*, time(60000ms) fill(none)");
+        }
+
+        @Test
+        void allSeriesMergedForEmptyTags() {
+            assertThat(meanOfSampleMeans(Collections.emptyList()))
+                    .isEqualTo(SAMPLES + "time(60000ms) fill(none)");
+        }
+    }
+}
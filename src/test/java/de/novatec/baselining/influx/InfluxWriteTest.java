@@ -0,0 +1,167 @@
+package de.novatec.baselining.influx;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.novatec.baselining.config.WriteSettings;
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InfluxWriteTest {
+
+    private static final TagValues TAGS = TagValues.builder().tag("host", "a").build();
+
+    private static final DataSeries POINTS = new DataSeries.Builder()
+            .add(1000, 1)
+            .add(2000, 2)
+            .add(3000, 3)
+            .build();
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+
+    /**
+     * The bodies of all received requests.
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private volatile ToIntFunction<String> status;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/write", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.add(body);
+        exchange.sendResponseHeaders(status.applyAsInt(body), -1);
+        exchange.close();
+    }
+
+    private InfluxWrite createWrite() throws IOException {
+        WriteSettings settings = new WriteSettings();
+        settings.setGzip(false);
+        settings.setMaxRetries(2);
+        settings.setInitialRetryDelay(Duration.ofMillis(1));
+        settings.setMaxRetryDelay(Duration.ofMillis(1));
+        settings.setSpoolDirectory(directory.toString());
+        return new InfluxWrite("http://localhost:" + server.getAddress().getPort(), null,
+                Duration.ofSeconds(5), Duration.ofSeconds(5), settings);
+    }
+
+    /**
+     * Writes the points and closes the writer.
+     *
+     * @return true, if the points have been reported as sent
+     */
+    private boolean writeAndClose() throws IOException {
+        InfluxWrite write = createWrite();
+        AtomicBoolean sent = new AtomicBoolean();
+        write.writePoints("db", "m", Map.of(TAGS, POINTS));
+        write.whenSent(() -> sent.set(true));
+        write.close(Duration.ofSeconds(5));
+        return sent.get();
+    }
+
+    private static long lineCount(String body) {
+        return body.chars().filter(c -> c == '\n').count();
+    }
+
+    @Nested
+    class Statuses {
+
+        @Test
+        void acceptedPointsSent() throws Exception {
+            status = body -> 204;
+
+            assertThat(writeAndClose()).isTrue();
+
+            assertThat(requests).hasSize(1);
+            assertThat(lineCount(requests.get(0))).isEqualTo(3);
+        }
+
+        @Test
+        void badRequestNotRetried() throws Exception {
+            status = body -> 400;
+
+            assertThat(writeAndClose()).isTrue();
+
+            assertThat(requests).hasSize(1);
+            assertThat(directory.resolve("write-spool.dead")).doesNotExist();
+        }
+
+        @Test
+        void unauthorizedRetriedAndDeadLettered() throws Exception {
+            status = body -> 401;
+
+            assertThat(writeAndClose()).isFalse();
+
+            assertThat(requests).hasSize(3);
+            assertThat(Files.readString(directory.resolve("write-spool.dead")))
+                    .startsWith("# database=db\n")
+                    .contains(requests.get(0));
+        }
+
+        @Test
+        void missingDatabaseRetried() throws Exception {
+            status = body -> 404;
+
+            assertThat(writeAndClose()).isFalse();
+
+            assertThat(requests).hasSize(3);
+        }
+
+        @Test
+        void tooLargeRequestsSplit() throws Exception {
+            status = body -> lineCount(body) > 1 ? 413 : 204;
+
+            assertThat(writeAndClose()).isTrue();
+
+            // three lines, then one and two lines, then the two lines one by one
+            assertThat(requests).hasSize(5);
+            assertThat(requests.stream().filter(body -> lineCount(body) == 1))
+                    .containsExactlyInAnyOrder("m,host=a value=1 1000\n", "m,host=a value=2 2000\n", "m,host=a value=3 3000\n");
+        }
+    }
+
+    @Nested
+    class LineEnd {
+
+        @Test
+        void afterGivenNumberOfLines() {
+            byte[] lines = "a 1\nb 2\nc 3\n".getBytes(StandardCharsets.UTF_8);
+
+            assertThat(InfluxWrite.lineEnd(lines, 1)).isEqualTo(4);
+            assertThat(InfluxWrite.lineEnd(lines, 2)).isEqualTo(8);
+            assertThat(InfluxWrite.lineEnd(lines, 3)).isEqualTo(lines.length);
+        }
+    }
+}
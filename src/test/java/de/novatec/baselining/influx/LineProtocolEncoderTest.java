@@ -0,0 +1,110 @@
+package de.novatec.baselining.influx;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineProtocolEncoderTest {
+
+    private static String encoded(LineProtocolEncoder encoder) {
+        return new String(encoder.getBuffer(), 0, encoder.getSize(), StandardCharsets.UTF_8);
+    }
+
+    @Nested
+    public class EncodePrefix {
+
+        @Test
+        void sortedTagsWithoutEmptyValues() {
+            Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("service", "b");
+            tags.put("empty", "");
+            tags.put("host", "a");
+
+            byte[] prefix = LineProtocolEncoder.encodePrefix("cpu", tags);
+
+            assertThat(new String(prefix, StandardCharsets.UTF_8)).isEqualTo("cpu,host=a,service=b ");
+        }
+
+        @Test
+        void escaping() {
+            byte[] prefix = LineProtocolEncoder.encodePrefix("my measurement,x=1", Map.of("a key", "v=1,2"));
+
+            assertThat(new String(prefix, StandardCharsets.UTF_8)).isEqualTo("my\\ measurement\\,x=1,a\\ key=v\\=1\\,2 ");
+        }
+    }
+
+    @Nested
+    public class Lines {
+
+        private final byte[] prefix = LineProtocolEncoder.encodePrefix("m", Collections.emptyMap());
+
+        @Test
+        void fieldTypes() {
+            LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+            encoder.startLine(prefix)
+                    .field("value", 1.5)
+                    .field("sum", 3.0)
+                    .field("seasons", 2L)
+                    .field("sketch", "a\"b\\c")
+                    .endLine(1000);
+
+            assertThat(encoded(encoder)).isEqualTo("m value=1.5,sum=3,seasons=2i,sketch=\"a\\\"b\\\\c\" 1000\n");
+            assertThat(encoder.getLineCount()).isEqualTo(1);
+        }
+
+        @Test
+        void nonFiniteFieldsSkipped() {
+            LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+            encoder.startLine(prefix)
+                    .field("value", Double.NaN)
+                    .field("stddev", -0.25)
+                    .endLine(-5);
+
+            assertThat(encoded(encoder)).isEqualTo("m stddev=-0.25 -5\n");
+        }
+
+        @Test
+        void linesWithoutFieldsDropped() {
+            LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+            encoder.startLine(prefix).field("value", 1.0).endLine(1);
+            encoder.startLine(prefix).field("value", Double.POSITIVE_INFINITY).endLine(2);
+            encoder.startLine(prefix).field("value", 1e20).endLine(3);
+
+            assertThat(encoded(encoder)).isEqualTo("m value=1 1\nm value=1.0E20 3\n");
+            assertThat(encoder.getLineCount()).isEqualTo(2);
+        }
+
+        @Test
+        void growsBeyondInitialBuffer() {
+            LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+            for (int i = 0; i < 20_000; i++) {
+                encoder.startLine(prefix).field("value", (double) i).endLine(i);
+            }
+
+            assertThat(encoder.getLineCount()).isEqualTo(20_000);
+            assertThat(encoded(encoder)).endsWith("m value=19999 19999\n");
+        }
+
+        @Test
+        void reset() {
+            LineProtocolEncoder encoder = new LineProtocolEncoder();
+            encoder.startLine(prefix).field("value", 1.0).endLine(1);
+
+            encoder.reset();
+            encoder.startLine(prefix).field("value", 2.0).endLine(2);
+
+            assertThat(encoded(encoder)).isEqualTo("m value=2 2\n");
+            assertThat(encoder.getLineCount()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QueryResultDecoderTest {
+
+    private static Map<TagValues, SeriesColumns> decode(String json) throws IOException {
+        Map<TagValues, SeriesColumns> result = new HashMap<>();
+        decode(json, (measurement, tags, columns) -> result.put(tags, columns));
+        return result;
+    }
+
+    private static void decode(String json, QueryResultDecoder.SeriesConsumer consumer) throws IOException {
+        QueryResultDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), consumer);
+    }
+
+    @Nested
+    public class Decode {
+
+        @Test
+        void singleChunk() throws IOException {
+            String json = "{\"results\":[{\"statement_id\":0,\"series\":["
+                    + "{\"name\":\"cpu\",\"tags\":{\"host\":\"a\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,1.5],[2000,null],[3000,2]]},"
+                    + "{\"name\":\"cpu\",\"tags\":{\"host\":\"b\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,7]]}"
+                    + "]}]}";
+
+            Map<TagValues, SeriesColumns> result = decode(json);
+
+            SeriesColumns hostA = result.get(TagValues.builder().tag("host", "a").build());
+            assertThat(hostA.size()).isEqualTo(3);
+            DataSeries values = hostA.toDataSeries(0);
+            assertThat(values.size()).isEqualTo(2);
+            assertThat(values.getTime(1)).isEqualTo(3000);
+            assertThat(values.getValue(1)).isEqualTo(2);
+            assertThat(result.get(TagValues.builder().tag("host", "b").build()).getNumber(0, 0)).isEqualTo(7);
+        }
+
+        @Test
+        void seriesSpreadOverChunks() throws IOException {
+            String json = "{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"m\",\"columns\":[\"time\",\"value\"],"
+                    + "\"values\":[[1,1],[2,2]],\"partial\":true}],\"partial\":true}]}\n"
+                    + "{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"m\",\"columns\":[\"time\",\"value\"],\"values\":[[3,3]]}]}]}\n";
+
+            Map<TagValues, SeriesColumns> result = decode(json);
+
+            SeriesColumns series = result.get(TagValues.builder().build());
+            assertThat(series.size()).isEqualTo(3);
+            assertThat(series.getTime(2)).isEqualTo(3);
+            assertThat(series.getNumber(0, 2)).isEqualTo(3);
+        }
+
+        @Test
+        void multipleColumns() throws IOException {
+            String json = "{\"results\":[{\"statement_id\":0,\"series\":[{\"name\":\"m_inf\",\"columns\":[\"time\",\"sum\",\"sumSq\",\"seasons\",\"sketch\"],"
+                    + "\"values\":[[5,1.5,2.25,1,\"AQ==\"],[6,2,4,2,null]]}]}]}";
+
+            SeriesColumns series = decode(json).get(TagValues.builder().build());
+
+            assertThat(series.getColumns()).containsExactly("sum", "sumSq", "seasons", "sketch");
+            assertThat(series.getNumber(series.indexOf("seasons"), 1)).isEqualTo(2);
+            assertThat(series.getText(series.indexOf("sketch"), 0)).isEqualTo("AQ==");
+            assertThat(series.getText(series.indexOf("sketch"), 1)).isNull();
+            assertThat(series.getNumber(series.indexOf("sketch"), 0)).isNaN();
+        }
+
+        @Test
+        void measurementsKeptApart() throws IOException {
+            String json = "{\"results\":[{\"statement_id\":0,\"series\":["
+                    + "{\"name\":\"cpu\",\"tags\":{\"host\":\"a\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,1]]},"
+                    + "{\"name\":\"mem\",\"tags\":{\"host\":\"a\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,2],[2000,3]]}"
+                    + "]}]}";
+            List<String> measurements = new ArrayList<>();
+            List<SeriesColumns> series = new ArrayList<>();
+
+            decode(json, (measurement, tags, columns) -> {
+                measurements.add(measurement);
+                series.add(columns);
+            });
+
+            assertThat(measurements).containsExactly("cpu", "mem");
+            assertThat(series.get(0).size()).isEqualTo(1);
+            assertThat(series.get(1).size()).isEqualTo(2);
+        }
+
+        @Test
+        void completedSeriesPassedOnBeforeEnd() {
+            String json = "{\"results\":[{\"statement_id\":0,\"series\":["
+                    + "{\"name\":\"cpu\",\"tags\":{\"host\":\"a\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,1]]},"
+                    + "{\"name\":\"cpu\",\"tags\":{\"host\":\"b\"},\"columns\":[\"time\",\"value\"],\"values\":[[1000,2],";
+            List<TagValues> received = new ArrayList<>();
+
+            assertThatThrownBy(() -> decode(json, (measurement, tags, columns) -> received.add(tags)))
+                    .isInstanceOf(IOException.class);
+
+            assertThat(received).containsExactly(TagValues.builder().tag("host", "a").build());
+        }
+
+        @Test
+        void emptyResult() throws IOException {
+            assertThat(decode("{\"results\":[{\"statement_id\":0}]}")).isEmpty();
+        }
+
+        @Test
+        void error() {
+            assertThatThrownBy(() -> decode("{\"results\":[{\"statement_id\":0,\"error\":\"database not found: x\"}]}"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("database not found");
+        }
+    }
+}
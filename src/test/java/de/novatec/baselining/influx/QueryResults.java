@@ -0,0 +1,27 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.TagValues;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes influx query responses for tests outside of this package.
+ */
+public class QueryResults {
+
+    public static Map<TagValues, SeriesColumns> decode(String json) {
+        Map<TagValues, SeriesColumns> result = new HashMap<>();
+        try {
+            QueryResultDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                    (measurement, tags, columns) -> result.put(tags, columns));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,203 @@
+package de.novatec.baselining.influx;
+
+import de.novatec.baselining.data.DataSeries;
+import de.novatec.baselining.data.TagValues;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SharedFetchCacheTest {
+
+    private static final SharedFetchCache.FetchKey KEY = new SharedFetchCache.FetchKey("db", "SELECT LAST(value) FROM m", 0, 60000, 15000);
+
+    private static final Map<TagValues, DataSeries> RESULT = Map.of(TagValues.builder().tag("host", "a").build(),
+            new DataSeries.Builder()
+                    .add(0, 1)
+                    .add(15000, 2)
+                    .add(30000, 3)
+                    .build());
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return a query counting its executions, which blocks until the given latch is released
+     */
+    private Supplier<Map<TagValues, DataSeries>> blockingQuery(CountDownLatch started, CountDownLatch release, RuntimeException failure) {
+        return () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return RESULT;
+        };
+    }
+
+    private Supplier<Map<TagValues, DataSeries>> countingQuery() {
+        return () -> {
+            executions.incrementAndGet();
+            return RESULT;
+        };
+    }
+
+    /**
+     * Issues the query from several threads, releasing it only once all other threads wait for its result.
+     *
+     * @return the outcome of each thread, either its result or the thrown exception
+     */
+    private List<Object> getConcurrently(SharedFetchCache cache, int threads, RuntimeException failure) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Map<TagValues, DataSeries>> query = blockingQuery(started, release, failure);
+
+        List<Thread> waiting = new CopyOnWriteArrayList<>();
+        List<Future<Object>> outcomes = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            outcomes.add(executor.submit(() -> {
+                waiting.add(Thread.currentThread());
+                try {
+                    return cache.get(KEY, query);
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
+            if (i == 0) {
+                assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+        while (waiting.size() < threads || waiting.stream().filter(thread -> thread.getState() == Thread.State.WAITING).count() < threads) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        List<Object> result = new ArrayList<>();
+        for (Future<Object> outcome : outcomes) {
+            result.add(outcome.get(5, TimeUnit.SECONDS));
+        }
+        return result;
+    }
+
+    @Nested
+    class Coalescing {
+
+        @Test
+        void concurrentIdenticalQueriesExecutedOnce() throws Exception {
+            SharedFetchCache cache = new SharedFetchCache(60000, 1000);
+
+            List<Object> results = getConcurrently(cache, 4, null);
+
+            assertThat(executions).hasValue(1);
+            assertThat(results).hasSize(4).allSatisfy(result -> assertThat(result).isEqualTo(RESULT));
+        }
+
+        @Test
+        void differentKeysExecutedSeparately() {
+            SharedFetchCache cache = new SharedFetchCache(60000, 1000);
+            SharedFetchCache.FetchKey otherRange = new SharedFetchCache.FetchKey("db", KEY.getQuery(), 60000, 120000, 15000);
+
+            cache.get(KEY, countingQuery());
+            cache.get(otherRange, countingQuery());
+
+            assertThat(executions).hasValue(2);
+        }
+    }
+
+    @Nested
+    class Failures {
+
+        @Test
+        void errorPassedToAllWaiters() throws Exception {
+            SharedFetchCache cache = new SharedFetchCache(60000, 1000);
+            RuntimeException failure = new IllegalStateException("query failed");
+
+            List<Object> results = getConcurrently(cache, 3, failure);
+
+            assertThat(executions).hasValue(1);
+            assertThat(results).hasSize(3).allSatisfy(result -> assertThat(result).isSameAs(failure));
+        }
+
+        @Test
+        void failedQueryNotCached() {
+            SharedFetchCache cache = new SharedFetchCache(60000, 1000);
+
+            assertThatThrownBy(() -> cache.get(KEY, () -> {
+                throw new IllegalStateException("query failed");
+            })).isInstanceOf(IllegalStateException.class);
+
+            assertThat(cache.get(KEY, countingQuery())).isEqualTo(RESULT);
+            assertThat(executions).hasValue(1);
+        }
+    }
+
+    @Nested
+    class Retention {
+
+        @Test
+        void resultReusedWithinTtl() {
+            SharedFetchCache cache = new SharedFetchCache(60000, 1000);
+
+            cache.get(KEY, countingQuery());
+            Map<TagValues, DataSeries> reused = cache.get(KEY, countingQuery());
+
+            assertThat(executions).hasValue(1);
+            assertThat(reused).isEqualTo(RESULT);
+        }
+
+        @Test
+        void resultExpiresAfterTtl() throws InterruptedException {
+            SharedFetchCache cache = new SharedFetchCache(10, 1000);
+
+            cache.get(KEY, countingQuery());
+            Thread.sleep(50);
+            cache.get(KEY, countingQuery());
+
+            assertThat(executions).hasValue(2);
+        }
+
+        @Test
+        void resultAboveMaxPointsNotRetained() {
+            SharedFetchCache cache = new SharedFetchCache(60000, 2);
+
+            assertThat(cache.get(KEY, countingQuery())).isEqualTo(RESULT);
+            cache.get(KEY, countingQuery());
+
+            assertThat(executions).hasValue(2);
+        }
+
+        @Test
+        void retainedPointsLimitedByMaxPoints() {
+            SharedFetchCache cache = new SharedFetchCache(60000, 4);
+            SharedFetchCache.FetchKey otherRange = new SharedFetchCache.FetchKey("db", KEY.getQuery(), 60000, 120000, 15000);
+
+            cache.get(KEY, countingQuery());
+            cache.get(otherRange, countingQuery());
+            cache.get(KEY, countingQuery());
+            cache.get(otherRange, countingQuery());
+
+            // only the first result fits, the second one is executed again
+            assertThat(executions).hasValue(3);
+        }
+    }
+}
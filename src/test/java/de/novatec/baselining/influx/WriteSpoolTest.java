@@ -0,0 +1,204 @@
+package de.novatec.baselining.influx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteSpoolTest {
+
+    private static final Duration RETRY_DELAY = Duration.ofMillis(1);
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    private WriteSpool spool;
+
+    private WriteSpool.Sender recording() {
+        return (database, lines, lineCount) -> sent.add(database + ":" + new String(lines, StandardCharsets.UTF_8));
+    }
+
+    private static WriteSpool.Sender unavailable() {
+        return (database, lines, lineCount) -> {
+            throw new IOException("unavailable");
+        };
+    }
+
+    private static byte[] lines(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void close() {
+        if (spool != null) {
+            spool.close(Duration.ofSeconds(5));
+        }
+    }
+
+    @Nested
+    public class InMemory {
+
+        @Test
+        void sentInOrder() throws Exception {
+            spool = new WriteSpool(recording(), null, 2, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+
+            for (int i = 0; i < 10; i++) {
+                spool.enqueue("db", lines("m value=" + i), 1);
+            }
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(sent).hasSize(10);
+            assertThat(sent.get(0)).isEqualTo("db:m value=0");
+            assertThat(sent.get(9)).isEqualTo("db:m value=9");
+        }
+
+        @Test
+        void failedWritesRetried() throws Exception {
+            AtomicInteger attempts = new AtomicInteger();
+            WriteSpool.Sender failingTwice = (database, lines, lineCount) -> {
+                if (attempts.incrementAndGet() <= 2) {
+                    throw new IOException("unavailable");
+                }
+                recording().send(database, lines, lineCount);
+            };
+            spool = new WriteSpool(failingTwice, null, 2, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+
+            spool.enqueue("db", lines("m value=1"), 1);
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(attempts.get()).isEqualTo(3);
+            assertThat(sent).containsExactly("db:m value=1");
+        }
+
+        @Test
+        void callbackRunAfterSend() throws Exception {
+            CountDownLatch available = new CountDownLatch(1);
+            WriteSpool.Sender blocking = (database, lines, lineCount) -> {
+                try {
+                    available.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                recording().send(database, lines, lineCount);
+            };
+            spool = new WriteSpool(blocking, null, 2, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            AtomicBoolean written = new AtomicBoolean();
+
+            spool.enqueue("db", lines("m value=1"), 1);
+            spool.whenSent(() -> written.set(true));
+
+            assertThat(written).isFalse();
+            available.countDown();
+            spool.close(Duration.ofSeconds(5));
+            assertThat(written).isTrue();
+        }
+
+        @Test
+        void callbackRunDirectlyIfNothingPending() throws Exception {
+            spool = new WriteSpool(recording(), null, 2, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            AtomicBoolean written = new AtomicBoolean();
+
+            spool.whenSent(() -> written.set(true));
+
+            assertThat(written).isTrue();
+        }
+
+        @Test
+        void givenUpBatchStopsCallbacks() throws Exception {
+            AtomicInteger attempts = new AtomicInteger();
+            WriteSpool.Sender failingOnce = (database, lines, lineCount) -> {
+                if (attempts.incrementAndGet() <= 3) {
+                    throw new IOException("unavailable");
+                }
+                recording().send(database, lines, lineCount);
+            };
+            spool = new WriteSpool(failingOnce, null, 2, 2, RETRY_DELAY, RETRY_DELAY);
+            AtomicBoolean written = new AtomicBoolean();
+
+            spool.enqueue("db", lines("m value=1"), 1);
+            spool.whenSent(() -> written.set(true));
+            spool.enqueue("db", lines("m value=2"), 1);
+            spool.whenSent(() -> written.set(true));
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(attempts.get()).isEqualTo(4);
+            assertThat(sent).containsExactly("db:m value=2");
+            assertThat(written).isFalse();
+            spool.whenSent(() -> written.set(true));
+            assertThat(written).isFalse();
+        }
+    }
+
+    @Nested
+    public class Spooled {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void unsentBatchesReplayedAfterRestart() throws Exception {
+            WriteSpool first = new WriteSpool(unavailable(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            first.enqueue("db", lines("m value=1"), 1);
+            first.enqueue("other", lines("m value=2"), 1);
+            first.close(Duration.ofMillis(100));
+
+            spool = new WriteSpool(recording(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            spool.enqueue("db", lines("m value=3"), 1);
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(sent).containsExactly("db:m value=1", "other:m value=2", "db:m value=3");
+            assertThat(Files.size(directory.resolve("write-spool.log"))).isZero();
+        }
+
+        @Test
+        void sentBatchesNotReplayed() throws Exception {
+            WriteSpool first = new WriteSpool(recording(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            first.enqueue("db", lines("m value=1"), 1);
+            first.close(Duration.ofSeconds(5));
+
+            spool = new WriteSpool(recording(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(sent).containsExactly("db:m value=1");
+        }
+
+        @Test
+        void incompleteRecordDiscarded() throws Exception {
+            WriteSpool first = new WriteSpool(unavailable(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            first.enqueue("db", lines("m value=1"), 1);
+            first.close(Duration.ofMillis(100));
+            Files.write(directory.resolve("write-spool.log"), new byte[]{0, 0, 0, 2, 0}, StandardOpenOption.APPEND);
+
+            spool = new WriteSpool(recording(), directory, 4, UNBOUNDED, RETRY_DELAY, RETRY_DELAY);
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(sent).containsExactly("db:m value=1");
+        }
+
+        @Test
+        void givenUpBatchDeadLettered() throws Exception {
+            spool = new WriteSpool(unavailable(), directory, 4, 1, RETRY_DELAY, RETRY_DELAY);
+
+            spool.enqueue("db", lines("m value=1\n"), 1);
+            spool.close(Duration.ofSeconds(5));
+
+            assertThat(Files.readString(directory.resolve("write-spool.dead"))).isEqualTo("# database=db\nm value=1\n");
+            assertThat(Files.size(directory.resolve("write-spool.log"))).isZero();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.novatec.baselining.scheduling;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import de.novatec.baselining.config.CheckpointSettings;
+import de.novatec.baselining.config.SchedulerSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class BaselineUpdateSchedulerTest {
+
+    /**
+     * The name of the thread which executed the first update of each generator.
+     */
+    private final Map<String, CompletableFuture<String>> firstUpdateThreads = new ConcurrentHashMap<>();
+
+    private BaselineUpdateScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * A generator with intervals of one second and chunks of ten seconds, which records the thread of its first update.
+     */
+    private BaselineGenerator generator(String id) {
+        BaselineGenerator generator = mock(BaselineGenerator.class);
+        when(generator.getId()).thenReturn(id);
+        when(generator.getIntervalIndex(anyLong())).thenAnswer(invocation -> invocation.<Long>getArgument(0) / 1000);
+        when(generator.getNextIntervalStart(anyLong())).thenAnswer(invocation -> (invocation.<Long>getArgument(0) / 1000 + 1) * 1000);
+        when(generator.getMaxUpdateIntervalSizeMillis()).thenReturn(10_000L);
+        when(generator.getAvailableUntil()).thenReturn(Long.MAX_VALUE);
+        doAnswer(invocation -> firstUpdateThread(id).complete(Thread.currentThread().getName()))
+                .when(generator).updateBaselines(anyLong(), anyLong());
+        return generator;
+    }
+
+    private CompletableFuture<String> firstUpdateThread(String id) {
+        return firstUpdateThreads.computeIfAbsent(id, key -> new CompletableFuture<>());
+    }
+
+    private static SchedulerSettings settings(int threads, double backfillShare) {
+        SchedulerSettings settings = new SchedulerSettings();
+        settings.setThreads(threads);
+        settings.setBackfillShare(backfillShare);
+        return settings;
+    }
+
+    @Nested
+    class Lanes {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void laggingBaselinesBackfilled() throws Exception {
+            long now = System.currentTimeMillis();
+            Path checkpointFile = directory.resolve("checkpoints.properties");
+            Files.writeString(checkpointFile, "db.autogen.live=" + (now - 5_000) + "\n");
+            CheckpointSettings checkpoints = new CheckpointSettings();
+            checkpoints.setFile(checkpointFile.toString());
+            checkpoints.setDetectFromInflux(false);
+            BaselineGenerator live = generator("db.autogen.live");
+            BaselineGenerator lagging = generator("db.autogen.lagging");
+            scheduler = new BaselineUpdateScheduler(settings(2, 0.5), List.of(live, lagging), 0, now - 3_600_000, checkpoints);
+
+            scheduler.start();
+
+            assertThat(firstUpdateThread("db.autogen.live").get(5, TimeUnit.SECONDS)).startsWith("baseline-live-");
+            assertThat(firstUpdateThread("db.autogen.lagging").get(5, TimeUnit.SECONDS)).startsWith("baseline-backfill-");
+        }
+
+        @Test
+        void singleThreadSharedByLanes() throws Exception {
+            long now = System.currentTimeMillis();
+            CheckpointSettings checkpoints = new CheckpointSettings();
+            checkpoints.setFile("");
+            checkpoints.setDetectFromInflux(false);
+            BaselineGenerator lagging = generator("db.autogen.lagging");
+            scheduler = new BaselineUpdateScheduler(settings(1, 0.5), List.of(lagging), 0, now - 3_600_000, checkpoints);
+
+            scheduler.start();
+
+            assertThat(firstUpdateThread("db.autogen.lagging").get(5, TimeUnit.SECONDS)).startsWith("baseline-live-");
+        }
+    }
+
+    @Nested
+    class Threads {
+
+        @Test
+        void lanesAddUpToThreads() {
+            for (int threads = 1; threads <= 8; threads++) {
+                for (double share : new double[]{0.01, 0.25, 0.5, 1}) {
+                    SchedulerSettings settings = settings(threads, share);
+
+                    assertThat(settings.getLiveThreads() + settings.getBackfillThreads()).isEqualTo(threads);
+                    assertThat(settings.getLiveThreads()).isGreaterThanOrEqualTo(1);
+                    if (threads >= 2) {
+                        assertThat(settings.getBackfillThreads()).isGreaterThanOrEqualTo(1);
+                    }
+                }
+            }
+        }
+
+        @Test
+        void singleThreadSharedByLanes() {
+            SchedulerSettings settings = settings(1, 0.25);
+
+            assertThat(settings.getLiveThreads()).isEqualTo(1);
+            assertThat(settings.getBackfillThreads()).isZero();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package de.novatec.baselining.scheduling;
+
+import de.novatec.baselining.baselines.BaselineGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class BaselineUpdateTaskTest {
+
+    private static final long BACKFILL_START = 1_000_000;
+
+    private BaselineGenerator generator;
+
+    private CheckpointStore checkpoints;
+
+    @BeforeEach
+    void setUp() {
+        generator = mock(BaselineGenerator.class);
+        when(generator.getId()).thenReturn("db.autogen.baseline");
+        checkpoints = new CheckpointStore(null);
+    }
+
+    private BaselineUpdateTask createTask() {
+        return new BaselineUpdateTask(generator, 0, 0, BACKFILL_START, checkpoints);
+    }
+
+    /**
+     * Intervals of one second, updated in chunks of at most ten seconds.
+     */
+    private void stubIntervals() {
+        when(generator.getIntervalIndex(anyLong())).thenAnswer(invocation -> invocation.<Long>getArgument(0) / 1000);
+        when(generator.getNextIntervalStart(anyLong())).thenAnswer(invocation -> (invocation.<Long>getArgument(0) / 1000 + 1) * 1000);
+        when(generator.getMaxUpdateIntervalSizeMillis()).thenReturn(10_000L);
+        when(generator.getAvailableUntil()).thenReturn(Long.MAX_VALUE);
+    }
+
+    @Nested
+    class RestoreProgress {
+
+        @Test
+        void checkpointPreferred() {
+            checkpoints.put("db.autogen.baseline", 3_000_000);
+            when(generator.findLastUpdatedTimestamp(anyLong())).thenReturn(OptionalLong.of(2_000_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(3_000_000);
+            verify(generator, never()).findLastUpdatedTimestamp(anyLong());
+        }
+
+        @Test
+        void detectedFromInflux() {
+            when(generator.findLastUpdatedTimestamp(BACKFILL_START)).thenReturn(OptionalLong.of(2_000_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(2_000_000);
+        }
+
+        @Test
+        void backfillWithoutBaselines() {
+            when(generator.findLastUpdatedTimestamp(anyLong())).thenReturn(OptionalLong.empty());
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+        }
+
+        @Test
+        void progressBeforeBackfillStartIgnored() {
+            checkpoints.put("db.autogen.baseline", 500_000);
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+        }
+
+        @Test
+        void detectionDisabled() {
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(false)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+            verify(generator, never()).findLastUpdatedTimestamp(anyLong());
+        }
+
+        @Test
+        void failedDetectionRetried() {
+            when(generator.findLastUpdatedTimestamp(anyLong()))
+                    .thenThrow(new UncheckedIOException(new IOException("unavailable")))
+                    .thenReturn(OptionalLong.of(2_000_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isFalse();
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+
+            assertThat(task.restoreProgress(true)).isTrue();
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(2_000_000);
+        }
+    }
+
+    @Nested
+    class OnlyStoredState {
+
+        @BeforeEach
+        void setUp() {
+            when(generator.isStateOnlyStored()).thenReturn(true);
+            when(generator.getMaxUnwrittenMillis()).thenReturn(10_000L);
+        }
+
+        @Test
+        void checkpointWithinRetainedRangeRecomputed() {
+            checkpoints.put("db.autogen.baseline", 3_000_000);
+            when(generator.getStoredTimestamp()).thenReturn(OptionalLong.of(3_010_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(3_000_000);
+            verify(generator, never()).findLastUpdatedTimestamp(anyLong());
+        }
+
+        @Test
+        void continuedFromStoreWithoutCheckpoint() {
+            when(generator.getStoredTimestamp()).thenReturn(OptionalLong.of(3_000_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(false)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(3_000_000);
+        }
+
+        @Test
+        void continuedFromStoreBehindCheckpoint() {
+            checkpoints.put("db.autogen.baseline", 3_000_000);
+            when(generator.getStoredTimestamp()).thenReturn(OptionalLong.of(2_000_000));
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(2_000_000);
+        }
+
+        @Test
+        void checkpointBeyondRetainedRangeRejected() {
+            checkpoints.put("db.autogen.baseline", 3_000_000);
+            when(generator.getStoredTimestamp()).thenReturn(OptionalLong.of(3_010_001));
+            BaselineUpdateTask task = createTask();
+
+            assertThatThrownBy(() -> task.restoreProgress(true)).isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        void emptyStoreComputedFromStart() {
+            checkpoints.put("db.autogen.baseline", 3_000_000);
+            when(generator.getStoredTimestamp()).thenReturn(OptionalLong.empty());
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.restoreProgress(true)).isTrue();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+        }
+
+        @Test
+        void updatesWaitForWrites() {
+            stubIntervals();
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.updateNextChunk(BACKFILL_START + 60_000)).isTrue();
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START + 10_000);
+            assertThat(task.isUpdateRequired(BACKFILL_START + 60_000)).isFalse();
+
+            ArgumentCaptor<Runnable> written = ArgumentCaptor.forClass(Runnable.class);
+            verify(generator).whenWritten(written.capture());
+            written.getValue().run();
+            assertThat(task.isUpdateRequired(BACKFILL_START + 60_000)).isTrue();
+        }
+    }
+
+    @Nested
+    class Deadlines {
+
+        @BeforeEach
+        void setUp() {
+            stubIntervals();
+            when(generator.getMinimumDelayMillis()).thenReturn(200L);
+        }
+
+        @Test
+        void dueAfterDelaysAndJitter() {
+            BaselineUpdateTask task = new BaselineUpdateTask(generator, 300, 50, BACKFILL_START + 500, checkpoints);
+
+            assertThat(task.getNextDueTime()).isEqualTo(BACKFILL_START + 1_000 + 300 + 200 + 50);
+        }
+
+        @Test
+        void updateRequiredOnceIntervalCompleteAfterDelays() {
+            BaselineUpdateTask task = new BaselineUpdateTask(generator, 300, 50, BACKFILL_START + 500, checkpoints);
+
+            assertThat(task.isUpdateRequired(BACKFILL_START + 1_499)).isFalse();
+            assertThat(task.isUpdateRequired(BACKFILL_START + 1_500)).isTrue();
+        }
+
+        @Test
+        void notRequiredWhileDataUnavailable() {
+            when(generator.getAvailableUntil()).thenReturn(BACKFILL_START + 800);
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.isUpdateRequired(BACKFILL_START + 60_000)).isFalse();
+        }
+    }
+
+    @Nested
+    class Lanes {
+
+        @BeforeEach
+        void setUp() {
+            stubIntervals();
+        }
+
+        @Test
+        void backfillingWhenLaggingMoreThanOneChunk() {
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.isBackfilling(BACKFILL_START + 10_001)).isTrue();
+        }
+
+        @Test
+        void liveWithinOneChunk() {
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.isBackfilling(BACKFILL_START + 10_000)).isFalse();
+        }
+    }
+
+    @Nested
+    class UpdateNextChunk {
+
+        @BeforeEach
+        void setUp() {
+            stubIntervals();
+        }
+
+        @Test
+        void checkpointStoredOnceWritten() {
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.updateNextChunk(BACKFILL_START + 5_000)).isTrue();
+
+            verify(generator).updateBaselines(BACKFILL_START, BACKFILL_START + 5_000);
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START + 5_000);
+            ArgumentCaptor<Runnable> written = ArgumentCaptor.forClass(Runnable.class);
+            verify(generator).whenWritten(written.capture());
+            assertThat(checkpoints.get("db.autogen.baseline")).isEmpty();
+
+            written.getValue().run();
+            assertThat(checkpoints.get("db.autogen.baseline")).hasValue(BACKFILL_START + 5_000);
+        }
+
+        @Test
+        void failedUpdateKeepsProgress() {
+            doThrow(new UncheckedIOException(new IOException("unavailable"))).when(generator).updateBaselines(anyLong(), anyLong());
+            BaselineUpdateTask task = createTask();
+
+            assertThat(task.updateNextChunk(BACKFILL_START + 5_000)).isFalse();
+
+            assertThat(task.getLastUpdatedTimestamp()).isEqualTo(BACKFILL_START);
+            verify(generator, never()).whenWritten(any());
+        }
+    }
+}
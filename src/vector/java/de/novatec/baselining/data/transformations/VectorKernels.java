@@ -0,0 +1,59 @@
+package de.novatec.baselining.data.transformations;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation based on the incubating Vector API.
+ * Only loaded if the JVM has been started with {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorKernels implements NumericKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Has the same number of lanes as {@link #DOUBLES}, because both element types have 64 bits.
+     */
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, DOUBLES.vectorShape());
+
+    @Override
+    public void rates(long[] times, double[] values, int length, double unitMillis, double[] out) {
+        int i = 1;
+        int upperBound = length - DOUBLES.length();
+        for (; i <= upperBound; i += DOUBLES.length()) {
+            DoubleVector valueDiff = DoubleVector.fromArray(DOUBLES, values, i)
+                    .sub(DoubleVector.fromArray(DOUBLES, values, i - 1));
+            DoubleVector timeDiff = (DoubleVector) LongVector.fromArray(LONGS, times, i)
+                    .sub(LongVector.fromArray(LONGS, times, i - 1))
+                    .convert(VectorOperators.L2D, 0);
+            valueDiff.div(timeDiff).mul(unitMillis).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = (values[i] - values[i - 1]) / (times[i] - times[i - 1]) * unitMillis;
+        }
+    }
+
+    @Override
+    public void sumAndSquares(double[] values, int from, int to, double[] out) {
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        DoubleVector squares = DoubleVector.zero(DOUBLES);
+        int i = from;
+        int upperBound = to - DOUBLES.length();
+        for (; i <= upperBound; i += DOUBLES.length()) {
+            DoubleVector vector = DoubleVector.fromArray(DOUBLES, values, i);
+            sums = sums.add(vector);
+            squares = vector.fma(vector, squares);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        double sumSq = squares.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            double value = values[i];
+            sum += value;
+            sumSq += value * value;
+        }
+        out[0] = sum;
+        out[1] = sumSq;
+    }
+}